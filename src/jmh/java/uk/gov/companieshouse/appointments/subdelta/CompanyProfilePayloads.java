@@ -0,0 +1,92 @@
+package uk.gov.companieshouse.appointments.subdelta;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import uk.gov.companieshouse.stream.EventRecord;
+import uk.gov.companieshouse.stream.ResourceChangedData;
+
+/**
+ * Company profile deltas for the benchmarks, in the sizes seen on the stream. Fields are in the
+ * alphabetical order the company profile API writes them in.
+ */
+public final class CompanyProfilePayloads {
+
+    private static final String TYPICAL_RESOURCE = "/example_stream_company_profile_message.json";
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    public enum Size {
+
+        /**
+         * Only the fields a newly incorporated company has.
+         */
+        SMALL,
+
+        /**
+         * The example profile used by the tests, about 1.7 KB.
+         */
+        TYPICAL,
+
+        /**
+         * The example profile with a long history of previous names and several SIC codes, about 45 KB.
+         */
+        LARGE
+    }
+
+    private CompanyProfilePayloads() {
+    }
+
+    public static ResourceChangedData changedData(Size size) {
+        return new ResourceChangedData("company-profile", "/company/12345678", "context_id", "12345678",
+                json(size), new EventRecord("2024-01-01T00:00:00", "changed", Collections.emptyList()));
+    }
+
+    public static String json(Size size) {
+        try {
+            return switch (size) {
+                case SMALL -> OBJECT_MAPPER.writeValueAsString(new TreeMap<>(Map.of(
+                        "company_name", "COMPANY LIMITED",
+                        "company_number", "12345678",
+                        "company_status", "active",
+                        "date_of_creation", "2024-01-01",
+                        "links", Map.of("self", "/company/12345678"),
+                        "type", "ltd")));
+                case TYPICAL -> typical();
+                case LARGE -> large();
+            };
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static String typical() throws IOException {
+        try (InputStream resource = CompanyProfilePayloads.class.getResourceAsStream(TYPICAL_RESOURCE)) {
+            if (resource == null) {
+                throw new IOException(TYPICAL_RESOURCE + " is not on the classpath");
+            }
+            return new String(resource.readAllBytes());
+        }
+    }
+
+    private static String large() throws IOException {
+        Map<String, Object> profile = new TreeMap<>(OBJECT_MAPPER.readValue(typical(), new TypeReference<>() {
+        }));
+        List<Map<String, String>> previousNames = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            previousNames.add(Map.of(
+                    "ceased_on", String.format("%04d-06-30", 2023 - i / 20),
+                    "effective_from", String.format("%04d-07-01", 2022 - i / 20),
+                    "name", "PREVIOUS COMPANY NAME NUMBER " + i + " LIMITED"));
+        }
+        profile.put("previous_company_names", previousNames);
+        profile.put("sic_codes", List.of("70100", "64209", "68209", "82990"));
+        return OBJECT_MAPPER.writeValueAsString(profile);
+    }
+}
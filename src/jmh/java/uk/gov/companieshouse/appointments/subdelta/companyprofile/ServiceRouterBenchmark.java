@@ -0,0 +1,89 @@
+package uk.gov.companieshouse.appointments.subdelta.companyprofile;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.gov.companieshouse.appointments.subdelta.CompanyProfilePayloads;
+import uk.gov.companieshouse.appointments.subdelta.logging.DataMapHolder;
+import uk.gov.companieshouse.stream.ResourceChangedData;
+
+/**
+ * The company profile JSON handling in {@link CompanyProfileChangedService}, alone and as part of the
+ * full {@link ServiceRouter#route} path, for each size of company profile. The appointments client
+ * is stubbed out and the applied name and status cache is disabled, so every record is parsed and
+ * patched.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ServiceRouterBenchmark {
+
+    @Param
+    public CompanyProfilePayloads.Size size;
+
+    private CompanyProfileFieldExtractor fieldExtractor;
+    private ServiceRouter serviceRouter;
+    private ResourceChangedData changedData;
+
+    @Setup
+    public void setup() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ObjectMapper objectMapper = new ObjectMapper();
+        fieldExtractor = new CompanyProfileFieldExtractor(objectMapper);
+        CompanyProfileChangedService service = new CompanyProfileChangedService(
+                new StubAppointmentsClient(), fieldExtractor, new AppliedNameStatusCache(0, meterRegistry),
+                new AsyncAppointmentsClient(null, objectMapper, null, "http://localhost"),
+                new BulkAppointmentsClient(null, objectMapper, null, "http://localhost", "/bulk", 0, 0),
+                meterRegistry);
+        serviceRouter = new ServiceRouter(service, meterRegistry);
+        changedData = CompanyProfilePayloads.changedData(size);
+        DataMapHolder.initialise("context_id");
+    }
+
+    @Benchmark
+    public CompanyProfileFields extractFields() throws IOException {
+        return fieldExtractor.extract(changedData);
+    }
+
+    @Benchmark
+    public void route() {
+        serviceRouter.route(changedData);
+    }
+
+    /**
+     * Keeps the last name and status it would have sent, so they are not optimised away.
+     */
+    private static class StubAppointmentsClient extends AppointmentsClient {
+
+        private String resourceUri;
+        private String companyName;
+        private String status;
+
+        StubAppointmentsClient() {
+            super(null, null, null, null, null, "http://localhost", "key");
+        }
+
+        @Override
+        public void patchCompanyNameAndStatusForAllAppointments(String resourceUri, String companyName,
+                String status) {
+            this.resourceUri = resourceUri;
+            this.companyName = companyName;
+            this.status = status;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package uk.gov.companieshouse.appointments.subdelta.kafka;
+
+import static org.springframework.kafka.support.KafkaHeaders.EXCEPTION_MESSAGE;
+import static org.springframework.kafka.support.KafkaHeaders.ORIGINAL_OFFSET;
+import static org.springframework.kafka.support.KafkaHeaders.ORIGINAL_PARTITION;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.gov.companieshouse.appointments.subdelta.CompanyProfilePayloads;
+import uk.gov.companieshouse.stream.ResourceChangedData;
+
+/**
+ * {@link InvalidMessageRouter#onSend} for a retryable record, which is sent unchanged, and for an
+ * invalid record, which is rewritten for the invalid topic. The invalid route also logs the message
+ * it builds, and that is included in its cost.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InvalidMessageRouterBenchmark {
+
+    private static final String TOPIC = "stream-company-profile-group-error";
+
+    private InvalidMessageRouter router;
+    private ProducerRecord<String, ResourceChangedData> retryableRecord;
+    private ProducerRecord<String, ResourceChangedData> invalidRecord;
+
+    @Setup
+    public void setup() {
+        router = new InvalidMessageRouter();
+        router.configure(Map.of("invalid.message.topic.profile", "stream-company-profile-invalid"));
+        ResourceChangedData changedData = CompanyProfilePayloads.changedData(CompanyProfilePayloads.Size.TYPICAL);
+
+        RecordHeaders retryableHeaders = new RecordHeaders();
+        retryableHeaders.add(ErrorClassification.RETRYABLE.header());
+        retryableRecord = new ProducerRecord<>(TOPIC, null, "key", changedData, retryableHeaders);
+
+        RecordHeaders invalidHeaders = new RecordHeaders();
+        invalidHeaders.add(ORIGINAL_PARTITION, BigInteger.valueOf(2).toByteArray());
+        invalidHeaders.add(ORIGINAL_OFFSET, BigInteger.valueOf(123_456_789L).toByteArray());
+        invalidHeaders.add(EXCEPTION_MESSAGE, "Failed to deserialise company profile data"
+                .getBytes(StandardCharsets.UTF_8));
+        invalidHeaders.add(ErrorClassification.INVALID.header());
+        invalidRecord = new ProducerRecord<>(TOPIC, null, "key", changedData, invalidHeaders);
+    }
+
+    @Benchmark
+    public ProducerRecord<String, ResourceChangedData> onSendRetryable() {
+        return router.onSend(retryableRecord);
+    }
+
+    @Benchmark
+    public ProducerRecord<String, ResourceChangedData> onSendInvalid() {
+        return router.onSend(invalidRecord);
+    }
+}
@@ -0,0 +1,105 @@
+package uk.gov.companieshouse.appointments.subdelta.kafka;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import org.apache.avro.io.DatumReader;
+import org.apache.avro.io.DatumWriter;
+import org.apache.avro.io.Decoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.Encoder;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.avro.message.SchemaStore;
+import org.apache.avro.reflect.ReflectDatumReader;
+import org.apache.avro.reflect.ReflectDatumWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.gov.companieshouse.stream.EventRecord;
+import uk.gov.companieshouse.stream.ResourceChangedData;
+
+/**
+ * Compares the reusable {@link ResourceChangedDataCodec}, the specific reader and the lazy reader
+ * with building a reflect datum reader or writer, decoder or encoder and output buffer for every record.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResourceChangedDataCodecBenchmark {
+
+    private ResourceChangedDataCodec codec;
+    private SpecificResourceChangedDataDecoder specificDecoder;
+    private LazyResourceChangedDataDecoder lazyDecoder;
+    private ResourceChangedData changedData;
+    private ResourceChangedData reuse;
+    private byte[] encoded;
+
+    @Setup
+    public void setup() throws IOException {
+        codec = new ResourceChangedDataCodec();
+        specificDecoder = new SpecificResourceChangedDataDecoder(new SchemaStore.Cache(), 16);
+        lazyDecoder = new LazyResourceChangedDataDecoder();
+        reuse = new ResourceChangedData();
+        changedData = new ResourceChangedData("company-profile", "/company/12345678",
+                "context_id", "12345678", "{\"company_name\":\"COMPANY LIMITED\",\"company_status\":\"active\"}",
+                new EventRecord("2024-01-01T00:00:00", "changed", Collections.emptyList()));
+        encoded = codec.encode(changedData);
+    }
+
+    @Benchmark
+    public ResourceChangedData decodePerRecordReader() throws IOException {
+        Decoder decoder = DecoderFactory.get().binaryDecoder(encoded, null);
+        DatumReader<ResourceChangedData> reader = new ReflectDatumReader<>(ResourceChangedData.class);
+        return reader.read(null, decoder);
+    }
+
+    @Benchmark
+    public ResourceChangedData decodeCodec() throws IOException {
+        return codec.decode(encoded);
+    }
+
+    @Benchmark
+    public ResourceChangedData decodeCodecReusingRecord() throws IOException {
+        return codec.decode(encoded, reuse);
+    }
+
+    @Benchmark
+    public ResourceChangedData decodeSpecific() throws IOException {
+        return specificDecoder.decode(encoded, null);
+    }
+
+    @Benchmark
+    public String decodeLazyEventTypeOnly() throws IOException {
+        return lazyDecoder.decode(encoded, null).getEvent().getType();
+    }
+
+    @Benchmark
+    public String decodeLazyWithData() throws IOException {
+        return lazyDecoder.decode(encoded, null).getData();
+    }
+
+    @Benchmark
+    public byte[] encodePerRecordWriter() throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        Encoder encoder = EncoderFactory.get().directBinaryEncoder(outputStream, null);
+        DatumWriter<ResourceChangedData> writer = new ReflectDatumWriter<>(ResourceChangedData.class);
+        writer.write(changedData, encoder);
+        return outputStream.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] encodeCodec() throws IOException {
+        return codec.encode(changedData);
+    }
+}
@@ -0,0 +1,75 @@
+package uk.gov.companieshouse.appointments.subdelta.kafka;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.TimeUnit;
+import org.apache.avro.message.SchemaStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.gov.companieshouse.appointments.subdelta.CompanyProfilePayloads;
+import uk.gov.companieshouse.stream.ResourceChangedData;
+
+/**
+ * The Kafka serialiser and deserialiser as configured for each decode mode, including the timers
+ * they record, for each size of company profile.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResourceChangedDataSerdeBenchmark {
+
+    private static final String TOPIC = "stream-company-profile";
+
+    @Param
+    public CompanyProfilePayloads.Size size;
+
+    @Param
+    public DecodeMode decodeMode;
+
+    private ResourceChangedDataSerialiser serialiser;
+    private ResourceChangedDataDeserialiser deserialiser;
+    private ResourceChangedData changedData;
+    private byte[] serialised;
+
+    @Setup
+    public void setup() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        serialiser = new ResourceChangedDataSerialiser();
+        deserialiser = switch (decodeMode) {
+            case SPECIFIC -> new ResourceChangedDataDeserialiser(
+                    new SpecificResourceChangedDataDecoder(new SchemaStore.Cache(), 16), meterRegistry, decodeMode);
+            case LAZY -> new ResourceChangedDataDeserialiser(new LazyResourceChangedDataDecoder(),
+                    meterRegistry, decodeMode);
+            case REFLECT -> new ResourceChangedDataDeserialiser(new ResourceChangedDataCodec(), meterRegistry);
+        };
+        changedData = CompanyProfilePayloads.changedData(size);
+        serialised = serialiser.serialize(TOPIC, changedData);
+    }
+
+    @Benchmark
+    public byte[] serialise() {
+        return serialiser.serialize(TOPIC, changedData);
+    }
+
+    @Benchmark
+    public ResourceChangedData deserialise() {
+        return deserialiser.deserialize(TOPIC, serialised);
+    }
+
+    @Benchmark
+    public String deserialiseAndReadData() {
+        // The lazy decoder only pays for the data field here
+        return deserialiser.deserialize(TOPIC, serialised).getData();
+    }
+}
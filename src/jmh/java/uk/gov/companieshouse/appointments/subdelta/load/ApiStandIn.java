@@ -0,0 +1,109 @@
+package uk.gov.companieshouse.appointments.subdelta.load;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.any;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathMatching;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.client.ResponseDefinitionBuilder;
+import com.github.tomakehurst.wiremock.extension.Parameters;
+import com.github.tomakehurst.wiremock.extension.ResponseDefinitionTransformerV2;
+import com.github.tomakehurst.wiremock.extension.ServeEventListener;
+import com.github.tomakehurst.wiremock.http.ResponseDefinition;
+import com.github.tomakehurst.wiremock.stubbing.ServeEvent;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.LongConsumer;
+
+/**
+ * A WireMock stand-in for the Company Appointments API. PATCHes are answered after a log-normally
+ * distributed delay, and fail at random with a 503, which the consumer retries, or a 400, which it
+ * sends to the invalid topic. Each successful PATCH is reported by the sequence number the harness
+ * put in its company name.
+ */
+class ApiStandIn implements ResponseDefinitionTransformerV2, ServeEventListener {
+
+    static final String COMPANY_NAME_PREFIX = "LOAD-";
+
+    private final double retryableErrorRate;
+    private final double invalidErrorRate;
+    private final LongConsumer onPatched;
+    private final WireMockServer server;
+
+    ApiStandIn(long medianLatencyMillis, double latencySigma, double retryableErrorRate, double invalidErrorRate,
+            int threads, LongConsumer onPatched) {
+        this.retryableErrorRate = retryableErrorRate;
+        this.invalidErrorRate = invalidErrorRate;
+        this.onPatched = onPatched;
+        this.server = new WireMockServer(options()
+                .dynamicPort()
+                .containerThreads(threads)
+                .asynchronousResponseEnabled(true)
+                .asynchronousResponseThreads(threads)
+                // Millions of requests would otherwise be kept for verification
+                .disableRequestJournal()
+                .extensions(this));
+        server.stubFor(get(urlPathMatching("/healthcheck")).willReturn(aResponse().withStatus(200)));
+        server.stubFor(any(urlPathMatching("/company/[^/]+/appointments"))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withLogNormalRandomDelay(medianLatencyMillis, latencySigma)));
+    }
+
+    void start() {
+        server.start();
+    }
+
+    void stop() {
+        server.stop();
+    }
+
+    String baseUrl() {
+        return server.baseUrl();
+    }
+
+    @Override
+    public ResponseDefinition transform(ServeEvent serveEvent) {
+        ResponseDefinition response = serveEvent.getResponseDefinition();
+        if (response.getStatus() != 200) {
+            return response;
+        }
+        double roll = ThreadLocalRandom.current().nextDouble();
+        if (roll < retryableErrorRate) {
+            return ResponseDefinitionBuilder.like(response).but().withStatus(503).build();
+        }
+        if (roll < retryableErrorRate + invalidErrorRate) {
+            return ResponseDefinitionBuilder.like(response).but().withStatus(400).build();
+        }
+        return response;
+    }
+
+    @Override
+    public void afterComplete(ServeEvent serveEvent, Parameters parameters) {
+        if (serveEvent.getResponse().getStatus() != 200) {
+            return;
+        }
+        String body = serveEvent.getRequest().getBodyAsString();
+        int start = body.indexOf(COMPANY_NAME_PREFIX);
+        if (start < 0) {
+            return;
+        }
+        long sequence = 0;
+        for (int i = start + COMPANY_NAME_PREFIX.length(); i < body.length() && Character.isDigit(body.charAt(i));
+                i++) {
+            sequence = sequence * 10 + (body.charAt(i) - '0');
+        }
+        onPatched.accept(sequence);
+    }
+
+    @Override
+    public boolean applyGlobally() {
+        return true;
+    }
+
+    @Override
+    public String getName() {
+        return "appointments-api-stand-in";
+    }
+}
@@ -0,0 +1,125 @@
+package uk.gov.companieshouse.appointments.subdelta.load;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.testcontainers.kafka.ConfluentKafkaContainer;
+import uk.gov.companieshouse.appointments.subdelta.kafka.AbstractKafkaTest;
+import uk.gov.companieshouse.appointments.subdelta.kafka.ProcessingMode;
+
+/**
+ * Drives synthetic company profile deltas through the application, running in its own Spring context
+ * against a Kafka container and an {@link ApiStandIn}, once for each processing mode and listener
+ * concurrency. Each run reports its sustained throughput, end-to-end latency from send to successful
+ * PATCH, and the records that went through the retry, error and invalid topics. Consumer lag and
+ * retry topic volume over time are written to a CSV file.
+ * <p>
+ * Run with {@code make load-test}. Settings are {@code load.*} system properties, described in the
+ * README. Any other application property can be set as a system property too.
+ */
+public final class LoadHarness {
+
+    private static final String SUMMARY_FORMAT = "%-8s %11s %10s %10s %10s %9s %9s %9s %10s %8s %8s %10s%n";
+
+    private LoadHarness() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Settings settings = Settings.fromSystemProperties();
+        List<RunResult> results = new ArrayList<>();
+        try (ConfluentKafkaContainer kafka = new ConfluentKafkaContainer(AbstractKafkaTest.KAFKA_IMAGE);
+                PrintWriter timeline = timeline(settings.output())) {
+            kafka.start();
+            int run = 0;
+            for (ProcessingMode mode : settings.modes()) {
+                for (int concurrency : settings.concurrencies()) {
+                    results.add(new LoadRun(settings, kafka.getBootstrapServers(), ++run, mode, concurrency,
+                            timeline).call());
+                }
+            }
+        }
+
+        System.out.printf(SUMMARY_FORMAT, "mode", "concurrency", "completed", "coalesced", "records/s", "p50 ms",
+                "p99 ms", "p999 ms", "retried", "error", "invalid", "max lag");
+        for (RunResult result : results) {
+            System.out.printf(SUMMARY_FORMAT, result.mode(), result.concurrency(), result.completed(),
+                    result.coalescedRecords(), String.format("%.0f", result.throughput()), millis(result.p50()),
+                    millis(result.p99()), millis(result.p999()), result.retryRecords(), result.errorRecords(),
+                    result.invalidRecords(), result.maxLag());
+        }
+        System.out.printf("Lag and retry topic volume over time written to %s%n", settings.output());
+    }
+
+    private static PrintWriter timeline(Path output) throws IOException {
+        if (output.getParent() != null) {
+            Files.createDirectories(output.getParent());
+        }
+        PrintWriter timeline = new PrintWriter(Files.newBufferedWriter(output));
+        timeline.println(
+                "run,mode,concurrency,elapsed_ms,sent,completed,coalesced,records_per_second,lag,retry_records");
+        return timeline;
+    }
+
+    private static String millis(Duration duration) {
+        return String.format("%.1f", duration.toNanos() / 1_000_000.0);
+    }
+
+    /**
+     * @param records            The records to send in each run.
+     * @param rate               Records sent per second, or 0 to send as fast as possible.
+     * @param partitions         Partitions of the main topic, which limits useful concurrency.
+     * @param companies          Distinct company numbers the records are spread over.
+     * @param modes              The processing modes to run.
+     * @param concurrencies      The listener concurrencies to run each mode with.
+     * @param medianLatency      Median latency of the API stand-in.
+     * @param latencySigma       Spread of the stand-in's log-normal latency.
+     * @param retryableErrorRate Fraction of PATCHes answered with a 503.
+     * @param invalidErrorRate   Fraction of PATCHes answered with a 400.
+     * @param apiThreads         Threads serving the stand-in.
+     * @param sampleInterval     How often lag and retry topic volume are sampled.
+     * @param idleTimeout        How long a run may go without completing a record before it is ended.
+     * @param logMode            The application's log mode.
+     * @param output             The CSV file for lag and retry topic volume over time.
+     */
+    record Settings(int records, int rate, int partitions, int companies, List<ProcessingMode> modes,
+            List<Integer> concurrencies, long medianLatency, double latencySigma, double retryableErrorRate,
+            double invalidErrorRate, int apiThreads, Duration sampleInterval, Duration idleTimeout,
+            String logMode, Path output) {
+
+        static Settings fromSystemProperties() {
+            return new Settings(
+                    Integer.getInteger("load.records", 1_000_000),
+                    Integer.getInteger("load.rate", 0),
+                    Integer.getInteger("load.partitions", 12),
+                    Integer.getInteger("load.companies", 100_000),
+                    list("load.modes", "RECORD,BATCH,ASYNC,PARALLEL").stream().map(ProcessingMode::valueOf).toList(),
+                    list("load.concurrencies", "1,4,12").stream().map(Integer::valueOf).toList(),
+                    Long.getLong("load.api_latency_median", 20),
+                    Double.parseDouble(System.getProperty("load.api_latency_sigma", "0.5")),
+                    Double.parseDouble(System.getProperty("load.api_retryable_error_rate", "0.001")),
+                    Double.parseDouble(System.getProperty("load.api_invalid_error_rate", "0.0001")),
+                    Integer.getInteger("load.api_threads", 200),
+                    Duration.ofMillis(Long.getLong("load.sample_interval", 1000)),
+                    Duration.ofMillis(Long.getLong("load.idle_timeout", 60_000)),
+                    System.getProperty("load.log_mode", "HIGH_THROUGHPUT"),
+                    Path.of(System.getProperty("load.output", "target/load-timeline.csv")));
+        }
+
+        private static List<String> list(String property, String defaultValue) {
+            return Arrays.stream(System.getProperty(property, defaultValue).split(","))
+                    .map(String::trim)
+                    .filter(value -> !value.isEmpty())
+                    .toList();
+        }
+    }
+
+    record RunResult(ProcessingMode mode, int concurrency, long completed, long coalescedRecords,
+            double throughput, Duration p50, Duration p99, Duration p999, long retryRecords, long errorRecords,
+            long invalidRecords, long maxLag) {
+    }
+}
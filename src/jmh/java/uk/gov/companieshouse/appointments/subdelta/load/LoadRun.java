@@ -0,0 +1,287 @@
+package uk.gov.companieshouse.appointments.subdelta.load;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.PrintWriter;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.admin.OffsetSpec;
+import org.apache.kafka.clients.admin.TopicDescription;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.TypeExcludeFilter;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.type.AnnotationMetadata;
+import org.springframework.core.type.classreading.MetadataReader;
+import org.springframework.core.type.classreading.MetadataReaderFactory;
+import uk.gov.companieshouse.appointments.subdelta.Application;
+import uk.gov.companieshouse.appointments.subdelta.CompanyProfilePayloads;
+import uk.gov.companieshouse.appointments.subdelta.kafka.ProcessingMode;
+import uk.gov.companieshouse.appointments.subdelta.kafka.ResourceChangedDataSerialiser;
+import uk.gov.companieshouse.appointments.subdelta.load.LoadHarness.RunResult;
+import uk.gov.companieshouse.appointments.subdelta.load.LoadHarness.Settings;
+import uk.gov.companieshouse.stream.EventRecord;
+import uk.gov.companieshouse.stream.ResourceChangedData;
+
+/**
+ * One run of the {@link LoadHarness}: a new topic and consumer group, an application context with the
+ * run's processing mode and concurrency, and a producer sending the run's records.
+ */
+class LoadRun {
+
+    private static final String TEMPLATE_COMPANY_NAME = "COMPANY NAME";
+    private static final String PATCHES_AVOIDED_METRIC = "appointments.consumer.patches.avoided";
+
+    private final Settings settings;
+    private final String bootstrapServers;
+    private final int run;
+    private final ProcessingMode mode;
+    private final int concurrency;
+    private final PrintWriter timeline;
+
+    private final String topic;
+    private final String groupId;
+    private final String invalidTopic;
+    private final AtomicLongArray sentAt;
+    private final LongAdder patched = new LongAdder();
+    private final AtomicLong sent = new AtomicLong();
+    private final Timer latency;
+
+    LoadRun(Settings settings, String bootstrapServers, int run, ProcessingMode mode, int concurrency,
+            PrintWriter timeline) {
+        this.settings = settings;
+        this.bootstrapServers = bootstrapServers;
+        this.run = run;
+        this.mode = mode;
+        this.concurrency = concurrency;
+        this.timeline = timeline;
+        this.topic = "stream-company-profile-load-" + run;
+        this.groupId = "company-appointments-consumer-load-" + run;
+        this.invalidTopic = topic + "-" + groupId + "-invalid";
+        this.sentAt = new AtomicLongArray(settings.records());
+        this.latency = Timer.builder("load.latency")
+                .publishPercentiles(0.5, 0.99, 0.999)
+                .percentilePrecision(3)
+                // Percentiles over the whole run rather than a rolling window
+                .distributionStatisticBufferLength(1)
+                .distributionStatisticExpiry(Duration.ofDays(1))
+                .register(new SimpleMeterRegistry());
+    }
+
+    RunResult call() throws Exception {
+        System.out.printf("Run %d: %s mode, concurrency %d, %d records%n", run, mode, concurrency,
+                settings.records());
+        ApiStandIn api = new ApiStandIn(settings.medianLatency(), settings.latencySigma(),
+                settings.retryableErrorRate(), settings.invalidErrorRate(), settings.apiThreads(), this::patched);
+        api.start();
+        try (Admin admin = Admin.create(Map.of(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers))) {
+            admin.createTopics(List.of(new NewTopic(topic, settings.partitions(), (short) 1))).all().get();
+            try (ConfigurableApplicationContext context = start(api.baseUrl())) {
+                Thread producer = Thread.ofPlatform().name("load-producer-" + run).start(this::produce);
+                RunResult result = monitor(admin, context.getBean(MeterRegistry.class));
+                producer.interrupt();
+                producer.join();
+                return result;
+            }
+        } finally {
+            api.stop();
+        }
+    }
+
+    private ConfigurableApplicationContext start(String apiUrl) {
+        // Command line arguments, so they take precedence over application.properties
+        return new SpringApplicationBuilder(Application.class)
+                .initializers(context -> context.getBeanFactory()
+                        .registerSingleton("loadHarnessExcludeFilter", new TestComponentExcludeFilter()))
+                .run("--server.port=0",
+                        "--spring.kafka.bootstrap-servers=" + bootstrapServers,
+                        "--consumer.group_id=" + groupId,
+                        "--consumer.profile.topic=" + topic,
+                        "--invalid_message_topic.profile=" + invalidTopic,
+                        "--consumer.processing_mode=" + mode,
+                        "--consumer.concurrency=" + concurrency,
+                        "--consumer.log_mode=" + settings.logMode(),
+                        "--api.api-url=" + apiUrl);
+    }
+
+    private void produce() {
+        String template = CompanyProfilePayloads.json(CompanyProfilePayloads.Size.TYPICAL);
+        long intervalNanos = settings.rate() > 0 ? TimeUnit.SECONDS.toNanos(1) / settings.rate() : 0;
+        try (KafkaProducer<String, ResourceChangedData> producer = new KafkaProducer<>(Map.of(
+                ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers,
+                ProducerConfig.ACKS_CONFIG, "1",
+                ProducerConfig.LINGER_MS_CONFIG, 5,
+                ProducerConfig.BATCH_SIZE_CONFIG, 256 * 1024),
+                new StringSerializer(), new ResourceChangedDataSerialiser())) {
+            long start = System.nanoTime();
+            for (int i = 0; i < settings.records() && !Thread.currentThread().isInterrupted(); i++) {
+                if (intervalNanos > 0) {
+                    long wait = start + i * intervalNanos - System.nanoTime();
+                    if (wait > 0) {
+                        LockSupport.parkNanos(wait);
+                    }
+                }
+                String companyNumber = String.format("%08d", i % settings.companies());
+                ResourceChangedData changedData = new ResourceChangedData("company-profile",
+                        "/company/" + companyNumber, "load-" + run + "-" + i, companyNumber,
+                        template.replace(TEMPLATE_COMPANY_NAME, ApiStandIn.COMPANY_NAME_PREFIX + i),
+                        new EventRecord("", "changed", Collections.emptyList()));
+                sentAt.set(i, System.nanoTime());
+                producer.send(new ProducerRecord<>(topic, companyNumber, changedData));
+                sent.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Called by the API stand-in for each successful PATCH. Only the first counts, as a record may be
+     * patched again if its offset was not committed before a rebalance.
+     */
+    private void patched(long sequence) {
+        if (sequence >= settings.records()) {
+            return;
+        }
+        long sentNanos = sentAt.getAndSet((int) sequence, 0);
+        if (sentNanos != 0) {
+            latency.record(System.nanoTime() - sentNanos, TimeUnit.NANOSECONDS);
+            patched.increment();
+        }
+    }
+
+    /**
+     * Sample progress until every record has completed: patched, sent to the error or invalid topic,
+     * or coalesced in BATCH mode, which leaves a superseded delta without a PATCH of its own.
+     */
+    private RunResult monitor(Admin admin, MeterRegistry meterRegistry)
+            throws ExecutionException, InterruptedException {
+        long start = System.nanoTime();
+        long lastSample = start;
+        long lastProgress = start;
+        long lastCompleted = 0;
+        long maxLag = 0;
+        while (true) {
+            Thread.sleep(settings.sampleInterval().toMillis());
+            Offsets offsets = sample(admin);
+            long now = System.nanoTime();
+            long coalesced = coalesced(meterRegistry);
+            long completed = patched.sum() + coalesced + offsets.errorRecords() + offsets.invalidRecords();
+            double rate = (completed - lastCompleted) * 1e9 / Math.max(1, now - lastSample);
+            lastSample = now;
+            maxLag = Math.max(maxLag, offsets.lag());
+            timeline.printf("%d,%s,%d,%d,%d,%d,%d,%.0f,%d,%d%n", run, mode, concurrency,
+                    TimeUnit.NANOSECONDS.toMillis(now - start), sent.get(), completed, coalesced, rate,
+                    offsets.lag(), offsets.retryRecords());
+            timeline.flush();
+
+            if (completed >= settings.records()) {
+                return result(completed, coalesced, now - start, offsets, maxLag);
+            }
+            if (completed > lastCompleted) {
+                lastCompleted = completed;
+                lastProgress = now;
+            } else if (now - lastProgress > settings.idleTimeout().toNanos()) {
+                System.out.printf("Run %d ended with %d of %d records completed%n", run, completed,
+                        settings.records());
+                return result(completed, coalesced, lastProgress - start, offsets, maxLag);
+            }
+        }
+    }
+
+    private static long coalesced(MeterRegistry meterRegistry) {
+        // Registered by the batch listener, so absent in the other processing modes
+        Counter counter = meterRegistry.find(PATCHES_AVOIDED_METRIC).tag("reason", "coalesced").counter();
+        return counter != null ? (long) counter.count() : 0;
+    }
+
+    private RunResult result(long completed, long coalesced, long elapsedNanos, Offsets offsets, long maxLag) {
+        Map<Double, Duration> percentiles = new HashMap<>();
+        for (ValueAtPercentile value : latency.takeSnapshot().percentileValues()) {
+            percentiles.put(value.percentile(), Duration.ofNanos((long) value.value(TimeUnit.NANOSECONDS)));
+        }
+        return new RunResult(mode, concurrency, completed, coalesced, completed * 1e9 / Math.max(1, elapsedNanos),
+                percentiles.getOrDefault(0.5, Duration.ZERO), percentiles.getOrDefault(0.99, Duration.ZERO),
+                percentiles.getOrDefault(0.999, Duration.ZERO), offsets.retryRecords(), offsets.errorRecords(),
+                offsets.invalidRecords(), maxLag);
+    }
+
+    /**
+     * The consumer group's lag on the main topic, and the records produced to the retry, error and
+     * invalid topics so far.
+     */
+    private Offsets sample(Admin admin) throws ExecutionException, InterruptedException {
+        String retryPrefix = topic + "-" + groupId + "-retry";
+        String errorTopic = topic + "-" + groupId + "-error";
+        Set<String> topics = admin.listTopics().names().get().stream()
+                .filter(name -> name.equals(topic) || name.startsWith(retryPrefix) || name.equals(errorTopic)
+                        || name.equals(invalidTopic))
+                .collect(Collectors.toSet());
+        Map<TopicPartition, OffsetSpec> latest = new HashMap<>();
+        for (TopicDescription description : admin.describeTopics(topics).allTopicNames().get().values()) {
+            description.partitions().forEach(partition -> latest.put(
+                    new TopicPartition(description.name(), partition.partition()), OffsetSpec.latest()));
+        }
+        Map<TopicPartition, OffsetAndMetadata> committed = admin.listConsumerGroupOffsets(groupId)
+                .partitionsToOffsetAndMetadata().get();
+
+        long lag = 0;
+        long retryRecords = 0;
+        long errorRecords = 0;
+        long invalidRecords = 0;
+        for (var entry : admin.listOffsets(latest).all().get().entrySet()) {
+            String name = entry.getKey().topic();
+            long end = entry.getValue().offset();
+            if (name.equals(topic)) {
+                OffsetAndMetadata offset = committed.get(entry.getKey());
+                lag += end - (offset != null ? offset.offset() : 0);
+            } else if (name.startsWith(retryPrefix)) {
+                retryRecords += end;
+            } else if (name.equals(errorTopic)) {
+                errorRecords += end;
+            } else {
+                invalidRecords += end;
+            }
+        }
+        return new Offsets(lag, retryRecords, errorRecords, invalidRecords);
+    }
+
+    private record Offsets(long lag, long retryRecords, long errorRecords, long invalidRecords) {
+    }
+
+    /**
+     * The harness runs on the test classpath, so keeps the test configuration and aspects out of the
+     * application's component scan.
+     */
+    private static class TestComponentExcludeFilter extends TypeExcludeFilter {
+
+        @Override
+        public boolean match(MetadataReader metadataReader, MetadataReaderFactory metadataReaderFactory) {
+            AnnotationMetadata metadata = metadataReader.getAnnotationMetadata();
+            return metadata.hasAnnotation(TestConfiguration.class.getName())
+                    || metadata.hasAnnotation(Aspect.class.getName());
+        }
+    }
+}
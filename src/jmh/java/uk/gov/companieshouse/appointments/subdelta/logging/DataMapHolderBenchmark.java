@@ -0,0 +1,50 @@
+package uk.gov.companieshouse.appointments.subdelta.logging;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Building a record's log map as the listener does, and reusing it for the log lines that follow
+ * until the data map is next changed.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DataMapHolderBenchmark {
+
+    @TearDown
+    public void tearDown() {
+        DataMapHolder.clear();
+    }
+
+    @Benchmark
+    public Map<String, Object> buildRecordLogMap() {
+        DataMapHolder.clear();
+        DataMapHolder.initialise("context_id");
+        DataMapHolder.get()
+                .retryCount(0)
+                .topic("stream-company-profile")
+                .partition(2)
+                .offset(123_456_789L);
+        DataMapHolder.get().companyNumber("12345678");
+        return DataMapHolder.getLogMap();
+    }
+
+    @Benchmark
+    public Map<String, Object> reuseLogMap() {
+        return DataMapHolder.getLogMap();
+    }
+}
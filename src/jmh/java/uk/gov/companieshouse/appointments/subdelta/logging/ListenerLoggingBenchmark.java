@@ -0,0 +1,118 @@
+package uk.gov.companieshouse.appointments.subdelta.logging;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+import uk.gov.companieshouse.stream.EventRecord;
+import uk.gov.companieshouse.stream.ResourceChangedData;
+
+/**
+ * Compares the per-record cost of {@link LoggingRecordInterceptor} with the {@code @Around}
+ * listener aspect it replaced, which proxied the listener and read the record's details from its
+ * arguments. Success lines are sampled out, so the cost of writing logs does not hide the difference.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ListenerLoggingBenchmark {
+
+    private static final String TOPIC = "stream-company-profile";
+
+    private Listener listener;
+    private Listener proxiedListener;
+    private LoggingRecordInterceptor interceptor;
+    private ConsumerRecord<String, ResourceChangedData> consumerRecord;
+    private Message<ResourceChangedData> message;
+
+    @Setup
+    public void setup() {
+        ListenerLogging listenerLogging = new ListenerLogging(5,
+                new HotPathLogging(LogMode.HIGH_THROUGHPUT, Long.MAX_VALUE, 60_000, 0));
+        listener = new Listener();
+        AspectJProxyFactory proxyFactory = new AspectJProxyFactory(new Listener());
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAspect(new ListenerAspect(listenerLogging));
+        proxiedListener = proxyFactory.getProxy();
+        interceptor = new LoggingRecordInterceptor(listenerLogging);
+
+        ResourceChangedData changedData = new ResourceChangedData("company-profile", "/company/12345678",
+                "context_id", "12345678", "{}", new EventRecord("", "changed", Collections.emptyList()));
+        consumerRecord = new ConsumerRecord<>(TOPIC, 0, 42L, "key", changedData);
+        message = MessageBuilder.withPayload(changedData).build();
+
+        // The first success line is always logged, so get it out of the way
+        recordInterceptor();
+    }
+
+    @Benchmark
+    public ResourceChangedData aspect() {
+        return proxiedListener.consume(message, null, TOPIC, 0, 42L);
+    }
+
+    @Benchmark
+    public ResourceChangedData recordInterceptor() {
+        interceptor.intercept(consumerRecord, null);
+        ResourceChangedData result = listener.consume(message, null, TOPIC, 0, 42L);
+        interceptor.success(consumerRecord, null);
+        interceptor.afterRecord(consumerRecord, null);
+        return result;
+    }
+
+    @Benchmark
+    public ResourceChangedData withoutLogging() {
+        return listener.consume(message, null, TOPIC, 0, 42L);
+    }
+
+    /**
+     * A listener with the signature the aspect depended on.
+     */
+    public static class Listener {
+
+        @KafkaListener
+        public ResourceChangedData consume(Message<ResourceChangedData> message, Integer attempts,
+                String topic, Integer partition, Long offset) {
+            return message.getPayload();
+        }
+    }
+
+    /**
+     * The advice of the removed listener aspect.
+     */
+    @Aspect
+    public static class ListenerAspect {
+
+        private final ListenerLogging listenerLogging;
+
+        ListenerAspect(ListenerLogging listenerLogging) {
+            this.listenerLogging = listenerLogging;
+        }
+
+        @Around("@annotation(org.springframework.kafka.annotation.KafkaListener) "
+                + "&& args(org.springframework.messaging.Message, ..)")
+        public Object manageStructuredLogging(ProceedingJoinPoint joinPoint) throws Throwable {
+            Object[] args = joinPoint.getArgs();
+            return listenerLogging.invoke(((Message<?>) args[0]).getPayload(), (Integer) args[1],
+                    (String) args[2], (Integer) args[3], (Long) args[4], joinPoint::proceed);
+        }
+    }
+}
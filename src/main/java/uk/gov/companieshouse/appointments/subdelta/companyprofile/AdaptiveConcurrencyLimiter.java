@@ -0,0 +1,170 @@
+package uk.gov.companieshouse.appointments.subdelta.companyprofile;
+
+import static uk.gov.companieshouse.appointments.subdelta.Application.NAMESPACE;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import uk.gov.companieshouse.appointments.subdelta.exception.RetryableException;
+import uk.gov.companieshouse.appointments.subdelta.logging.DataMapHolder;
+import uk.gov.companieshouse.logging.Logger;
+import uk.gov.companieshouse.logging.LoggerFactory;
+
+/**
+ * Limits the PATCHes in flight to the appointments API with additive increase, multiplicative
+ * decrease (AIMD). While the API answers at its usual latency and the limit is being used, the limit
+ * grows by about one for every limit's worth of responses. A response that is much slower than the
+ * running average, or that signals overload, cuts the limit by {@link #BACKOFF_RATIO}. Responses to
+ * requests sent before the last cut are ignored, so one slow spell only cuts the limit once.
+ * <p>
+ * A caller without a free permit waits for one, so a full limit holds back the listener instead of
+ * sending records to the retry topic. The wait is bounded by the API's read timeout, after which
+ * every request in flight has released its permit. Waits longer than the wait time are logged and
+ * counted.
+ */
+@Component
+public class AdaptiveConcurrencyLimiter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NAMESPACE);
+
+    static final String LIMIT_METRIC = "appointments.consumer.api.concurrency.limit";
+    static final String IN_FLIGHT_METRIC = "appointments.consumer.api.concurrency.in_flight";
+    static final String WAITED_METRIC = "appointments.consumer.api.concurrency.waited";
+
+    private static final String WAITING_MSG = "Waiting for a permit under the appointments API concurrency limit of %d";
+    static final double BACKOFF_RATIO = 0.9;
+    static final double LATENCY_TOLERANCE = 2.0;
+    private static final double SMOOTHING = 0.05;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long waitNanos;
+    private final Counter waited;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition permitReleased = lock.newCondition();
+    private double limit;
+    private int inFlight;
+    private double averageRttNanos;
+    private long lastBackoffNanos = Long.MIN_VALUE;
+
+    public AdaptiveConcurrencyLimiter(MeterRegistry meterRegistry,
+            @Value("${api.limit-initial}") int initialLimit,
+            @Value("${api.limit-min}") int minLimit,
+            @Value("${api.limit-max}") int maxLimit,
+            @Value("${api.limit-wait}") long waitMillis) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = Math.clamp(initialLimit, minLimit, maxLimit);
+        this.waitNanos = TimeUnit.MILLISECONDS.toNanos(waitMillis);
+        this.waited = Counter.builder(WAITED_METRIC)
+                .description("PATCHes that waited longer than the wait time for an appointments API permit")
+                .register(meterRegistry);
+        Gauge.builder(LIMIT_METRIC, this, AdaptiveConcurrencyLimiter::getLimit)
+                .description("PATCHes allowed in flight to the appointments API")
+                .register(meterRegistry);
+        Gauge.builder(IN_FLIGHT_METRIC, this, AdaptiveConcurrencyLimiter::getInFlight)
+                .description("PATCHes in flight to the appointments API")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Wait for a permit to send a PATCH, for as long as it takes a permit to be released.
+     *
+     * @return The permit, which must be released once the API has answered.
+     * @throws RetryableException If interrupted while waiting.
+     */
+    public Permit acquire() {
+        lock.lock();
+        try {
+            long remaining = waitNanos;
+            boolean waitedLong = false;
+            while (inFlight >= (int) limit) {
+                if (remaining > 0) {
+                    remaining = permitReleased.awaitNanos(remaining);
+                } else {
+                    if (!waitedLong) {
+                        waitedLong = true;
+                        waited.increment();
+                        LOGGER.info(String.format(WAITING_MSG, (int) limit), DataMapHolder.getLogMap());
+                    }
+                    permitReleased.await();
+                }
+            }
+            inFlight++;
+            return new Permit(System.nanoTime());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RetryableException("Interrupted waiting for appointments API permit", ex);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void onResponse(long startNanos, long rttNanos, boolean overloaded) {
+        lock.lock();
+        try {
+            int utilised = inFlight;
+            inFlight--;
+            if (startNanos >= lastBackoffNanos) {
+                boolean slow = averageRttNanos > 0 && rttNanos > averageRttNanos * LATENCY_TOLERANCE;
+                if (overloaded || slow) {
+                    limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+                    lastBackoffNanos = System.nanoTime();
+                } else if (utilised * 2 >= limit) {
+                    limit = Math.min(maxLimit, limit + 1 / limit);
+                }
+            }
+            if (!overloaded) {
+                averageRttNanos = averageRttNanos == 0 ? rttNanos
+                        : averageRttNanos + SMOOTHING * (rttNanos - averageRttNanos);
+            }
+            permitReleased.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public double getLimit() {
+        lock.lock();
+        try {
+            return limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Leave to send one PATCH. Release it exactly once.
+     */
+    public final class Permit {
+
+        private final long startNanos;
+
+        private Permit(long startNanos) {
+            this.startNanos = startNanos;
+        }
+
+        /**
+         * @param overloaded True if the API failed in a way that signals overload, such as a 5xx
+         *                   response, a 429 or a timeout.
+         */
+        public void release(boolean overloaded) {
+            onResponse(startNanos, System.nanoTime() - startNanos, overloaded);
+        }
+    }
+}
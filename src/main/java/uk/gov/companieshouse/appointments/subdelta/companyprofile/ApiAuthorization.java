@@ -0,0 +1,21 @@
+package uk.gov.companieshouse.appointments.subdelta.companyprofile;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * The Authorization header for requests to the appointments API.
+ */
+final class ApiAuthorization {
+
+    private ApiAuthorization() {
+    }
+
+    /**
+     * @return The header value, with the API key sent as the basic auth username, as by
+     *         ApiKeyHttpClient.
+     */
+    static String basic(String apiKey) {
+        return "Basic " + Base64.getEncoder().encodeToString((apiKey + ":").getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,134 @@
+package uk.gov.companieshouse.appointments.subdelta.companyprofile;
+
+import static uk.gov.companieshouse.appointments.subdelta.Application.NAMESPACE;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.apache.hc.client5.http.classic.methods.HttpGet;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import uk.gov.companieshouse.logging.Logger;
+import uk.gov.companieshouse.logging.LoggerFactory;
+
+/**
+ * Opens after a run of consecutive failures that show the appointments API is unavailable, as
+ * classified by {@link ResponseHandler}: 5xx and 429 responses, and requests that got no response.
+ * Opening publishes an {@link ApiCircuitBreakerEvent} so that consumption can be paused and records
+ * wait in their topics rather than spend their retry attempts.
+ * <p>
+ * While open, a probe request is sent to the API each time the open duration passes (the half-open
+ * state). The first probe that the API answers with a status {@link ResponseHandler} would not
+ * count as unavailable closes the breaker and publishes the event again. Outcomes
+ * of PATCHes that were already in flight are ignored until then.
+ */
+@Component
+public class ApiCircuitBreaker {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NAMESPACE);
+
+    static final String STATE_METRIC = "appointments.consumer.api.circuit.state";
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final ApplicationEventPublisher eventPublisher;
+    private final CloseableHttpClient httpClient;
+    private final String probeUrl;
+    private final String authorization;
+    private final int failureThreshold;
+    private final long openMillis;
+    private final ScheduledExecutorService scheduler;
+
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+
+    public ApiCircuitBreaker(ApplicationEventPublisher eventPublisher, CloseableHttpClient httpClient,
+            MeterRegistry meterRegistry,
+            @Value("${api.api-url}") String apiUrl,
+            @Value("${api.api-key}") String apiKey,
+            @Value("${api.probe-path}") String probePath,
+            @Value("${api.breaker-threshold}") int failureThreshold,
+            @Value("${api.breaker-open}") long openMillis) {
+        this.eventPublisher = eventPublisher;
+        this.httpClient = httpClient;
+        this.probeUrl = apiUrl + probePath;
+        this.authorization = ApiAuthorization.basic(apiKey);
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("api-circuit-probe").daemon().factory());
+        Gauge.builder(STATE_METRIC, state, current -> current.get().ordinal())
+                .description("Appointments API circuit breaker state: 0 closed, 1 open, 2 half open")
+                .register(meterRegistry);
+    }
+
+    public State getState() {
+        return state.get();
+    }
+
+    public void recordSuccess() {
+        if (state.get() == State.CLOSED) {
+            consecutiveFailures.set(0);
+        }
+    }
+
+    public void recordFailure() {
+        if (failureThreshold > 0 && state.get() == State.CLOSED
+                && consecutiveFailures.incrementAndGet() >= failureThreshold
+                && state.compareAndSet(State.CLOSED, State.OPEN)) {
+            LOGGER.error(String.format("Appointments API failed %d times in a row - opening circuit breaker",
+                    failureThreshold));
+            eventPublisher.publishEvent(new ApiCircuitBreakerEvent(true));
+            scheduleProbe();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    private void scheduleProbe() {
+        scheduler.schedule(this::probe, openMillis, TimeUnit.MILLISECONDS);
+    }
+
+    void probe() {
+        state.set(State.HALF_OPEN);
+        if (isApiAvailable()) {
+            consecutiveFailures.set(0);
+            state.set(State.CLOSED);
+            LOGGER.info("Appointments API probe succeeded - closing circuit breaker");
+            eventPublisher.publishEvent(new ApiCircuitBreakerEvent(false));
+        } else {
+            state.set(State.OPEN);
+            LOGGER.info("Appointments API probe failed - circuit breaker stays open");
+            scheduleProbe();
+        }
+    }
+
+    private boolean isApiAvailable() {
+        try {
+            HttpGet probe = new HttpGet(probeUrl);
+            probe.setHeader("Authorization", authorization);
+            int statusCode = httpClient.execute(probe, response -> {
+                EntityUtils.consume(response.getEntity());
+                return response.getCode();
+            });
+            return !ResponseHandler.isUnavailable(statusCode);
+        } catch (IOException | RuntimeException ex) {
+            LOGGER.debug(String.format("Appointments API probe failed: %s", ex));
+            return false;
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package uk.gov.companieshouse.appointments.subdelta.companyprofile;
+
+/**
+ * Published when the {@link ApiCircuitBreaker} opens or closes.
+ *
+ * @param open True if the appointments API is unavailable and consumption should pause.
+ */
+public record ApiCircuitBreakerEvent(boolean open) {
+
+}
@@ -0,0 +1,134 @@
+package uk.gov.companieshouse.appointments.subdelta.companyprofile;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.core5.http.ClassicHttpRequest;
+import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * The one path by which every client sends requests to the appointments API, so that each request
+ * holds a permit from the {@link AdaptiveConcurrencyLimiter} while in flight. Blocking requests
+ * share the pooled {@link CloseableHttpClient}. Async and bulk requests share the configured
+ * {@link HttpClient}, which multiplexes them over HTTP/2 where the API supports it, and get the
+ * configured read timeout. Every request gets the API's authorization and the caller's request id,
+ * and its latency is timed by response status.
+ */
+@Component
+public class ApiRequestSender {
+
+    static final String PATCH_METRIC = "appointments.consumer.api.patch";
+
+    private static final String IO_ERROR_STATUS = "IO_ERROR";
+    private static final String REQUEST_ID_HEADER = "X-Request-Id";
+
+    private final CloseableHttpClient httpClient;
+    private final HttpClient asyncHttpClient;
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Timer> patchTimers = new ConcurrentHashMap<>();
+    private final String authorization;
+    private final Duration readTimeout;
+    // Async requests wait for a permit on a virtual thread rather than on the caller's
+    private final ExecutorService permitWaiters = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("api-permit-", 0).factory());
+
+    public ApiRequestSender(CloseableHttpClient httpClient, HttpClient asyncHttpClient,
+            AdaptiveConcurrencyLimiter limiter, MeterRegistry meterRegistry,
+            @Value("${api.api-key}") String apiKey,
+            @Value("${api.read-timeout}") long readTimeout) {
+        this.httpClient = httpClient;
+        this.asyncHttpClient = asyncHttpClient;
+        this.limiter = limiter;
+        this.meterRegistry = meterRegistry;
+        this.authorization = ApiAuthorization.basic(apiKey);
+        this.readTimeout = Duration.ofMillis(readTimeout);
+    }
+
+    /**
+     * Send a request, blocking until the API answers.
+     *
+     * @param request   The request, without its authorization or request id.
+     * @param requestId The id of the request for the API's logs.
+     * @return The response status code.
+     * @throws IOException If no response was received.
+     * @throws uk.gov.companieshouse.appointments.subdelta.exception.RetryableException If interrupted
+     *         while waiting for a permit from the limiter.
+     */
+    public int send(ClassicHttpRequest request, String requestId) throws IOException {
+        request.setHeader("Authorization", authorization);
+        request.setHeader(REQUEST_ID_HEADER, requestId);
+        int statusCode = 0;
+        String status = IO_ERROR_STATUS;
+        AdaptiveConcurrencyLimiter.Permit permit = limiter.acquire();
+        long start = System.nanoTime();
+        try {
+            statusCode = httpClient.execute(request, response -> {
+                EntityUtils.consume(response.getEntity());
+                return response.getCode();
+            });
+            status = String.valueOf(statusCode);
+            return statusCode;
+        } finally {
+            patchTimer(status).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            permit.release(statusCode == 0 || isOverloaded(statusCode));
+        }
+    }
+
+    /**
+     * Send a request without blocking.
+     *
+     * @param request   The request, without its authorization, request id or timeout.
+     * @param requestId The id of the request for the API's logs.
+     * @return A future completed with the response, or completed exceptionally if no response was
+     *         received or the wait for a permit from the limiter was interrupted.
+     */
+    public CompletableFuture<HttpResponse<byte[]>> sendAsync(HttpRequest.Builder request, String requestId) {
+        HttpRequest built = request
+                .timeout(readTimeout)
+                .header("Authorization", authorization)
+                .header(REQUEST_ID_HEADER, requestId)
+                .build();
+        return CompletableFuture.supplyAsync(limiter::acquire, permitWaiters)
+                .thenCompose(permit -> {
+                    long start = System.nanoTime();
+                    return asyncHttpClient.sendAsync(built, HttpResponse.BodyHandlers.ofByteArray())
+                            .whenComplete((response, throwable) -> {
+                                patchTimer(throwable != null ? IO_ERROR_STATUS : String.valueOf(response.statusCode()))
+                                        .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                                permit.release(throwable != null || isOverloaded(response.statusCode()));
+                            });
+                });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        permitWaiters.shutdown();
+    }
+
+    private static boolean isOverloaded(int statusCode) {
+        return statusCode == HttpStatus.SC_TOO_MANY_REQUESTS || statusCode >= HttpStatus.SC_SERVER_ERROR;
+    }
+
+    private Timer patchTimer(String status) {
+        return patchTimers.computeIfAbsent(status, key -> Timer.builder(PATCH_METRIC)
+                .description("Latency of PATCHes to the appointments API, excluding time waiting for a permit")
+                .tag("status", key)
+                .register(meterRegistry));
+    }
+}
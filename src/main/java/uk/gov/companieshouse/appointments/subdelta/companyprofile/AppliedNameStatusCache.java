@@ -0,0 +1,261 @@
+package uk.gov.companieshouse.appointments.subdelta.companyprofile;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.Arrays;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Remembers the company name and status last successfully applied to each company's appointments,
+ * so a delta that changes neither can skip the PATCH.
+ * <p>
+ * Company numbers are packed six bits a character into a {@code long} key and the name and status
+ * are reduced to a 64-bit hash, held in an open-addressing table with linear probing. Once the
+ * cache is full, entries are evicted with the CLOCK algorithm: an entry that has been hit since the
+ * hand last passed gets a second chance. Deletion shifts later entries back, so no tombstones are
+ * left behind.
+ * <p>
+ * What another instance applied while it owned a company's partition is not known here, so the cache
+ * is cleared whenever partitions are revoked from or assigned to this instance.
+ */
+@Component
+public class AppliedNameStatusCache {
+
+    static final long UNPACKABLE = 0L;
+    private static final int BITS_PER_CHAR = 6;
+    private static final int MAX_PACKED_LENGTH = Long.SIZE / BITS_PER_CHAR;
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final String PATCHES_AVOIDED_METRIC = "appointments.consumer.patches.avoided";
+    private static final String CACHE_METRIC_PREFIX = "appointments.consumer.applied_cache.";
+
+    private final int capacity;
+    private final int mask;
+    private final long[] keys;
+    private final long[] values;
+    private final long[] referenced;
+    private int size;
+    private int hand;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+    private final Counter unchanged;
+
+    public AppliedNameStatusCache(@Value("${consumer.applied_cache_capacity}") int capacity,
+            MeterRegistry meterRegistry) {
+        this.capacity = Math.max(capacity, 0);
+        int tableSize = this.capacity == 0 ? 0 : tableSize(this.capacity);
+        this.mask = tableSize - 1;
+        this.keys = new long[tableSize];
+        this.values = new long[tableSize];
+        this.referenced = new long[(tableSize + Long.SIZE - 1) / Long.SIZE];
+
+        this.hits = Counter.builder(CACHE_METRIC_PREFIX + "requests")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.misses = Counter.builder(CACHE_METRIC_PREFIX + "requests")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        this.evictions = Counter.builder(CACHE_METRIC_PREFIX + "evictions")
+                .register(meterRegistry);
+        this.unchanged = Counter.builder(PATCHES_AVOIDED_METRIC)
+                .description("PATCHes not sent to the appointments API")
+                .tag("reason", "unchanged")
+                .register(meterRegistry);
+        Gauge.builder(CACHE_METRIC_PREFIX + "size", this, AppliedNameStatusCache::size)
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return True if the name and status are the ones last applied to the company.
+     */
+    public boolean isUnchanged(String companyNumber, String companyName, String companyStatus) {
+        long key = pack(companyNumber);
+        if (capacity == 0 || key == UNPACKABLE) {
+            return false;
+        }
+        boolean hit = contains(key, fingerprint(companyName, companyStatus));
+        if (hit) {
+            hits.increment();
+            unchanged.increment();
+        } else {
+            misses.increment();
+        }
+        return hit;
+    }
+
+    /**
+     * Record the name and status as successfully applied to the company.
+     */
+    public void applied(String companyNumber, String companyName, String companyStatus) {
+        long key = pack(companyNumber);
+        if (capacity == 0 || key == UNPACKABLE) {
+            return;
+        }
+        if (store(key, fingerprint(companyName, companyStatus))) {
+            evictions.increment();
+        }
+    }
+
+    /**
+     * Forget every company, as another consumer may have applied other names and statuses since.
+     */
+    public synchronized void clear() {
+        Arrays.fill(keys, UNPACKABLE);
+        Arrays.fill(values, 0L);
+        Arrays.fill(referenced, 0L);
+        size = 0;
+        hand = 0;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    private synchronized boolean contains(long key, long value) {
+        int slot = slotOf(key);
+        if (keys[slot] == key && values[slot] == value) {
+            setReferenced(slot, true);
+            return true;
+        }
+        return false;
+    }
+
+    private synchronized boolean store(long key, long value) {
+        int slot = slotOf(key);
+        if (keys[slot] == key) {
+            values[slot] = value;
+            setReferenced(slot, true);
+            return false;
+        }
+        boolean evicted = false;
+        if (size == capacity) {
+            evict();
+            evicted = true;
+            slot = slotOf(key);
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        setReferenced(slot, false);
+        size++;
+        return evicted;
+    }
+
+    private void evict() {
+        while (true) {
+            if (keys[hand] != UNPACKABLE) {
+                if (!isReferenced(hand)) {
+                    // The entry shifted into this slot, if any, is the next one the hand considers
+                    delete(hand);
+                    return;
+                }
+                setReferenced(hand, false);
+            }
+            hand = (hand + 1) & mask;
+        }
+    }
+
+    private void delete(int slot) {
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        while (keys[next] != UNPACKABLE) {
+            int home = home(keys[next]);
+            // Only move the entry back if the gap lies between its home slot and where it is now
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                setReferenced(gap, isReferenced(next));
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[gap] = UNPACKABLE;
+        values[gap] = 0L;
+        setReferenced(gap, false);
+        size--;
+    }
+
+    /**
+     * @return The slot holding the key, or the empty slot where it would be inserted.
+     */
+    private int slotOf(long key) {
+        int slot = home(key);
+        while (keys[slot] != UNPACKABLE && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private int home(long key) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+    }
+
+    private boolean isReferenced(int slot) {
+        return (referenced[slot >>> 6] & (1L << slot)) != 0;
+    }
+
+    private void setReferenced(int slot, boolean value) {
+        if (value) {
+            referenced[slot >>> 6] |= 1L << slot;
+        } else {
+            referenced[slot >>> 6] &= ~(1L << slot);
+        }
+    }
+
+    private static int tableSize(int capacity) {
+        // Keep the load factor at or below 0.75 so probe sequences stay short
+        long minimum = (long) capacity * 4 / 3 + 1;
+        if (minimum > 1 << 30) {
+            throw new IllegalArgumentException("Applied cache capacity too large: " + capacity);
+        }
+        int tableSize = 2;
+        while (tableSize < minimum) {
+            tableSize <<= 1;
+        }
+        return tableSize;
+    }
+
+    /**
+     * Pack a company number of up to ten digits and upper case letters into a non-zero long.
+     *
+     * @return The packed company number, or {@link #UNPACKABLE} if it cannot be packed.
+     */
+    static long pack(String companyNumber) {
+        if (companyNumber == null || companyNumber.isEmpty() || companyNumber.length() > MAX_PACKED_LENGTH) {
+            return UNPACKABLE;
+        }
+        long packed = 0L;
+        for (int i = 0; i < companyNumber.length(); i++) {
+            char c = companyNumber.charAt(i);
+            int code;
+            if (c >= '0' && c <= '9') {
+                code = c - '0' + 1;
+            } else if (c >= 'A' && c <= 'Z') {
+                code = c - 'A' + 11;
+            } else {
+                return UNPACKABLE;
+            }
+            // Codes start at one, so numbers of different lengths cannot collide
+            packed = (packed << BITS_PER_CHAR) | code;
+        }
+        return packed;
+    }
+
+    static long fingerprint(String companyName, String companyStatus) {
+        return hash(hash(FNV_OFFSET_BASIS, companyName), companyStatus);
+    }
+
+    private static long hash(long hash, String value) {
+        long result = hash;
+        if (value != null) {
+            for (int i = 0; i < value.length(); i++) {
+                result = (result ^ value.charAt(i)) * FNV_PRIME;
+            }
+        }
+        // Mix in the length so that field boundaries, and null, are part of the hash
+        return (result ^ (value == null ? 0 : value.length() + 1L)) * FNV_PRIME;
+    }
+}
@@ -2,12 +2,21 @@ package uk.gov.companieshouse.appointments.subdelta.companyprofile;
 
 import static uk.gov.companieshouse.appointments.subdelta.Application.NAMESPACE;
 
-import java.util.function.Supplier;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.api.client.http.HttpHeaders;
+import com.google.api.client.http.HttpResponseException;
+import java.io.IOException;
+import java.util.regex.Pattern;
+import org.apache.hc.client5.http.classic.methods.HttpPatch;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.io.entity.ByteArrayEntity;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
-import uk.gov.companieshouse.api.InternalApiClient;
 import uk.gov.companieshouse.api.appointment.PatchAppointmentNameStatusApi;
 import uk.gov.companieshouse.api.error.ApiErrorResponseException;
 import uk.gov.companieshouse.api.handler.exception.URIValidationException;
+import uk.gov.companieshouse.appointments.subdelta.exception.NonRetryableException;
 import uk.gov.companieshouse.appointments.subdelta.logging.DataMapHolder;
 import uk.gov.companieshouse.logging.Logger;
 import uk.gov.companieshouse.logging.LoggerFactory;
@@ -19,31 +28,64 @@ public class AppointmentsClient {
 
     private static final String FAILED_MSG = "Failed updating appointment(s) for resource URI %s";
     private static final String ERROR_MSG = "HTTP response code %s when updating appointment(s) for resource URI %s";
+    private static final String SUCCESS_MSG = "Successfully called PATCH endpoint on Company Appointments API";
+    static final String INVALID_URI_MSG = "Resource URI %s does not match /company/{company_number}/appointments";
 
-    private final Supplier<InternalApiClient> internalApiClientFactory;
+    /**
+     * The resource URIs the appointments API's PATCH endpoint accepts, as checked by the SDK.
+     */
+    static final Pattern RESOURCE_URI_PATTERN = Pattern.compile("/company/[A-Za-z0-9]+/appointments");
+
+    private final ApiRequestSender requestSender;
+    private final ObjectMapper objectMapper;
     private final ResponseHandler responseHandler;
+    private final String apiUrl;
 
-    public AppointmentsClient(Supplier<InternalApiClient> internalApiClientFactory,
-            ResponseHandler responseHandler) {
-        this.internalApiClientFactory = internalApiClientFactory;
+    public AppointmentsClient(ApiRequestSender requestSender, ObjectMapper objectMapper,
+            ResponseHandler responseHandler,
+            @Value("${api.api-url}") String apiUrl) {
+        this.requestSender = requestSender;
+        this.objectMapper = objectMapper;
         this.responseHandler = responseHandler;
+        this.apiUrl = apiUrl;
     }
 
     public void patchCompanyNameAndStatusForAllAppointments(String resourceUri, String companyName, String status) {
-        InternalApiClient client = internalApiClientFactory.get();
-        client.getHttpClient().setRequestId(DataMapHolder.getRequestId());
+        if (!RESOURCE_URI_PATTERN.matcher(resourceUri).matches()) {
+            responseHandler.handle(String.format(FAILED_MSG, resourceUri),
+                    new URIValidationException(String.format(INVALID_URI_MSG, resourceUri)));
+            return;
+        }
+        HttpPatch request;
+        try {
+            request = new HttpPatch(apiUrl + resourceUri);
+        } catch (IllegalArgumentException ex) {
+            responseHandler.handle(String.format(FAILED_MSG, resourceUri),
+                    new URIValidationException(ex.getMessage()));
+            return;
+        }
         try {
-            client.privateDeltaResourceHandler()
-                    .patchCompanyAppointment(resourceUri, new PatchAppointmentNameStatusApi()
-                            .companyName(companyName)
-                            .companyStatus(status))
-                    .execute();
-        } catch (ApiErrorResponseException ex) {
-            responseHandler.handle(
-                    String.format(ERROR_MSG, ex.getStatusCode(), resourceUri), ex);
-        } catch (URIValidationException ex) {
+            request.setEntity(new ByteArrayEntity(objectMapper.writeValueAsBytes(new PatchAppointmentNameStatusApi()
+                    .companyName(companyName)
+                    .companyStatus(status)), ContentType.APPLICATION_JSON));
+        } catch (JsonProcessingException ex) {
+            String message = String.format(FAILED_MSG, resourceUri);
+            LOGGER.error(message, ex, DataMapHolder.getLogMap());
+            throw new NonRetryableException(message, ex);
+        }
+        int statusCode;
+        try {
+            // The request id goes on the request, so the client can be shared between threads
+            statusCode = requestSender.send(request, DataMapHolder.getRequestId());
+        } catch (IOException ex) {
             responseHandler.handle(String.format(FAILED_MSG, resourceUri), ex);
+            return;
+        }
+        if (statusCode < 200 || statusCode >= 300) {
+            responseHandler.handle(String.format(ERROR_MSG, statusCode, resourceUri),
+                    new ApiErrorResponseException(
+                            new HttpResponseException.Builder(statusCode, "", new HttpHeaders())));
         }
-        LOGGER.info("Successfully called PATCH endpoint on Company Appointments API", DataMapHolder.getLogMap());
+        responseHandler.handleSuccess(SUCCESS_MSG);
     }
 }
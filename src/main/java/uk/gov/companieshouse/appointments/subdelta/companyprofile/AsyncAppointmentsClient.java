@@ -0,0 +1,110 @@
+package uk.gov.companieshouse.appointments.subdelta.companyprofile;
+
+import static uk.gov.companieshouse.appointments.subdelta.Application.NAMESPACE;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.api.client.http.HttpHeaders;
+import com.google.api.client.http.HttpResponseException;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import uk.gov.companieshouse.api.appointment.PatchAppointmentNameStatusApi;
+import uk.gov.companieshouse.api.error.ApiErrorResponseException;
+import uk.gov.companieshouse.api.handler.exception.URIValidationException;
+import uk.gov.companieshouse.appointments.subdelta.exception.NonRetryableException;
+import uk.gov.companieshouse.appointments.subdelta.exception.RetryableException;
+import uk.gov.companieshouse.appointments.subdelta.logging.DataMapHolder;
+import uk.gov.companieshouse.logging.Logger;
+import uk.gov.companieshouse.logging.LoggerFactory;
+import uk.gov.companieshouse.logging.util.DataMap.Builder;
+
+/**
+ * Sends the same PATCH as {@link AppointmentsClient} without blocking the calling thread, through
+ * the {@link ApiRequestSender} shared with {@link BulkAppointmentsClient}. Responses are mapped
+ * through {@link ResponseHandler} as for the blocking client.
+ */
+@Component
+public class AsyncAppointmentsClient {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NAMESPACE);
+
+    private static final String FAILED_MSG = "Failed updating appointment(s) for resource URI %s";
+    private static final String ERROR_MSG = "HTTP response code %s when updating appointment(s) for resource URI %s";
+    private static final String SUCCESS_MSG = "Successfully called PATCH endpoint on Company Appointments API";
+
+    private final ApiRequestSender requestSender;
+    private final ObjectMapper objectMapper;
+    private final ResponseHandler responseHandler;
+    private final String apiUrl;
+
+    public AsyncAppointmentsClient(ApiRequestSender requestSender, ObjectMapper objectMapper,
+            ResponseHandler responseHandler,
+            @Value("${api.api-url}") String apiUrl) {
+        this.requestSender = requestSender;
+        this.objectMapper = objectMapper;
+        this.responseHandler = responseHandler;
+        this.apiUrl = apiUrl;
+    }
+
+    /**
+     * Start the PATCH for every appointment of a company.
+     *
+     * @return A future completed when the API has accepted the PATCH, or completed exceptionally
+     *         with a {@link RetryableException} or {@link NonRetryableException}.
+     */
+    public CompletableFuture<Void> patchCompanyNameAndStatusForAllAppointments(String resourceUri,
+            String companyName, String status) {
+        if (!AppointmentsClient.RESOURCE_URI_PATTERN.matcher(resourceUri).matches()) {
+            String message = String.format(FAILED_MSG, resourceUri);
+            URIValidationException ex = new URIValidationException(
+                    String.format(AppointmentsClient.INVALID_URI_MSG, resourceUri));
+            LOGGER.error(message, ex, DataMapHolder.getLogMap());
+            return CompletableFuture.failedFuture(new NonRetryableException(message, ex));
+        }
+        HttpRequest.Builder request;
+        try {
+            request = HttpRequest.newBuilder(URI.create(apiUrl + resourceUri))
+                    .header("Content-Type", "application/json")
+                    .method("PATCH", HttpRequest.BodyPublishers.ofByteArray(
+                            objectMapper.writeValueAsBytes(new PatchAppointmentNameStatusApi()
+                                    .companyName(companyName)
+                                    .companyStatus(status))));
+        } catch (IllegalArgumentException | JsonProcessingException ex) {
+            String message = String.format(FAILED_MSG, resourceUri);
+            LOGGER.error(message, ex, DataMapHolder.getLogMap());
+            return CompletableFuture.failedFuture(new NonRetryableException(message, ex));
+        }
+
+        Builder dataMap = DataMapHolder.get();
+        return requestSender.sendAsync(request, DataMapHolder.getRequestId())
+                .handle((response, throwable) -> DataMapHolder.callWith(dataMap,
+                        () -> handleResponse(resourceUri, response, throwable)));
+    }
+
+    private Void handleResponse(String resourceUri, HttpResponse<byte[]> response, Throwable throwable) {
+        if (throwable != null) {
+            Throwable cause = throwable instanceof CompletionException ? throwable.getCause() : throwable;
+            if (cause instanceof RetryableException interrupted) {
+                // Interrupted waiting for a permit from the limiter, so the API was never called
+                throw interrupted;
+            }
+            responseHandler.handle(String.format(FAILED_MSG, resourceUri),
+                    cause instanceof IOException ioException ? ioException : new IOException(cause));
+            return null;
+        }
+        int statusCode = response.statusCode();
+        if (statusCode < 200 || statusCode >= 300) {
+            responseHandler.handle(String.format(ERROR_MSG, statusCode, resourceUri),
+                    new ApiErrorResponseException(
+                            new HttpResponseException.Builder(statusCode, "", new HttpHeaders())));
+        }
+        responseHandler.handleSuccess(SUCCESS_MSG);
+        return null;
+    }
+}
@@ -0,0 +1,261 @@
+package uk.gov.companieshouse.appointments.subdelta.companyprofile;
+
+import static uk.gov.companieshouse.appointments.subdelta.Application.NAMESPACE;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.api.client.http.HttpHeaders;
+import com.google.api.client.http.HttpResponseException;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import uk.gov.companieshouse.api.error.ApiErrorResponseException;
+import uk.gov.companieshouse.appointments.subdelta.exception.NonRetryableException;
+import uk.gov.companieshouse.appointments.subdelta.exception.RetryableException;
+import uk.gov.companieshouse.appointments.subdelta.logging.DataMapHolder;
+import uk.gov.companieshouse.logging.Logger;
+import uk.gov.companieshouse.logging.LoggerFactory;
+import uk.gov.companieshouse.logging.util.DataMap.Builder;
+
+/**
+ * Groups company name and status updates into a single PATCH to the bulk endpoint of the
+ * appointments API. A group is sent once it reaches the bulk size, or once its first update has
+ * waited for the linger time, whichever comes first.
+ * <p>
+ * The API answers with a status for each company, and each one is mapped through
+ * {@link ResponseHandler} on its own, so one rejected company fails only its own update. The
+ * circuit breaker counts each group once, by the status of the request as a whole, so a group of
+ * many companies does not open it on its own. A company only appears once in a group; a second
+ * update for it sends the pending group first.
+ * <p>
+ * Groups are sent through the {@link ApiRequestSender} shared with {@link AsyncAppointmentsClient}.
+ */
+@Component
+public class BulkAppointmentsClient {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NAMESPACE);
+
+    private static final String FAILED_MSG = "Failed bulk updating appointment(s) for company number %s";
+    private static final String ERROR_MSG = "HTTP response code %s when bulk updating appointment(s) for company number %s";
+    private static final String MISSING_RESULT_MSG = "No bulk update result for company number %s";
+    private static final String SUCCESS_MSG = "Successfully called bulk PATCH endpoint on Company Appointments API";
+    private static final int MULTI_STATUS = 207;
+
+    private final ApiRequestSender requestSender;
+    private final ObjectMapper objectMapper;
+    private final ResponseHandler responseHandler;
+    private final URI bulkUri;
+    private final int bulkSize;
+    private final long lingerMillis;
+    private final ScheduledExecutorService scheduler;
+
+    private final Object lock = new Object();
+    private Map<String, PendingUpdate> pending = new LinkedHashMap<>();
+    private ScheduledFuture<?> lingerFlush;
+
+    public BulkAppointmentsClient(ApiRequestSender requestSender, ObjectMapper objectMapper,
+            ResponseHandler responseHandler,
+            @Value("${api.api-url}") String apiUrl,
+            @Value("${api.bulk-path}") String bulkPath,
+            @Value("${api.bulk-size}") int bulkSize,
+            @Value("${api.bulk-linger}") long lingerMillis) {
+        this.requestSender = requestSender;
+        this.objectMapper = objectMapper;
+        this.responseHandler = responseHandler;
+        this.bulkUri = URI.create(apiUrl + bulkPath);
+        this.bulkSize = bulkSize;
+        this.lingerMillis = lingerMillis;
+        // Only needed to send groups after the linger time, so only started when bulking is enabled
+        this.scheduler = isEnabled()
+                ? Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("bulk-flush").daemon().factory())
+                : null;
+    }
+
+    /**
+     * @return True if updates should be sent through this client, false if bulk mode is disabled.
+     */
+    public boolean isEnabled() {
+        return bulkSize > 1;
+    }
+
+    /**
+     * Add an update to the pending group.
+     *
+     * @return A future completed when the API has applied this company's update, or completed
+     *         exceptionally with a {@link RetryableException} or {@link NonRetryableException}.
+     */
+    public CompletableFuture<Void> patchCompanyNameAndStatusForAllAppointments(String companyNumber,
+            String companyName, String status) {
+        PendingUpdate update = new PendingUpdate(companyNumber, companyName, status,
+                DataMapHolder.getRequestId(), DataMapHolder.get(), new CompletableFuture<>());
+        List<Collection<PendingUpdate>> ready = new ArrayList<>(2);
+        synchronized (lock) {
+            if (pending.containsKey(companyNumber)) {
+                ready.add(takePending());
+            }
+            pending.put(companyNumber, update);
+            if (pending.size() >= bulkSize) {
+                ready.add(takePending());
+            } else if (pending.size() == 1) {
+                lingerFlush = scheduler.schedule(this::flush, lingerMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+        ready.forEach(this::send);
+        return update.result();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+    }
+
+    /**
+     * Send the pending group now, if there is one.
+     */
+    public void flush() {
+        Collection<PendingUpdate> updates;
+        synchronized (lock) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            updates = takePending();
+        }
+        send(updates);
+    }
+
+    private Collection<PendingUpdate> takePending() {
+        if (lingerFlush != null) {
+            lingerFlush.cancel(false);
+            lingerFlush = null;
+        }
+        Collection<PendingUpdate> updates = pending.values();
+        pending = new LinkedHashMap<>();
+        return updates;
+    }
+
+    private void send(Collection<PendingUpdate> updates) {
+        HttpRequest.Builder request;
+        try {
+            request = HttpRequest.newBuilder(bulkUri)
+                    .header("Content-Type", "application/json")
+                    .method("PATCH", HttpRequest.BodyPublishers.ofByteArray(body(updates)));
+        } catch (IllegalArgumentException | IOException ex) {
+            updates.forEach(update -> fail(update, new NonRetryableException(
+                    String.format(FAILED_MSG, update.companyNumber()), ex)));
+            return;
+        }
+        LOGGER.debug(String.format("Sending bulk PATCH for %d companies", updates.size()));
+        // Each company's own request id stays on its log lines, the group borrows the first
+        requestSender.sendAsync(request, updates.iterator().next().requestId())
+                .whenComplete((response, throwable) -> handleResponse(updates, response, throwable));
+    }
+
+    private byte[] body(Collection<PendingUpdate> updates) throws IOException {
+        ObjectNode body = objectMapper.createObjectNode();
+        ArrayNode items = body.putArray("items");
+        for (PendingUpdate update : updates) {
+            items.addObject()
+                    .put("company_number", update.companyNumber())
+                    .put("company_name", update.companyName())
+                    .put("company_status", update.companyStatus());
+        }
+        return objectMapper.writeValueAsBytes(body);
+    }
+
+    private void handleResponse(Collection<PendingUpdate> updates, HttpResponse<byte[]> response,
+            Throwable throwable) {
+        if (throwable != null) {
+            Throwable cause = throwable instanceof CompletionException ? throwable.getCause() : throwable;
+            if (cause instanceof RetryableException interrupted) {
+                // Interrupted waiting for a permit from the limiter, so the API was never called
+                updates.forEach(update -> fail(update, interrupted));
+                return;
+            }
+            IOException ex = cause instanceof IOException ioException ? ioException : new IOException(cause);
+            responseHandler.recordNoResponse();
+            for (PendingUpdate update : updates) {
+                DataMapHolder.callWith(update.dataMap(), () -> update.result().completeExceptionally(
+                        responseHandler.classify(String.format(FAILED_MSG, update.companyNumber()), ex)));
+            }
+            return;
+        }
+        responseHandler.recordResponse(response.statusCode());
+        Map<String, Integer> statuses;
+        if (response.statusCode() == MULTI_STATUS || response.statusCode() == 200) {
+            try {
+                statuses = companyStatuses(response.body());
+            } catch (IOException ex) {
+                updates.forEach(update -> fail(update, new RetryableException(
+                        String.format(FAILED_MSG, update.companyNumber()), ex)));
+                return;
+            }
+        } else {
+            // The request as a whole failed, so every company shares its status
+            statuses = null;
+        }
+        for (PendingUpdate update : updates) {
+            Integer statusCode = statuses == null ? Integer.valueOf(response.statusCode())
+                    : statuses.get(update.companyNumber());
+            DataMapHolder.callWith(update.dataMap(), () -> complete(update, statusCode));
+        }
+    }
+
+    private Map<String, Integer> companyStatuses(byte[] body) throws IOException {
+        Map<String, Integer> statuses = new HashMap<>();
+        for (JsonNode result : objectMapper.readTree(body).path("results")) {
+            statuses.put(result.path("company_number").asText(), result.path("status").asInt());
+        }
+        return statuses;
+    }
+
+    private Void complete(PendingUpdate update, Integer statusCode) {
+        if (statusCode == null) {
+            String message = String.format(MISSING_RESULT_MSG, update.companyNumber());
+            LOGGER.info(message, DataMapHolder.getLogMap());
+            update.result().completeExceptionally(new RetryableException(message, null));
+            return null;
+        }
+        if (statusCode >= 200 && statusCode < 300) {
+            responseHandler.logSuccess(SUCCESS_MSG);
+            update.result().complete(null);
+            return null;
+        }
+        String message = String.format(ERROR_MSG, statusCode, update.companyNumber());
+        update.result().completeExceptionally(responseHandler.classify(message, new ApiErrorResponseException(
+                new HttpResponseException.Builder(statusCode, "", new HttpHeaders()))));
+        return null;
+    }
+
+    private static void fail(PendingUpdate update, RuntimeException ex) {
+        DataMapHolder.callWith(update.dataMap(), () -> {
+            LOGGER.info(ex.getMessage(), DataMapHolder.getLogMap());
+            return update.result().completeExceptionally(ex);
+        });
+    }
+
+    private record PendingUpdate(String companyNumber, String companyName, String companyStatus,
+                                 String requestId, Builder dataMap, CompletableFuture<Void> result) {
+
+    }
+}
@@ -2,10 +2,12 @@ package uk.gov.companieshouse.appointments.subdelta.companyprofile;
 
 import static uk.gov.companieshouse.appointments.subdelta.Application.NAMESPACE;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import org.springframework.stereotype.Component;
-import uk.gov.companieshouse.api.company.Data;
 import uk.gov.companieshouse.appointments.subdelta.exception.NonRetryableException;
 import uk.gov.companieshouse.appointments.subdelta.logging.DataMapHolder;
 import uk.gov.companieshouse.logging.Logger;
@@ -15,33 +17,118 @@ import uk.gov.companieshouse.stream.ResourceChangedData;
 @Component
 public class CompanyProfileChangedService implements Service {
 
+    static final String PARSE_METRIC = "appointments.consumer.parse";
+
     private static final Logger LOGGER = LoggerFactory.getLogger(NAMESPACE);
     private static final String DESERIALISE_FAILED_MESSAGE = "Failed to deserialise company profile data";
     private static final String DESERIALISE_SUCCEEDED_MESSAGE = "Deserialise company profile data succeeded";
+    private static final String UNCHANGED_MESSAGE = "Company name and status unchanged - skipping PATCH";
     private static final String EXISTING_APPOINTMENTS_URI_SUFFIX = "/appointments";
 
     private final AppointmentsClient appointmentsClient;
-    private final ObjectMapper objectMapper;
+    private final CompanyProfileFieldExtractor fieldExtractor;
+    private final AppliedNameStatusCache appliedCache;
+    private final AsyncAppointmentsClient asyncAppointmentsClient;
+    private final BulkAppointmentsClient bulkAppointmentsClient;
+    private final Timer parsed;
+    private final Timer parseFailed;
 
-    public CompanyProfileChangedService(AppointmentsClient appointmentsClient, ObjectMapper objectMapper) {
+    public CompanyProfileChangedService(AppointmentsClient appointmentsClient,
+            CompanyProfileFieldExtractor fieldExtractor, AppliedNameStatusCache appliedCache,
+            AsyncAppointmentsClient asyncAppointmentsClient, BulkAppointmentsClient bulkAppointmentsClient,
+            MeterRegistry meterRegistry) {
         this.appointmentsClient = appointmentsClient;
-        this.objectMapper = objectMapper;
+        this.fieldExtractor = fieldExtractor;
+        this.appliedCache = appliedCache;
+        this.asyncAppointmentsClient = asyncAppointmentsClient;
+        this.bulkAppointmentsClient = bulkAppointmentsClient;
+        this.parsed = parseTimer(meterRegistry, "success");
+        this.parseFailed = parseTimer(meterRegistry, "failure");
     }
 
     @Override
     public void processMessage(ResourceChangedData changedData) {
-        Data companyProfileData;
+        CompanyProfileFields companyProfileFields = extractFields(changedData);
+        String companyNumber = changedData.getResourceId();
+        if (isUnchanged(companyNumber, companyProfileFields)) {
+            return;
+        }
+
+        if (bulkAppointmentsClient.isEnabled()) {
+            // Blocks until the group is sent, so only worthwhile when many records are in flight
+            join(bulkAppointmentsClient.patchCompanyNameAndStatusForAllAppointments(companyNumber,
+                    companyProfileFields.companyName(), companyProfileFields.companyStatus()));
+        } else {
+            String uri = changedData.getResourceUri() + EXISTING_APPOINTMENTS_URI_SUFFIX;
+
+            appointmentsClient.patchCompanyNameAndStatusForAllAppointments(uri, companyProfileFields.companyName(),
+                    companyProfileFields.companyStatus());
+        }
+        appliedCache.applied(companyNumber, companyProfileFields.companyName(),
+                companyProfileFields.companyStatus());
+    }
+
+    @Override
+    public CompletableFuture<Void> processMessageAsync(ResourceChangedData changedData) {
+        CompanyProfileFields companyProfileFields = extractFields(changedData);
+        String companyNumber = changedData.getResourceId();
+        if (isUnchanged(companyNumber, companyProfileFields)) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        CompletableFuture<Void> patch;
+        if (bulkAppointmentsClient.isEnabled()) {
+            patch = bulkAppointmentsClient.patchCompanyNameAndStatusForAllAppointments(companyNumber,
+                    companyProfileFields.companyName(), companyProfileFields.companyStatus());
+        } else {
+            String uri = changedData.getResourceUri() + EXISTING_APPOINTMENTS_URI_SUFFIX;
+            patch = asyncAppointmentsClient.patchCompanyNameAndStatusForAllAppointments(uri,
+                    companyProfileFields.companyName(), companyProfileFields.companyStatus());
+        }
+        return patch.thenRun(() -> appliedCache.applied(companyNumber, companyProfileFields.companyName(),
+                        companyProfileFields.companyStatus()));
+    }
+
+    private CompanyProfileFields extractFields(ResourceChangedData changedData) {
+        CompanyProfileFields companyProfileFields;
+        Timer.Sample sample = Timer.start();
         try {
-            companyProfileData = objectMapper.readValue(changedData.getData(), Data.class);
-        } catch (JsonProcessingException ex) {
+            companyProfileFields = fieldExtractor.extract(changedData);
+            sample.stop(parsed);
+        } catch (IOException ex) {
+            sample.stop(parseFailed);
             LOGGER.error(DESERIALISE_FAILED_MESSAGE, DataMapHolder.getLogMap());
             throw new NonRetryableException(DESERIALISE_FAILED_MESSAGE, ex);
         }
 
         LOGGER.debug(DESERIALISE_SUCCEEDED_MESSAGE, DataMapHolder.getLogMap());
-        String uri = changedData.getResourceUri() + EXISTING_APPOINTMENTS_URI_SUFFIX;
+        return companyProfileFields;
+    }
+
+    private static void join(CompletableFuture<Void> patch) {
+        try {
+            patch.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw ex;
+        }
+    }
+
+    private boolean isUnchanged(String companyNumber, CompanyProfileFields companyProfileFields) {
+        if (appliedCache.isUnchanged(companyNumber, companyProfileFields.companyName(),
+                companyProfileFields.companyStatus())) {
+            LOGGER.info(UNCHANGED_MESSAGE, DataMapHolder.getLogMap());
+            return true;
+        }
+        return false;
+    }
 
-        appointmentsClient.patchCompanyNameAndStatusForAllAppointments(uri, companyProfileData.getCompanyName(),
-                companyProfileData.getCompanyStatus());
+    private static Timer parseTimer(MeterRegistry meterRegistry, String outcome) {
+        return Timer.builder(PARSE_METRIC)
+                .description("Time to parse the company name and status from the company profile JSON")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
     }
 }
@@ -0,0 +1,83 @@
+package uk.gov.companieshouse.appointments.subdelta.companyprofile;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import org.springframework.stereotype.Component;
+import uk.gov.companieshouse.appointments.subdelta.kafka.LazyResourceChangedData;
+import uk.gov.companieshouse.stream.ResourceChangedData;
+
+/**
+ * Pulls the company name and status out of company profile JSON with the streaming parser,
+ * skipping every other field and stopping as soon as both have been seen. Where the data field is
+ * still held as Avro bytes it is parsed from them directly.
+ */
+@Component
+public class CompanyProfileFieldExtractor {
+
+    private static final String COMPANY_NAME = "company_name";
+    private static final String COMPANY_STATUS = "company_status";
+
+    private final JsonFactory jsonFactory;
+
+    public CompanyProfileFieldExtractor(ObjectMapper objectMapper) {
+        this.jsonFactory = objectMapper.getFactory();
+    }
+
+    /**
+     * @param changedData A company profile delta.
+     * @return The company name and status from its data.
+     * @throws IOException If the data is not a JSON object, or either field is not a scalar.
+     */
+    public CompanyProfileFields extract(ResourceChangedData changedData) throws IOException {
+        try (JsonParser parser = createParser(changedData)) {
+            return extract(parser);
+        }
+    }
+
+    private JsonParser createParser(ResourceChangedData changedData) throws IOException {
+        if (changedData instanceof LazyResourceChangedData lazyData && lazyData.isDataDeferred()) {
+            return jsonFactory.createParser(lazyData.getDataSource(), lazyData.getDataOffset(),
+                    lazyData.getDataLength());
+        }
+        return jsonFactory.createParser(changedData.getData());
+    }
+
+    private static CompanyProfileFields extract(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new JsonParseException(parser, "Company profile data is not a JSON object");
+        }
+        String companyName = null;
+        String companyStatus = null;
+        boolean nameFound = false;
+        boolean statusFound = false;
+        String fieldName;
+        while (!(nameFound && statusFound) && (fieldName = parser.nextFieldName()) != null) {
+            JsonToken token = parser.nextToken();
+            if (COMPANY_NAME.equals(fieldName)) {
+                companyName = scalarValue(parser, token);
+                nameFound = true;
+            } else if (COMPANY_STATUS.equals(fieldName)) {
+                companyStatus = scalarValue(parser, token);
+                statusFound = true;
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return new CompanyProfileFields(companyName, companyStatus);
+    }
+
+    private static String scalarValue(JsonParser parser, JsonToken token) throws IOException {
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (!token.isScalarValue()) {
+            throw new JsonParseException(parser,
+                    String.format("Expected a scalar value for %s", parser.currentName()));
+        }
+        return parser.getValueAsString();
+    }
+}
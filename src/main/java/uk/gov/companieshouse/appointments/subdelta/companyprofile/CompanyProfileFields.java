@@ -0,0 +1,10 @@
+package uk.gov.companieshouse.appointments.subdelta.companyprofile;
+
+/**
+ * The fields of a company profile that are copied onto its appointments.
+ *
+ * @param companyName   The company name, or null if absent.
+ * @param companyStatus The company status, or null if absent.
+ */
+public record CompanyProfileFields(String companyName, String companyStatus) {
+}
@@ -0,0 +1,52 @@
+package uk.gov.companieshouse.appointments.subdelta.companyprofile;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.io.ConnectionEndpoint;
+import org.apache.hc.client5.http.io.LeaseRequest;
+import org.apache.hc.core5.util.Timeout;
+
+/**
+ * A connection pool that records how long each request waits to lease a connection, so that a
+ * pool too small for the listener concurrency shows up as wait time rather than just latency.
+ */
+public class InstrumentedConnectionManager extends PoolingHttpClientConnectionManager {
+
+    static final String LEASE_WAIT_METRIC = "appointments.consumer.api.pool.lease.wait";
+
+    private final Timer leaseWait;
+
+    public InstrumentedConnectionManager(MeterRegistry meterRegistry) {
+        this.leaseWait = Timer.builder(LEASE_WAIT_METRIC)
+                .description("Time spent waiting to lease a connection to the appointments API")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public LeaseRequest lease(String id, HttpRoute route, Timeout requestTimeout, Object state) {
+        LeaseRequest leaseRequest = super.lease(id, route, requestTimeout, state);
+        return new LeaseRequest() {
+
+            @Override
+            public ConnectionEndpoint get(Timeout timeout)
+                    throws InterruptedException, ExecutionException, TimeoutException {
+                long start = System.nanoTime();
+                try {
+                    return leaseRequest.get(timeout);
+                } finally {
+                    leaseWait.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                }
+            }
+
+            @Override
+            public boolean cancel() {
+                return leaseRequest.cancel();
+            }
+        };
+    }
+}
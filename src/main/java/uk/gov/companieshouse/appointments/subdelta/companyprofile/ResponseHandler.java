@@ -2,7 +2,7 @@ package uk.gov.companieshouse.appointments.subdelta.companyprofile;
 
 import static uk.gov.companieshouse.appointments.subdelta.Application.NAMESPACE;
 
-import java.util.Arrays;
+import java.io.IOException;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
 import uk.gov.companieshouse.api.error.ApiErrorResponseException;
@@ -10,6 +10,8 @@ import uk.gov.companieshouse.api.handler.exception.URIValidationException;
 import uk.gov.companieshouse.appointments.subdelta.exception.NonRetryableException;
 import uk.gov.companieshouse.appointments.subdelta.exception.RetryableException;
 import uk.gov.companieshouse.appointments.subdelta.logging.DataMapHolder;
+import uk.gov.companieshouse.appointments.subdelta.logging.HotPathLogging;
+import uk.gov.companieshouse.appointments.subdelta.logging.LogSampler;
 import uk.gov.companieshouse.logging.Logger;
 import uk.gov.companieshouse.logging.LoggerFactory;
 
@@ -20,20 +22,89 @@ public class ResponseHandler {
 
     private static final String API_INFO_RESPONSE_MESSAGE = "Call to API failed, status code: %d. %s";
 
+    private final ApiCircuitBreaker circuitBreaker;
+    private final HotPathLogging hotPathLogging;
+    private final LogSampler successLog;
+
+    public ResponseHandler(ApiCircuitBreaker circuitBreaker, HotPathLogging hotPathLogging) {
+        this.circuitBreaker = circuitBreaker;
+        this.hotPathLogging = hotPathLogging;
+        this.successLog = hotPathLogging.successSampler();
+    }
+
+    public void handleSuccess(String message) {
+        circuitBreaker.recordSuccess();
+        logSuccess(message);
+    }
+
     public void handle(String message, URIValidationException ex) {
         LOGGER.error(message, ex, DataMapHolder.getLogMap());
         throw new NonRetryableException(message, ex);
     }
 
     public void handle(String message, ApiErrorResponseException ex) {
+        recordResponse(ex.getStatusCode());
+        throw classify(message, ex);
+    }
+
+    public void handle(String message, IOException ex) {
+        recordNoResponse();
+        throw classify(message, ex);
+    }
+
+    /**
+     * Record that the API answered a request with the status code, for the circuit breaker. Used
+     * with the classify methods when one request carries several updates, so that the request
+     * counts once towards the API's availability however many updates it carried.
+     */
+    public void recordResponse(int statusCode) {
+        if (isUnavailable(statusCode)) {
+            circuitBreaker.recordFailure();
+        } else {
+            // The API answered, so a rejected request still counts towards it being available
+            circuitBreaker.recordSuccess();
+        }
+    }
+
+    /**
+     * Record that a request got no response from the API, for the circuit breaker.
+     */
+    public void recordNoResponse() {
+        circuitBreaker.recordFailure();
+    }
+
+    public void logSuccess(String message) {
+        if (successLog.sample()) {
+            LOGGER.info(message, DataMapHolder.getLogMap());
+        }
+    }
+
+    /**
+     * Log an error response and map it to the exception to fail the update with, without recording
+     * it for the circuit breaker.
+     */
+    public RuntimeException classify(String message, ApiErrorResponseException ex) {
         if (HttpStatus.BAD_REQUEST.value() == ex.getStatusCode() || HttpStatus.CONFLICT.value() == ex.getStatusCode()) {
             LOGGER.error(message, ex, DataMapHolder.getLogMap());
-            throw new NonRetryableException(message, ex);
-        } else {
-            LOGGER.info(
-                    String.format(API_INFO_RESPONSE_MESSAGE, ex.getStatusCode(), Arrays.toString(ex.getStackTrace())),
-                    DataMapHolder.getLogMap());
-            throw new RetryableException(message, ex);
+            return new NonRetryableException(message, ex);
         }
+        LOGGER.info(
+                String.format(API_INFO_RESPONSE_MESSAGE, ex.getStatusCode(), hotPathLogging.stackTrace(ex)),
+                DataMapHolder.getLogMap());
+        return new RetryableException(message, ex);
+    }
+
+    /**
+     * Log a request that got no response and map it to the exception to fail the update with,
+     * without recording it for the circuit breaker.
+     */
+    public RuntimeException classify(String message, IOException ex) {
+        LOGGER.info(String.format("%s: %s", message, ex), DataMapHolder.getLogMap());
+        return new RetryableException(message, ex);
+    }
+
+    static boolean isUnavailable(int statusCode) {
+        return statusCode == HttpStatus.TOO_MANY_REQUESTS.value()
+                || statusCode >= HttpStatus.INTERNAL_SERVER_ERROR.value();
     }
 }
@@ -1,8 +1,22 @@
 package uk.gov.companieshouse.appointments.subdelta.companyprofile;
 
+import java.util.concurrent.CompletableFuture;
 import uk.gov.companieshouse.stream.ResourceChangedData;
 
 public interface Service {
 
     void processMessage(ResourceChangedData changedData);
-}
\ No newline at end of file
+
+    /**
+     * Process the message without blocking. By default it is processed on the calling thread, and
+     * the future is completed, or completed exceptionally, when it returns.
+     */
+    default CompletableFuture<Void> processMessageAsync(ResourceChangedData changedData) {
+        try {
+            processMessage(changedData);
+            return CompletableFuture.completedFuture(null);
+        } catch (RuntimeException ex) {
+            return CompletableFuture.failedFuture(ex);
+        }
+    }
+}
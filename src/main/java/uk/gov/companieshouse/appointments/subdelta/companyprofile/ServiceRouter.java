@@ -2,6 +2,9 @@ package uk.gov.companieshouse.appointments.subdelta.companyprofile;
 
 import static uk.gov.companieshouse.appointments.subdelta.Application.NAMESPACE;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.concurrent.CompletableFuture;
 import org.springframework.stereotype.Component;
 import uk.gov.companieshouse.appointments.subdelta.logging.DataMapHolder;
 import uk.gov.companieshouse.logging.Logger;
@@ -11,23 +14,50 @@ import uk.gov.companieshouse.stream.ResourceChangedData;
 @Component
 public class ServiceRouter {
 
+    static final String ROUTED_METRIC = "appointments.consumer.routed";
+
     private static final Logger LOGGER = LoggerFactory.getLogger(NAMESPACE);
     private static final String SUCCESS_MESSAGE = "Event type changed - processing message";
     private static final String NOT_PROCESSED_MESSAGE = "Message was not processed as event type was not 'changed'";
     private static final String EVENT_TYPE_CHANGED = "changed";
 
     private final Service companyProfileChangedService;
+    private final Counter processed;
+    private final Counter skipped;
 
-    public ServiceRouter(Service companyProfileService) {
+    public ServiceRouter(Service companyProfileService, MeterRegistry meterRegistry) {
         this.companyProfileChangedService = companyProfileService;
+        this.processed = routedCounter(meterRegistry, "processed");
+        this.skipped = routedCounter(meterRegistry, "skipped");
     }
 
     public void route(ResourceChangedData changedData) {
         if (EVENT_TYPE_CHANGED.equals(changedData.getEvent().getType())) {
             LOGGER.debug(SUCCESS_MESSAGE, DataMapHolder.getLogMap());
+            processed.increment();
             companyProfileChangedService.processMessage(changedData);
         } else {
             LOGGER.info(NOT_PROCESSED_MESSAGE, DataMapHolder.getLogMap());
+            skipped.increment();
+        }
+    }
+
+    public CompletableFuture<Void> routeAsync(ResourceChangedData changedData) {
+        if (EVENT_TYPE_CHANGED.equals(changedData.getEvent().getType())) {
+            LOGGER.debug(SUCCESS_MESSAGE, DataMapHolder.getLogMap());
+            processed.increment();
+            return companyProfileChangedService.processMessageAsync(changedData);
+        } else {
+            LOGGER.info(NOT_PROCESSED_MESSAGE, DataMapHolder.getLogMap());
+            skipped.increment();
+            return CompletableFuture.completedFuture(null);
         }
     }
+
+    private static Counter routedCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder(ROUTED_METRIC)
+                .description("Messages routed by event type")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
 }
@@ -0,0 +1,245 @@
+package uk.gov.companieshouse.appointments.subdelta.kafka;
+
+import static uk.gov.companieshouse.appointments.subdelta.Application.NAMESPACE;
+
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Component;
+import uk.gov.companieshouse.appointments.subdelta.companyprofile.ServiceRouter;
+import uk.gov.companieshouse.appointments.subdelta.exception.NonRetryableException;
+import uk.gov.companieshouse.appointments.subdelta.exception.RetryableException;
+import uk.gov.companieshouse.appointments.subdelta.logging.DataMapHolder;
+import uk.gov.companieshouse.appointments.subdelta.logging.ListenerLogging;
+import uk.gov.companieshouse.logging.Logger;
+import uk.gov.companieshouse.logging.LoggerFactory;
+import uk.gov.companieshouse.logging.util.DataMap.Builder;
+import uk.gov.companieshouse.stream.ResourceChangedData;
+
+/**
+ * Consumes the company-profile Kafka topic without waiting for each record to be processed when
+ * async or parallel processing is enabled. In async mode the PATCH is sent without blocking; in
+ * parallel mode each record is processed on its own virtual thread. Either way, records for the
+ * same company are processed in offset order and records for different companies overlap.
+ * <p>
+ * Each record is marked complete with the {@link OffsetManager} once it has been processed or
+ * published to the retry or invalid topic; only the offsets up to the first record not yet complete
+ * are committed. Retries are still consumed one record at a time by {@link Consumer}.
+ * <p>
+ * When partitions are revoked, records of theirs not yet started are cancelled and those already
+ * started are waited for, so that their offsets can be committed before the partitions are handed over.
+ * Records that complete after that are left for the new owner.
+ */
+@Component
+@ConditionalOnExpression("'${consumer.processing_mode}' == 'ASYNC' or '${consumer.processing_mode}' == 'PARALLEL'")
+public class AsyncConsumer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NAMESPACE);
+
+    private final ServiceRouter router;
+    private final FailedRecordPublisher failedRecordPublisher;
+    private final ListenerLogging listenerLogging;
+    private final OffsetManager offsetManager;
+    private final int maxInFlightPerPartition;
+    private final ExecutorService workers;
+    private final Map<TopicPartition, Semaphore> inFlight = new ConcurrentHashMap<>();
+    private final KeyOrderedSequencer sequencer = new KeyOrderedSequencer();
+    private final Map<TopicPartition, Set<CompletableFuture<Void>>> pending = new ConcurrentHashMap<>();
+    private final Set<TopicPartition> revoking = ConcurrentHashMap.newKeySet();
+    private final Set<TopicPartition> handedOver = ConcurrentHashMap.newKeySet();
+
+    public AsyncConsumer(ServiceRouter router, FailedRecordPublisher failedRecordPublisher,
+            ListenerLogging listenerLogging, OffsetManager offsetManager,
+            @Value("${consumer.processing_mode}") ProcessingMode processingMode,
+            @Value("${consumer.max_in_flight_per_partition}") int maxInFlightPerPartition) {
+        this.router = router;
+        this.failedRecordPublisher = failedRecordPublisher;
+        this.listenerLogging = listenerLogging;
+        this.offsetManager = offsetManager;
+        this.maxInFlightPerPartition = maxInFlightPerPartition;
+        this.workers = processingMode == ProcessingMode.PARALLEL
+                ? Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("delta-worker-", 0).factory())
+                : null;
+    }
+
+    /**
+     * Start processing a record from the company-profile Kafka topic. Blocks only while the
+     * record's partition already has the maximum number of records in flight.
+     *
+     * @param consumerRecord The record.
+     * @param consumer       The consumer, with which completed offsets are committed.
+     */
+    @KafkaListener(
+            id = "${consumer.group_id}-async",
+            containerFactory = "kafkaAsyncListenerContainerFactory",
+            topics = {"${consumer.profile.topic}"},
+            groupId = "${consumer.group_id}"
+    )
+    public void consume(ConsumerRecord<String, ResourceChangedData> consumerRecord,
+            org.apache.kafka.clients.consumer.Consumer<?, ?> consumer) {
+        offsetManager.commitIfDue(consumer);
+        TopicPartition partition = new TopicPartition(consumerRecord.topic(), consumerRecord.partition());
+        Semaphore permits = inFlight.computeIfAbsent(partition, key -> new Semaphore(maxInFlightPerPartition));
+        try {
+            permits.acquire();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RetryableException("Interrupted waiting for an in-flight record to complete", ex);
+        }
+        offsetManager.track(partition, consumerRecord.offset());
+
+        CompletableFuture<Void> completed = listenerLogging.invokeAsync(consumerRecord.value(), null,
+                        consumerRecord.topic(), consumerRecord.partition(), consumerRecord.offset(),
+                        () -> route(partition, consumerRecord.value()))
+                .whenComplete((result, throwable) -> {
+                    permits.release();
+                    complete(partition, consumerRecord, throwable);
+                })
+                // Failures are published or logged by complete, so a drain waits only for completion
+                .exceptionally(throwable -> null);
+        pending.computeIfAbsent(partition, key -> ConcurrentHashMap.newKeySet()).add(completed);
+        completed.whenComplete((result, throwable) -> removePending(partition, completed));
+    }
+
+    private void removePending(TopicPartition partition, CompletableFuture<Void> completed) {
+        // Drop the partition's set with its last record, so idle and revoked partitions keep none
+        pending.computeIfPresent(partition, (key, partitionPending) -> {
+            partitionPending.remove(completed);
+            return partitionPending.isEmpty() ? null : partitionPending;
+        });
+    }
+
+    /**
+     * Stop starting records of the revoked partitions and wait for those already started to be
+     * complete, so that their offsets can be committed before the partitions are handed over.
+     * Called on the consumer thread.
+     *
+     * @param partitions The revoked partitions.
+     * @param timeout    How long to wait.
+     * @return True if every record of the partitions was completed in time.
+     */
+    public boolean drain(Collection<TopicPartition> partitions, Duration timeout) {
+        revoking.addAll(partitions);
+        CompletableFuture<?>[] draining = partitions.stream()
+                .map(partition -> pending.getOrDefault(partition, Set.of()))
+                .flatMap(Set::stream)
+                .toArray(CompletableFuture<?>[]::new);
+        try {
+            CompletableFuture.allOf(draining).get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            return true;
+        } catch (ExecutionException | TimeoutException ex) {
+            LOGGER.info(String.format("Handing over partitions %s with %d records still in flight", partitions,
+                    partitions.stream().mapToInt(partition -> pending.getOrDefault(partition, Set.of()).size())
+                            .sum()));
+            return false;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            handOver(partitions);
+        }
+    }
+
+    /**
+     * Leave any records of the partitions still in flight to their new owner: they are neither
+     * marked complete nor published to the retry or invalid topic when they complete. The
+     * partitions' in-flight permits and pending records are forgotten; records still in flight
+     * release the permits they hold when they complete.
+     */
+    public void handOver(Collection<TopicPartition> partitions) {
+        handedOver.addAll(partitions);
+        revoking.removeAll(partitions);
+        partitions.forEach(partition -> {
+            inFlight.remove(partition);
+            pending.remove(partition);
+        });
+    }
+
+    /**
+     * Process records of partitions assigned to this consumer, including any it has had before.
+     */
+    public void assigned(Collection<TopicPartition> partitions) {
+        handedOver.removeAll(partitions);
+        revoking.removeAll(partitions);
+    }
+
+    /**
+     * Start processing the record once any earlier record for the same company has been processed,
+     * so that PATCHes for a company are still applied in offset order.
+     */
+    private CompletableFuture<Void> route(TopicPartition partition, ResourceChangedData changedData) {
+        String companyNumber = changedData.getResourceId();
+        DataMapHolder.get().companyNumber(companyNumber);
+        Builder dataMap = DataMapHolder.get();
+        return sequencer.submit(companyNumber, () -> isRevoked(partition)
+                ? CompletableFuture.failedFuture(new CancellationException("Partition " + partition + " revoked"))
+                : DataMapHolder.callWith(dataMap, () -> start(changedData, dataMap)));
+    }
+
+    private boolean isRevoked(TopicPartition partition) {
+        return revoking.contains(partition) || handedOver.contains(partition);
+    }
+
+    private CompletableFuture<Void> start(ResourceChangedData changedData, Builder dataMap) {
+        if (workers == null) {
+            return router.routeAsync(changedData);
+        }
+        // The logging context is thread local, so hand it over to the virtual thread
+        return CompletableFuture.runAsync(() -> DataMapHolder.callWith(dataMap, () -> {
+            router.route(changedData);
+            return null;
+        }), workers);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (workers != null) {
+            workers.shutdown();
+        }
+    }
+
+    private void complete(TopicPartition partition, ConsumerRecord<String, ResourceChangedData> consumerRecord,
+            Throwable throwable) {
+        Throwable cause = throwable instanceof CompletionException ? throwable.getCause() : throwable;
+        if (handedOver.contains(partition) || cause instanceof CancellationException) {
+            LOGGER.debug(String.format("Leaving record at offset %d of revoked partition %d to its new owner",
+                    consumerRecord.offset(), consumerRecord.partition()));
+            return;
+        }
+        try {
+            if (cause != null) {
+                if (cause instanceof RetryableException retryable) {
+                    failedRecordPublisher.publishRetryable(consumerRecord, retryable);
+                } else if (cause instanceof Exception exception) {
+                    failedRecordPublisher.publishInvalid(consumerRecord, exception);
+                } else {
+                    failedRecordPublisher.publishInvalid(consumerRecord,
+                            new NonRetryableException(String.valueOf(cause.getMessage()), cause));
+                }
+            }
+            offsetManager.complete(partition, consumerRecord.offset());
+        } catch (RuntimeException ex) {
+            // Leaving the record incomplete holds back the committed offset for its partition,
+            // so it is consumed again after the next rebalance or restart
+            LOGGER.error(String.format("Failed to complete record at offset %d of partition %d",
+                    consumerRecord.offset(), consumerRecord.partition()), ex);
+        }
+    }
+}
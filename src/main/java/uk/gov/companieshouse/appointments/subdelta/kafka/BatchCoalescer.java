@@ -0,0 +1,55 @@
+package uk.gov.companieshouse.appointments.subdelta.kafka;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.stereotype.Component;
+import uk.gov.companieshouse.stream.ResourceChangedData;
+
+/**
+ * Finds the deltas in a batch that are superseded by a later delta for the same company. The PATCH
+ * sent for a changed delta only sets name and status and is last-write-wins, so only the latest
+ * changed delta per company in a batch needs to be sent.
+ */
+@Component
+public class BatchCoalescer {
+
+    static final String PATCHES_AVOIDED_METRIC = "appointments.consumer.patches.avoided";
+    private static final String EVENT_TYPE_CHANGED = "changed";
+
+    private final Counter coalesced;
+
+    public BatchCoalescer(MeterRegistry meterRegistry) {
+        this.coalesced = Counter.builder(PATCHES_AVOIDED_METRIC)
+                .description("PATCHes not sent to the appointments API")
+                .tag("reason", "coalesced")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @param records The records returned by a single poll.
+     * @return The indexes of the records that do not need to be processed.
+     */
+    public BitSet supersededRecords(List<ConsumerRecord<String, ResourceChangedData>> records) {
+        BitSet superseded = new BitSet(records.size());
+        Map<String, Integer> latest = new HashMap<>();
+        for (int i = 0; i < records.size(); i++) {
+            ResourceChangedData changedData = records.get(i).value();
+            // Records without a company or event are left to fail on their own when processed
+            if (changedData == null || changedData.getResourceId() == null || changedData.getEvent() == null
+                    || !EVENT_TYPE_CHANGED.equals(changedData.getEvent().getType())) {
+                continue;
+            }
+            Integer previous = latest.put(changedData.getResourceId(), i);
+            if (previous != null) {
+                superseded.set(previous);
+            }
+        }
+        coalesced.increment(superseded.cardinality());
+        return superseded;
+    }
+}
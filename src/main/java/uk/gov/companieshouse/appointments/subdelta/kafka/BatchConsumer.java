@@ -0,0 +1,196 @@
+package uk.gov.companieshouse.appointments.subdelta.kafka;
+
+import static uk.gov.companieshouse.appointments.subdelta.Application.NAMESPACE;
+
+import java.time.Duration;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Component;
+import org.springframework.util.backoff.BackOff;
+import org.springframework.util.backoff.ExponentialBackOff;
+import uk.gov.companieshouse.appointments.subdelta.companyprofile.ServiceRouter;
+import uk.gov.companieshouse.appointments.subdelta.exception.NonRetryableException;
+import uk.gov.companieshouse.appointments.subdelta.exception.RetryableException;
+import uk.gov.companieshouse.appointments.subdelta.logging.DataMapHolder;
+import uk.gov.companieshouse.appointments.subdelta.logging.ListenerLogging;
+import uk.gov.companieshouse.logging.Logger;
+import uk.gov.companieshouse.logging.LoggerFactory;
+import uk.gov.companieshouse.stream.ResourceChangedData;
+
+/**
+ * Consumes the company-profile Kafka topic a poll at a time when batch processing is enabled.
+ * Retries are still consumed one record at a time by {@link Consumer}.
+ * <p>
+ * Polls are as large as {@code consumer.catch_up_window} allows. While the consumer is catching up
+ * on a backlog, as decided by {@link CatchUpMode}, the records of a poll are processed up to
+ * {@code consumer.catch_up_parallelism} at a time, within the API's adaptive concurrency limit. Live,
+ * they are processed one at a time, and only the first {@code consumer.live_window} of them, so that
+ * a large poll cannot keep the consumer from polling for too long; the rest are committed no further
+ * and redelivered by the next poll. Only the latest delta per company in what is processed is sent
+ * either way, so each PATCH is for a different company and the order they complete in does not matter.
+ */
+@Component
+@ConditionalOnProperty(name = "consumer.processing_mode", havingValue = "BATCH")
+public class BatchConsumer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NAMESPACE);
+    // Well below max.poll.interval.ms, as the error handler backs off on the consumer thread
+    private static final long PUBLISH_RETRY_MAX_INTERVAL = 30_000;
+    private static final String SUPERSEDED_MESSAGE =
+            "Skipping delta for company %s at offset %d as a later delta is in the same batch";
+
+    private final ServiceRouter router;
+    private final FailedRecordPublisher failedRecordPublisher;
+    private final ListenerLogging listenerLogging;
+    private final BatchCoalescer batchCoalescer;
+    private final CatchUpMode catchUpMode;
+    private final int catchUpParallelism;
+    private final int liveWindow;
+
+    public BatchConsumer(ServiceRouter router, FailedRecordPublisher failedRecordPublisher,
+            ListenerLogging listenerLogging, BatchCoalescer batchCoalescer, CatchUpMode catchUpMode,
+            @Value("${consumer.catch_up_parallelism}") int catchUpParallelism,
+            @Value("${consumer.live_window}") int liveWindow) {
+        this.router = router;
+        this.failedRecordPublisher = failedRecordPublisher;
+        this.listenerLogging = listenerLogging;
+        this.batchCoalescer = batchCoalescer;
+        this.catchUpMode = catchUpMode;
+        this.catchUpParallelism = catchUpParallelism;
+        this.liveWindow = liveWindow;
+    }
+
+    /**
+     * Consume a batch of records from the company-profile Kafka topic. Each record that fails is
+     * published on its own to the retry or invalid topic, so the rest of the batch is not replayed.
+     * Deltas superseded by a later delta for the same company are skipped, and their offsets are
+     * committed with the rest of the batch.
+     *
+     * @param records        The records returned by a single poll.
+     * @param consumer       The consumer, whose lag decides whether it is catching up.
+     * @param acknowledgment Commits the records processed, and has any others redelivered.
+     */
+    @KafkaListener(
+            id = "${consumer.group_id}-batch",
+            containerFactory = "kafkaBatchListenerContainerFactory",
+            topics = {"${consumer.profile.topic}"},
+            groupId = "${consumer.group_id}",
+            properties = {"max.poll.records=${consumer.catch_up_window}"}
+    )
+    public void consume(List<ConsumerRecord<String, ResourceChangedData>> records,
+            org.apache.kafka.clients.consumer.Consumer<?, ?> consumer, Acknowledgment acknowledgment) {
+        boolean catchingUp = catchUpMode.update(consumer);
+        List<ConsumerRecord<String, ResourceChangedData>> window =
+                catchingUp || liveWindow <= 0 || records.size() <= liveWindow
+                        ? records : records.subList(0, liveWindow);
+        BitSet superseded = batchCoalescer.supersededRecords(window);
+        if (catchingUp) {
+            catchUp(window, superseded);
+        } else {
+            processInOrder(window, superseded);
+        }
+        if (window.size() < records.size()) {
+            // Commit the window, and seek back to the first record after it for the next poll
+            acknowledgment.nack(window.size(), Duration.ZERO);
+        } else {
+            acknowledgment.acknowledge();
+        }
+    }
+
+    private void processInOrder(List<ConsumerRecord<String, ResourceChangedData>> records, BitSet superseded) {
+        for (int i = 0; i < records.size(); i++) {
+            ConsumerRecord<String, ResourceChangedData> consumerRecord = records.get(i);
+            if (superseded.get(i)) {
+                LOGGER.debug(String.format(SUPERSEDED_MESSAGE,
+                        consumerRecord.value().getResourceId(), consumerRecord.offset()));
+                continue;
+            }
+            try {
+                listenerLogging.invoke(consumerRecord.value(), null, consumerRecord.topic(),
+                        consumerRecord.partition(), consumerRecord.offset(), () -> {
+                            DataMapHolder.get().companyNumber(consumerRecord.value().getResourceId());
+                            router.route(consumerRecord.value());
+                            return null;
+                        });
+            } catch (RetryableException ex) {
+                publish(i, () -> failedRecordPublisher.publishRetryable(consumerRecord, ex));
+            } catch (RuntimeException ex) {
+                publish(i, () -> failedRecordPublisher.publishInvalid(consumerRecord, ex));
+            }
+        }
+    }
+
+    /**
+     * Send the PATCHes of a poll without waiting for each, then publish the records whose PATCH failed
+     * in offset order once every PATCH has completed.
+     */
+    private void catchUp(List<ConsumerRecord<String, ResourceChangedData>> records, BitSet superseded) {
+        Semaphore permits = new Semaphore(catchUpParallelism);
+        @SuppressWarnings("unchecked")
+        CompletableFuture<Void>[] patches = new CompletableFuture[records.size()];
+        for (int i = 0; i < records.size(); i++) {
+            if (superseded.get(i)) {
+                continue;
+            }
+            ConsumerRecord<String, ResourceChangedData> consumerRecord = records.get(i);
+            permits.acquireUninterruptibly();
+            patches[i] = listenerLogging.invokeAsync(consumerRecord.value(), null, consumerRecord.topic(),
+                            consumerRecord.partition(), consumerRecord.offset(), () -> {
+                                DataMapHolder.get().companyNumber(consumerRecord.value().getResourceId());
+                                return router.routeAsync(consumerRecord.value());
+                            })
+                    .whenComplete((result, throwable) -> permits.release());
+        }
+        for (int i = 0; i < records.size(); i++) {
+            if (patches[i] == null) {
+                continue;
+            }
+            ConsumerRecord<String, ResourceChangedData> consumerRecord = records.get(i);
+            try {
+                patches[i].join();
+            } catch (CompletionException ex) {
+                Throwable cause = ex.getCause();
+                if (cause instanceof RetryableException retryable) {
+                    publish(i, () -> failedRecordPublisher.publishRetryable(consumerRecord, retryable));
+                } else if (cause instanceof Exception exception) {
+                    publish(i, () -> failedRecordPublisher.publishInvalid(consumerRecord, exception));
+                } else {
+                    publish(i, () -> failedRecordPublisher.publishInvalid(consumerRecord,
+                            new NonRetryableException(String.valueOf(cause.getMessage()), cause)));
+                }
+            }
+        }
+    }
+
+    /**
+     * The back-off of the batch container's error handler when a failed record could not be published.
+     * It never gives up, as the record has not reached the retry or invalid topic and skipping it
+     * would lose it; the batch is redelivered from that record until the publish succeeds.
+     *
+     * @param delay The first delay in milliseconds, which grows by half on each attempt.
+     */
+    static BackOff publishRetryBackOff(long delay) {
+        ExponentialBackOff backOff = new ExponentialBackOff(delay, ExponentialBackOff.DEFAULT_MULTIPLIER);
+        backOff.setMaxInterval(Math.max(delay, PUBLISH_RETRY_MAX_INTERVAL));
+        return backOff;
+    }
+
+    private static void publish(int index, Runnable publication) {
+        try {
+            publication.run();
+        } catch (RuntimeException ex) {
+            // The error handler commits the records before this one, and redelivers the batch from
+            // this record after backing off
+            throw new BatchListenerFailedException("Failed to publish failed record", ex, index);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package uk.gov.companieshouse.appointments.subdelta.kafka;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.OptionalDouble;
+import java.util.concurrent.atomic.LongAdder;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.springframework.kafka.listener.BatchInterceptor;
+import org.springframework.kafka.listener.RecordInterceptor;
+import org.springframework.stereotype.Component;
+import uk.gov.companieshouse.stream.ResourceChangedData;
+
+/**
+ * Measures how much of a listener thread's time is spent blocked rather than on the CPU, by comparing
+ * the thread's CPU time with the wall clock time of every {@value #SAMPLE_EVERY}th record or batch.
+ * Used by {@link ListenerConcurrency} to decide how many threads each CPU can keep busy.
+ */
+@Component
+public class BlockingRatioSampler implements RecordInterceptor<String, ResourceChangedData>,
+        BatchInterceptor<String, ResourceChangedData> {
+
+    static final int SAMPLE_EVERY = 16;
+    static final int MIN_SAMPLES = 100;
+
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private final boolean cpuTimeSupported = threads.isCurrentThreadCpuTimeSupported();
+    private final ThreadLocal<Sample> current = ThreadLocal.withInitial(Sample::new);
+    private final LongAdder wallNanos = new LongAdder();
+    private final LongAdder cpuNanos = new LongAdder();
+    private final LongAdder samples = new LongAdder();
+
+    @Override
+    public ConsumerRecord<String, ResourceChangedData> intercept(ConsumerRecord<String, ResourceChangedData> record,
+            Consumer<String, ResourceChangedData> consumer) {
+        start();
+        return record;
+    }
+
+    @Override
+    public void afterRecord(ConsumerRecord<String, ResourceChangedData> record,
+            Consumer<String, ResourceChangedData> consumer) {
+        stop();
+    }
+
+    @Override
+    public ConsumerRecords<String, ResourceChangedData> intercept(ConsumerRecords<String, ResourceChangedData> records,
+            Consumer<String, ResourceChangedData> consumer) {
+        start();
+        return records;
+    }
+
+    @Override
+    public void success(ConsumerRecords<String, ResourceChangedData> records,
+            Consumer<String, ResourceChangedData> consumer) {
+        stop();
+    }
+
+    @Override
+    public void failure(ConsumerRecords<String, ResourceChangedData> records, Exception exception,
+            Consumer<String, ResourceChangedData> consumer) {
+        stop();
+    }
+
+    /**
+     * @return The fraction of sampled time spent blocked since this was last taken, or empty if too
+     *         few records have been sampled since then to tell.
+     */
+    public OptionalDouble takeBlockingRatio() {
+        if (samples.sum() < MIN_SAMPLES) {
+            return OptionalDouble.empty();
+        }
+        samples.reset();
+        long wall = wallNanos.sumThenReset();
+        long cpu = cpuNanos.sumThenReset();
+        return wall > 0 ? OptionalDouble.of(1 - (double) cpu / wall) : OptionalDouble.empty();
+    }
+
+    private void start() {
+        Sample sample = current.get();
+        if (!cpuTimeSupported || sample.count++ % SAMPLE_EVERY != 0) {
+            return;
+        }
+        sample.wallStart = System.nanoTime();
+        sample.cpuStart = threads.getCurrentThreadCpuTime();
+    }
+
+    private void stop() {
+        Sample sample = current.get();
+        if (sample.wallStart < 0) {
+            return;
+        }
+        long wall = System.nanoTime() - sample.wallStart;
+        long cpu = threads.getCurrentThreadCpuTime() - sample.cpuStart;
+        sample.wallStart = -1;
+        if (wall > 0) {
+            wallNanos.add(wall);
+            cpuNanos.add(Math.min(cpu, wall));
+            samples.increment();
+        }
+    }
+
+    private static final class Sample {
+
+        private int count;
+        private long wallStart = -1;
+        private long cpuStart;
+    }
+}
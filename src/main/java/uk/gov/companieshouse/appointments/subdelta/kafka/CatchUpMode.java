@@ -0,0 +1,91 @@
+package uk.gov.companieshouse.appointments.subdelta.kafka;
+
+import static uk.gov.companieshouse.appointments.subdelta.Application.NAMESPACE;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.kafka.event.ConsumerStoppingEvent;
+import org.springframework.stereotype.Component;
+import uk.gov.companieshouse.logging.Logger;
+import uk.gov.companieshouse.logging.LoggerFactory;
+
+/**
+ * Decides whether a consumer is catching up on a backlog, such as after an outage or when a new
+ * group starts from the earliest offset. A consumer is catching up while the lag of the partitions
+ * assigned to it is above {@code consumer.catch_up_lag}, and live again once it is below; 0 keeps
+ * every consumer live. The lag is known locally from the last fetch, so deciding costs no request.
+ * <p>
+ * A consumer's mode is forgotten when its partitions are revoked or it stops, and decided again from
+ * its next poll, so the consumers counted as catching up are only ever those still running.
+ */
+@Component
+public class CatchUpMode {
+
+    static final String CATCH_UP_METRIC = "appointments.consumer.catch_up";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NAMESPACE);
+
+    private final long lagThreshold;
+    private final Set<Consumer<?, ?>> catchingUp = ConcurrentHashMap.newKeySet();
+
+    public CatchUpMode(@Value("${consumer.catch_up_lag}") long lagThreshold, MeterRegistry meterRegistry) {
+        this.lagThreshold = lagThreshold;
+        Gauge.builder(CATCH_UP_METRIC, catchingUp, Set::size)
+                .description("Consumers catching up on a backlog rather than processing records one at a time")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Decide the consumer's mode from the lag of its partitions after its last poll. Called on the
+     * consumer thread.
+     *
+     * @return True if the consumer is catching up.
+     */
+    public boolean update(Consumer<?, ?> consumer) {
+        if (lagThreshold <= 0) {
+            return false;
+        }
+        boolean wasCatchingUp = catchingUp.contains(consumer);
+        long lag = lag(consumer);
+        boolean isCatchingUp = wasCatchingUp ? lag >= lagThreshold : lag > lagThreshold;
+        if (isCatchingUp != wasCatchingUp) {
+            if (isCatchingUp) {
+                catchingUp.add(consumer);
+            } else {
+                catchingUp.remove(consumer);
+            }
+            LOGGER.info(String.format("%s with a lag of %d records on partitions %s",
+                    isCatchingUp ? "Catching up" : "Caught up", lag, consumer.assignment()));
+        }
+        return isCatchingUp;
+    }
+
+    /**
+     * Forget the consumer's mode when its partitions are revoked, as its lag is no longer theirs.
+     */
+    public void reset(Consumer<?, ?> consumer) {
+        catchingUp.remove(consumer);
+    }
+
+    /**
+     * Forget the consumer's mode before it is closed. Published on the consumer thread.
+     */
+    @EventListener
+    public void onConsumerStopping(ConsumerStoppingEvent event) {
+        reset(event.getConsumer());
+    }
+
+    private static long lag(Consumer<?, ?> consumer) {
+        long lag = 0;
+        for (TopicPartition partition : consumer.assignment()) {
+            lag += consumer.currentLag(partition).orElse(0);
+        }
+        return lag;
+    }
+}
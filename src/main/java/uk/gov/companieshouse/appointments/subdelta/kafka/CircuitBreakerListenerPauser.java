@@ -0,0 +1,41 @@
+package uk.gov.companieshouse.appointments.subdelta.kafka;
+
+import static uk.gov.companieshouse.appointments.subdelta.Application.NAMESPACE;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.stereotype.Component;
+import uk.gov.companieshouse.appointments.subdelta.companyprofile.ApiCircuitBreakerEvent;
+import uk.gov.companieshouse.logging.Logger;
+import uk.gov.companieshouse.logging.LoggerFactory;
+
+/**
+ * Pauses every listener container, including the retry topic containers, while the appointments API
+ * circuit breaker is open, and resumes them when it closes. Containers pause immediately, so records
+ * already polled but not yet processed are fetched again after resuming.
+ */
+@Component
+public class CircuitBreakerListenerPauser {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NAMESPACE);
+
+    private final KafkaListenerEndpointRegistry registry;
+
+    public CircuitBreakerListenerPauser(KafkaListenerEndpointRegistry registry) {
+        this.registry = registry;
+    }
+
+    @EventListener
+    public void onCircuitBreakerEvent(ApiCircuitBreakerEvent event) {
+        for (MessageListenerContainer container : registry.getAllListenerContainers()) {
+            if (event.open()) {
+                container.pause();
+            } else {
+                container.resume();
+            }
+        }
+        LOGGER.info(event.open() ? "Paused listener containers while appointments API is unavailable"
+                : "Resumed listener containers");
+    }
+}
@@ -3,8 +3,22 @@ package uk.gov.companieshouse.appointments.subdelta.kafka;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpClient;
+import java.time.Duration;
 import java.util.Map;
-import java.util.function.Supplier;
+import org.apache.avro.Schema;
+import org.apache.avro.message.SchemaStore;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.common.serialization.StringDeserializer;
@@ -12,6 +26,7 @@ import org.apache.kafka.common.serialization.StringSerializer;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.ResourceLoader;
 import org.springframework.kafka.annotation.EnableKafka;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.config.KafkaListenerContainerFactory;
@@ -19,12 +34,18 @@ import org.springframework.kafka.core.ConsumerFactory;
 import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
 import org.springframework.kafka.core.DefaultKafkaProducerFactory;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.MicrometerConsumerListener;
 import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.listener.CompositeRecordInterceptor;
 import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
 import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.kafka.support.CompositeProducerListener;
+import org.springframework.kafka.support.LoggingProducerListener;
 import org.springframework.kafka.support.serializer.ErrorHandlingDeserializer;
-import uk.gov.companieshouse.api.InternalApiClient;
-import uk.gov.companieshouse.api.http.ApiKeyHttpClient;
+import org.springframework.util.StringUtils;
+import uk.gov.companieshouse.appointments.subdelta.companyprofile.InstrumentedConnectionManager;
+import uk.gov.companieshouse.appointments.subdelta.logging.LoggingRecordInterceptor;
 import uk.gov.companieshouse.stream.ResourceChangedData;
 
 @Configuration
@@ -38,10 +59,37 @@ public class Config {
                 .registerModule(new JavaTimeModule());
     }
 
+    @Bean
+    public SchemaStore writerSchemaStore(ResourceLoader resourceLoader,
+            @Value("${consumer.writer_schemas:}") String writerSchemas) throws IOException {
+        SchemaStore.Cache schemaStore = new SchemaStore.Cache();
+        schemaStore.addSchema(ResourceChangedData.getClassSchema());
+        for (String location : StringUtils.commaDelimitedListToStringArray(writerSchemas)) {
+            try (InputStream inputStream = resourceLoader.getResource(location.trim()).getInputStream()) {
+                // Each version of the schema shares a name, so each needs its own parser
+                schemaStore.addSchema(new Schema.Parser().parse(inputStream));
+            }
+        }
+        return schemaStore;
+    }
+
     @Bean
     public ConsumerFactory<String, ResourceChangedData> consumerFactory(
-            @Value("${spring.kafka.bootstrap-servers}") String bootstrapServers) {
-        return new DefaultKafkaConsumerFactory<>(
+            @Value("${spring.kafka.bootstrap-servers}") String bootstrapServers,
+            @Value("${consumer.decode_mode}") DecodeMode decodeMode,
+            @Value("${consumer.reader_cache_size}") int readerCacheSize,
+            SchemaStore writerSchemaStore,
+            GroupMembership groupMembership,
+            MeterRegistry meterRegistry) {
+        ResourceChangedDataDeserialiser deserialiser = switch (decodeMode) {
+            case SPECIFIC -> new ResourceChangedDataDeserialiser(
+                    new SpecificResourceChangedDataDecoder(writerSchemaStore, readerCacheSize),
+                    meterRegistry, decodeMode);
+            case LAZY -> new ResourceChangedDataDeserialiser(new LazyResourceChangedDataDecoder(),
+                    meterRegistry, decodeMode);
+            case REFLECT -> new ResourceChangedDataDeserialiser(new ResourceChangedDataCodec(), meterRegistry);
+        };
+        DefaultKafkaConsumerFactory<String, ResourceChangedData> consumerFactory = new DefaultKafkaConsumerFactory<>(
                 Map.of(
                         ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers,
                         ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG,
@@ -52,15 +100,18 @@ public class Config {
                         ErrorHandlingDeserializer.VALUE_DESERIALIZER_CLASS,
                         ResourceChangedDataDeserialiser.class,
                         ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest",
-                        ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false"),
+                        ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false",
+                        ConsumerConfig.PARTITION_ASSIGNMENT_STRATEGY_CONFIG, groupMembership.getAssignors()),
                 new StringDeserializer(),
-                new ErrorHandlingDeserializer<>(new ResourceChangedDataDeserialiser()));
+                new ErrorHandlingDeserializer<>(deserialiser));
+        // Client metrics such as records-lag-max and fetch-latency-avg, per consumer
+        consumerFactory.addListener(new MicrometerConsumerListener<>(meterRegistry));
+        return consumerFactory;
     }
 
     @Bean
     public ProducerFactory<String, ResourceChangedData> producerFactory(
             @Value("${spring.kafka.bootstrap-servers}") String bootstrapServers,
-            MessageFlags messageFlags,
             @Value("${invalid_message_topic.profile}") String profileInvalidTopic) {
         return new DefaultKafkaProducerFactory<>(
                 Map.of(
@@ -71,37 +122,142 @@ public class Config {
                         ResourceChangedDataSerialiser.class,
                         ProducerConfig.INTERCEPTOR_CLASSES_CONFIG,
                         InvalidMessageRouter.class.getName(),
-                        "message.flags", messageFlags,
                         "invalid.message.topic.profile", profileInvalidTopic),
                 new StringSerializer(), new ResourceChangedDataSerialiser());
     }
 
     @Bean
     public KafkaTemplate<String, ResourceChangedData> kafkaTemplate(
-            ProducerFactory<String, ResourceChangedData> producerFactory) {
-        return new KafkaTemplate<>(producerFactory);
+            ProducerFactory<String, ResourceChangedData> producerFactory,
+            FailedRecordMetrics failedRecordMetrics) {
+        KafkaTemplate<String, ResourceChangedData> kafkaTemplate = new KafkaTemplate<>(producerFactory);
+        kafkaTemplate.setProducerListener(
+                new CompositeProducerListener<>(new LoggingProducerListener<>(), failedRecordMetrics));
+        return kafkaTemplate;
     }
 
     @Bean
     public KafkaListenerContainerFactory<ConcurrentMessageListenerContainer<String, ResourceChangedData>> kafkaListenerContainerFactory(
             ConsumerFactory<String, ResourceChangedData> consumerFactory,
-            @Value("${consumer.concurrency}") Integer concurrency) {
+            ListenerConcurrency listenerConcurrency,
+            @Value("${consumer.processing_mode}") ProcessingMode processingMode,
+            @Value("${consumer.group_id}") String groupId,
+            LoggingRecordInterceptor loggingRecordInterceptor,
+            BlockingRatioSampler blockingRatioSampler,
+            GroupMembership groupMembership,
+            RebalanceHandler rebalanceHandler,
+            @Value("${consumer.commit_count}") int commitCount,
+            @Value("${consumer.commit_interval}") long commitInterval) {
         ConcurrentKafkaListenerContainerFactory<String, ResourceChangedData> factory = new ConcurrentKafkaListenerContainerFactory<>();
         factory.setConsumerFactory(consumerFactory);
-        factory.setConcurrency(concurrency);
-        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.RECORD);
+        listenerConcurrency.apply(factory);
+        factory.setRecordInterceptor(listenerConcurrency.isAuto()
+                ? new CompositeRecordInterceptor<>(loggingRecordInterceptor, blockingRatioSampler)
+                : loggingRecordInterceptor);
+        // Records complete in order on the listener thread, so the container commits them every
+        // commit_count records or commit_interval, and on revocation and stop, rather than after each
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.COUNT_TIME);
+        factory.getContainerProperties().setAckCount(commitCount);
+        factory.getContainerProperties().setAckTime(commitInterval);
+        // Stop between records when paused by the circuit breaker, leaving the rest of the poll in the topic
+        factory.getContainerProperties().setPauseImmediate(true);
+        factory.getContainerProperties().setConsumerRebalanceListener(rebalanceHandler);
+        factory.setContainerCustomizer(container -> {
+            groupMembership.customise(container);
+            // In other modes the main topic is consumed by another listener, so only start the retry topic container
+            if (processingMode != ProcessingMode.RECORD && groupId.equals(container.getListenerId())) {
+                container.setAutoStartup(false);
+            }
+        });
         return factory;
     }
 
     @Bean
-    Supplier<InternalApiClient> internalApiClientSupplier(
-            @Value("${api.api-key}") String apiKey,
-            @Value("${api.api-url}") String apiUrl) {
-        return () -> {
-            InternalApiClient internalApiClient = new InternalApiClient(new ApiKeyHttpClient(
-                    apiKey));
-            internalApiClient.setBasePath(apiUrl);
-            return internalApiClient;
-        };
+    public KafkaListenerContainerFactory<ConcurrentMessageListenerContainer<String, ResourceChangedData>> kafkaBatchListenerContainerFactory(
+            ConsumerFactory<String, ResourceChangedData> consumerFactory,
+            ListenerConcurrency listenerConcurrency,
+            BlockingRatioSampler blockingRatioSampler,
+            GroupMembership groupMembership,
+            RebalanceHandler rebalanceHandler,
+            @Value("${consumer.backoff_delay}") long backoffDelay) {
+        ConcurrentKafkaListenerContainerFactory<String, ResourceChangedData> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(consumerFactory);
+        listenerConcurrency.apply(factory);
+        if (listenerConcurrency.isAuto()) {
+            factory.setBatchInterceptor(blockingRatioSampler);
+        }
+        factory.setBatchListener(true);
+        // The listener acknowledges each poll, or only the part of it processed live
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        // Failed records are published by the listener, so the handler only sees records that could
+        // not be published, and retries them rather than skipping them
+        factory.setCommonErrorHandler(new DefaultErrorHandler(BatchConsumer.publishRetryBackOff(backoffDelay)));
+        factory.getContainerProperties().setConsumerRebalanceListener(rebalanceHandler);
+        factory.setContainerCustomizer(groupMembership::customise);
+        return factory;
+    }
+
+    @Bean
+    public KafkaListenerContainerFactory<ConcurrentMessageListenerContainer<String, ResourceChangedData>> kafkaAsyncListenerContainerFactory(
+            ConsumerFactory<String, ResourceChangedData> consumerFactory,
+            ListenerConcurrency listenerConcurrency,
+            BlockingRatioSampler blockingRatioSampler,
+            GroupMembership groupMembership,
+            RebalanceHandler rebalanceHandler,
+            @Value("${consumer.commit_interval}") long commitInterval) {
+        ConcurrentKafkaListenerContainerFactory<String, ResourceChangedData> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(consumerFactory);
+        listenerConcurrency.apply(factory);
+        if (listenerConcurrency.isAuto()) {
+            factory.setRecordInterceptor(blockingRatioSampler);
+        }
+        // Records complete out of order off the listener thread, so the OffsetManager commits them
+        // and the container never does, including when no records arrive to trigger a commit
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        factory.getContainerProperties().setIdleEventInterval(commitInterval);
+        factory.getContainerProperties().setConsumerRebalanceListener(rebalanceHandler);
+        factory.setContainerCustomizer(groupMembership::customise);
+        return factory;
+    }
+
+    @Bean
+    HttpClient asyncApiHttpClient(@Value("${api.connect-timeout}") long connectTimeout) {
+        // Shared by the async and bulk clients through ApiRequestSender, which sets the read timeout
+        return HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofMillis(connectTimeout))
+                .build();
+    }
+
+    @Bean
+    PoolingHttpClientConnectionManager apiConnectionManager(MeterRegistry meterRegistry,
+            @Value("${api.max-connections}") int maxConnections,
+            @Value("${api.connect-timeout}") long connectTimeout,
+            @Value("${api.read-timeout}") long readTimeout) {
+        PoolingHttpClientConnectionManager connectionManager = new InstrumentedConnectionManager(meterRegistry);
+        // Every request goes to the one API host, so the route limit is the pool limit
+        connectionManager.setMaxTotal(maxConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnections);
+        connectionManager.setDefaultConnectionConfig(ConnectionConfig.custom()
+                .setConnectTimeout(Timeout.ofMilliseconds(connectTimeout))
+                .setSocketTimeout(Timeout.ofMilliseconds(readTimeout))
+                .build());
+        new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, "appointments-api")
+                .bindTo(meterRegistry);
+        return connectionManager;
+    }
+
+    @Bean
+    CloseableHttpClient apiHttpClient(PoolingHttpClientConnectionManager apiConnectionManager,
+            @Value("${api.connect-timeout}") long connectTimeout,
+            @Value("${api.idle-timeout}") long idleTimeout) {
+        return HttpClients.custom()
+                .setConnectionManager(apiConnectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.ofMilliseconds(connectTimeout))
+                        .build())
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofMilliseconds(idleTimeout))
+                .build();
     }
 }
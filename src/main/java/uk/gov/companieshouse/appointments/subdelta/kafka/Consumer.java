@@ -3,11 +3,9 @@ package uk.gov.companieshouse.appointments.subdelta.kafka;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.kafka.annotation.RetryableTopic;
 import org.springframework.kafka.retrytopic.DltStrategy;
-import org.springframework.kafka.retrytopic.RetryTopicHeaders;
 import org.springframework.kafka.retrytopic.SameIntervalTopicReuseStrategy;
-import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.kafka.retrytopic.TopicSuffixingStrategy;
 import org.springframework.messaging.Message;
-import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.retry.annotation.Backoff;
 import org.springframework.stereotype.Component;
 import uk.gov.companieshouse.appointments.subdelta.companyprofile.ServiceRouter;
@@ -22,11 +20,11 @@ import uk.gov.companieshouse.stream.ResourceChangedData;
 public class Consumer {
 
     private final ServiceRouter router;
-    private final MessageFlags messageFlags;
+    private final InProcessRetry inProcessRetry;
 
-    public Consumer(ServiceRouter router, MessageFlags messageFlags) {
+    public Consumer(ServiceRouter router, InProcessRetry inProcessRetry) {
         this.router = router;
-        this.messageFlags = messageFlags;
+        this.inProcessRetry = inProcessRetry;
     }
 
     /**
@@ -43,24 +41,20 @@ public class Consumer {
     @RetryableTopic(
             attempts = "${consumer.max_attempts}",
             autoCreateTopics = "false",
-            backoff = @Backoff(delayExpression = "${consumer.backoff_delay}"),
+            backoff = @Backoff(
+                    delayExpression = "${consumer.backoff_delay}",
+                    multiplierExpression = "${consumer.backoff_multiplier}",
+                    maxDelayExpression = "${consumer.backoff_max_delay}"),
             retryTopicSuffix = "-${consumer.group_id}-retry",
             dltTopicSuffix = "-${consumer.group_id}-error",
             dltStrategy = DltStrategy.FAIL_ON_ERROR,
             sameIntervalTopicReuseStrategy = SameIntervalTopicReuseStrategy.SINGLE_TOPIC,
+            // Ignored for a fixed delay; tiered topics are named by index as jittered delays vary
+            topicSuffixingStrategy = TopicSuffixingStrategy.SUFFIX_WITH_INDEX_VALUE,
             include = RetryableException.class
     )
-    public void consume(Message<ResourceChangedData> message,
-            @Header(name = RetryTopicHeaders.DEFAULT_HEADER_ATTEMPTS, required = false) Integer attempts,
-            @Header(KafkaHeaders.RECEIVED_TOPIC) String topic,
-            @Header(KafkaHeaders.RECEIVED_PARTITION) Integer partition,
-            @Header(KafkaHeaders.OFFSET) Long offset) {
-        try {
-            DataMapHolder.get().companyNumber(message.getPayload().getResourceId());
-            router.route(message.getPayload());
-        } catch (RetryableException exception) {
-            messageFlags.setRetryable(true);
-            throw exception;
-        }
+    public void consume(Message<ResourceChangedData> message) {
+        DataMapHolder.get().companyNumber(message.getPayload().getResourceId());
+        inProcessRetry.run(() -> router.route(message.getPayload()));
     }
 }
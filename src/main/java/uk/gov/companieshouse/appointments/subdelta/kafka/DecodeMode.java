@@ -0,0 +1,22 @@
+package uk.gov.companieshouse.appointments.subdelta.kafka;
+
+/**
+ * How record values on the company profile stream are decoded.
+ */
+public enum DecodeMode {
+
+    /**
+     * Reflection based reader; assumes the writer schema is the reader schema.
+     */
+    REFLECT,
+
+    /**
+     * Generated specific reader, resolving the writer schema by fingerprint.
+     */
+    SPECIFIC,
+
+    /**
+     * Decodes the routing fields first and defers the data field until it is read.
+     */
+    LAZY
+}
@@ -0,0 +1,59 @@
+package uk.gov.companieshouse.appointments.subdelta.kafka;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeader;
+import uk.gov.companieshouse.appointments.subdelta.exception.RetryableException;
+
+/**
+ * Whether a record failed with an error worth retrying. The classification travels with the failed
+ * record as a header, so that {@link InvalidMessageRouter} can route it on whichever thread it is
+ * sent from.
+ */
+public enum ErrorClassification {
+
+    /**
+     * The record failed with a {@link RetryableException} and stays on the retry path.
+     */
+    RETRYABLE,
+
+    /**
+     * The record failed for any other reason and belongs on the invalid topic.
+     */
+    INVALID;
+
+    public static final String HEADER = "appointments_error_classification";
+
+    private final byte[] value = name().getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * @param exception The cause of the failure, possibly wrapped by the listener container.
+     * @return The classification of the failure.
+     */
+    public static ErrorClassification of(Throwable exception) {
+        for (Throwable cause = exception; cause != null; cause = cause.getCause()) {
+            if (cause instanceof RetryableException) {
+                return RETRYABLE;
+            }
+        }
+        return INVALID;
+    }
+
+    /**
+     * @return A header carrying this classification.
+     */
+    public Header header() {
+        return new RecordHeader(HEADER, value);
+    }
+
+    /**
+     * @param headers The headers of a record being sent.
+     * @return True if the latest classification header on the record is this one.
+     */
+    public boolean isPresentIn(Headers headers) {
+        Header header = headers.lastHeader(HEADER);
+        return header != null && Arrays.equals(value, header.value());
+    }
+}
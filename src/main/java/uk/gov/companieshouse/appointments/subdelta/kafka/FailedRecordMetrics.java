@@ -0,0 +1,59 @@
+package uk.gov.companieshouse.appointments.subdelta.kafka;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.support.ProducerListener;
+import org.springframework.stereotype.Component;
+import uk.gov.companieshouse.stream.ResourceChangedData;
+
+/**
+ * Counts the failed records published to the retry, error (DLT) and invalid topics. Records are
+ * counted by the topic they were written to, which is known only after {@link InvalidMessageRouter}
+ * has routed them.
+ */
+@Component
+public class FailedRecordMetrics implements ProducerListener<String, ResourceChangedData> {
+
+    static final String FAILED_RECORDS_METRIC = "appointments.consumer.records.failed";
+
+    private final String retryTopicSuffix;
+    private final String errorTopicSuffix;
+    private final String invalidTopic;
+    private final Counter retried;
+    private final Counter deadLettered;
+    private final Counter invalid;
+
+    public FailedRecordMetrics(MeterRegistry meterRegistry,
+            @Value("${consumer.group_id}") String groupId,
+            @Value("${invalid_message_topic.profile}") String invalidTopic) {
+        this.retryTopicSuffix = "-" + groupId + "-retry";
+        this.errorTopicSuffix = "-" + groupId + "-error";
+        this.invalidTopic = invalidTopic;
+        this.retried = counter(meterRegistry, "retry");
+        this.deadLettered = counter(meterRegistry, "dlt");
+        this.invalid = counter(meterRegistry, "invalid");
+    }
+
+    @Override
+    public void onSuccess(ProducerRecord<String, ResourceChangedData> producerRecord, RecordMetadata metadata) {
+        String topic = metadata.topic();
+        if (topic.equals(invalidTopic)) {
+            invalid.increment();
+        } else if (topic.endsWith(errorTopicSuffix)) {
+            deadLettered.increment();
+        } else if (topic.contains(retryTopicSuffix)) {
+            // Tiered retry topics carry an index after the suffix
+            retried.increment();
+        }
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String destination) {
+        return Counter.builder(FAILED_RECORDS_METRIC)
+                .description("Failed records published for another attempt or for inspection")
+                .tag("destination", destination)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,117 @@
+package uk.gov.companieshouse.appointments.subdelta.kafka;
+
+import static org.springframework.kafka.support.KafkaHeaders.EXCEPTION_FQCN;
+import static org.springframework.kafka.support.KafkaHeaders.EXCEPTION_MESSAGE;
+import static org.springframework.kafka.support.KafkaHeaders.ORIGINAL_OFFSET;
+import static org.springframework.kafka.support.KafkaHeaders.ORIGINAL_PARTITION;
+import static org.springframework.kafka.support.KafkaHeaders.ORIGINAL_TIMESTAMP;
+import static org.springframework.kafka.support.KafkaHeaders.ORIGINAL_TOPIC;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutionException;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.retrytopic.RetryTopicHeaders;
+import org.springframework.kafka.support.serializer.SerializationUtils;
+import org.springframework.stereotype.Component;
+import uk.gov.companieshouse.appointments.subdelta.exception.RetryableException;
+import uk.gov.companieshouse.stream.ResourceChangedData;
+
+/**
+ * Publishes individual records that failed within a batch, in the same way the retry topic error
+ * handler does for record listeners. A retryable failure goes to the retry topic as its first
+ * retry; anything else is routed to the invalid topic by {@link InvalidMessageRouter}. Each record
+ * carries the {@link ErrorClassification} header the router reads.
+ */
+@Component
+public class FailedRecordPublisher {
+
+    private final KafkaTemplate<String, ResourceChangedData> kafkaTemplate;
+    private final RetryBackoff retryBackoff;
+    private final String errorTopicSuffix;
+    private final int maxAttempts;
+
+    public FailedRecordPublisher(KafkaTemplate<String, ResourceChangedData> kafkaTemplate,
+            RetryBackoff retryBackoff,
+            @Value("${consumer.group_id}") String groupId,
+            @Value("${consumer.max_attempts}") int maxAttempts) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.retryBackoff = retryBackoff;
+        this.errorTopicSuffix = "-" + groupId + "-error";
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * Publish a record that failed with a retryable error to the retry topic, or straight to the
+     * error topic if no retries are configured.
+     *
+     * @param consumerRecord The failed record.
+     * @param exception      The cause of the failure.
+     */
+    public void publishRetryable(ConsumerRecord<String, ResourceChangedData> consumerRecord,
+            Exception exception) {
+        Headers headers = failureHeaders(consumerRecord, exception);
+        String topic;
+        if (maxAttempts > 1) {
+            topic = retryBackoff.firstRetryTopic(consumerRecord.topic());
+            headers.add(RetryTopicHeaders.DEFAULT_HEADER_ATTEMPTS, BigInteger.TWO.toByteArray());
+            headers.add(RetryTopicHeaders.DEFAULT_HEADER_BACKOFF_TIMESTAMP,
+                    BigInteger.valueOf(System.currentTimeMillis() + retryBackoff.delayAfter(1)).toByteArray());
+            headers.add(RetryTopicHeaders.DEFAULT_HEADER_ORIGINAL_TIMESTAMP,
+                    BigInteger.valueOf(consumerRecord.timestamp()).toByteArray());
+        } else {
+            topic = consumerRecord.topic() + errorTopicSuffix;
+        }
+        headers.add(ErrorClassification.RETRYABLE.header());
+        send(new ProducerRecord<>(topic, null, consumerRecord.key(), consumerRecord.value(), headers));
+    }
+
+    /**
+     * Publish a record that failed with a non-retryable error, or could not be deserialised, to the
+     * invalid topic.
+     *
+     * @param consumerRecord The failed record.
+     * @param exception      The cause of the failure.
+     */
+    public void publishInvalid(ConsumerRecord<String, ResourceChangedData> consumerRecord,
+            Exception exception) {
+        Headers headers = failureHeaders(consumerRecord, exception);
+        headers.add(ErrorClassification.INVALID.header());
+        send(new ProducerRecord<>(consumerRecord.topic() + errorTopicSuffix, null,
+                consumerRecord.key(), consumerRecord.value(), headers));
+    }
+
+    private void send(ProducerRecord<String, ResourceChangedData> producerRecord) {
+        try {
+            kafkaTemplate.send(producerRecord).get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RetryableException("Interrupted publishing failed record", ex);
+        } catch (ExecutionException ex) {
+            throw new RetryableException("Error publishing failed record", ex.getCause());
+        }
+    }
+
+    private static Headers failureHeaders(ConsumerRecord<String, ResourceChangedData> consumerRecord,
+            Exception exception) {
+        Headers headers = new RecordHeaders(consumerRecord.headers().toArray());
+        headers.remove(SerializationUtils.VALUE_DESERIALIZER_EXCEPTION_HEADER);
+        headers.add(ORIGINAL_TOPIC, consumerRecord.topic().getBytes(StandardCharsets.UTF_8));
+        headers.add(ORIGINAL_PARTITION,
+                ByteBuffer.allocate(Integer.BYTES).putInt(consumerRecord.partition()).array());
+        headers.add(ORIGINAL_OFFSET,
+                ByteBuffer.allocate(Long.BYTES).putLong(consumerRecord.offset()).array());
+        headers.add(ORIGINAL_TIMESTAMP,
+                ByteBuffer.allocate(Long.BYTES).putLong(consumerRecord.timestamp()).array());
+        headers.add(EXCEPTION_FQCN, exception.getClass().getName().getBytes(StandardCharsets.UTF_8));
+        headers.add(EXCEPTION_MESSAGE,
+                String.valueOf(exception.getMessage()).getBytes(StandardCharsets.UTF_8));
+        return headers;
+    }
+}
@@ -0,0 +1,117 @@
+package uk.gov.companieshouse.appointments.subdelta.kafka;
+
+import static uk.gov.companieshouse.appointments.subdelta.Application.NAMESPACE;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.stream.Collectors;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.CooperativeStickyAssignor;
+import org.apache.kafka.clients.consumer.RangeAssignor;
+import org.apache.kafka.clients.consumer.RoundRobinAssignor;
+import org.apache.kafka.clients.consumer.StickyAssignor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import uk.gov.companieshouse.logging.Logger;
+import uk.gov.companieshouse.logging.LoggerFactory;
+
+/**
+ * How this instance joins the consumer group: the partition assignors it supports, as set by
+ * {@code consumer.partition_assignment_strategy}, and with {@code consumer.static_membership} a
+ * static {@code group.instance.id} for each consumer, so that a consumer which leaves and rejoins
+ * within the session timeout keeps its partitions without a rebalance.
+ * <p>
+ * The instance id is {@code consumer.group_instance_id} if set, otherwise the ECS task this runs in,
+ * otherwise the host name. Each listener container's id is appended, and the container appends the
+ * consumer's index, so that every consumer in the group has its own.
+ */
+@Component
+public class GroupMembership {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NAMESPACE);
+    private static final String ECS_METADATA_URI = "ECS_CONTAINER_METADATA_URI_V4";
+    private static final String HOSTNAME = "HOSTNAME";
+    private static final Map<String, String> ASSIGNORS = Map.of(
+            "range", RangeAssignor.class.getName(),
+            "roundrobin", RoundRobinAssignor.class.getName(),
+            "sticky", StickyAssignor.class.getName(),
+            "cooperative-sticky", CooperativeStickyAssignor.class.getName());
+
+    private final String assignors;
+    private final String instanceId;
+
+    public GroupMembership(@Value("${consumer.partition_assignment_strategy}") String assignmentStrategy,
+            @Value("${consumer.static_membership}") boolean staticMembership,
+            @Value("${consumer.group_instance_id}") String groupInstanceId) {
+        this(assignmentStrategy, staticMembership, groupInstanceId, System.getenv());
+    }
+
+    GroupMembership(String assignmentStrategy, boolean staticMembership, String groupInstanceId,
+            Map<String, String> environment) {
+        this.assignors = assignorClassNames(assignmentStrategy);
+        this.instanceId = staticMembership ? instanceId(groupInstanceId, environment) : null;
+        LOGGER.info(String.format("Partition assignors %s, %s", assignors, instanceId == null
+                ? "dynamic group membership" : "static group membership as " + instanceId));
+    }
+
+    /**
+     * @return The {@value ConsumerConfig#PARTITION_ASSIGNMENT_STRATEGY_CONFIG} for the consumer factory.
+     */
+    public String getAssignors() {
+        return assignors;
+    }
+
+    public Optional<String> getInstanceId() {
+        return Optional.ofNullable(instanceId);
+    }
+
+    /**
+     * Give the container's consumers their static instance ids, if static membership is enabled.
+     */
+    public void customise(MessageListenerContainer container) {
+        if (instanceId != null) {
+            // The factory's consumer properties may be shared by the containers it creates, so copy them
+            Properties properties = new Properties();
+            properties.putAll(container.getContainerProperties().getKafkaConsumerProperties());
+            properties.setProperty(ConsumerConfig.GROUP_INSTANCE_ID_CONFIG, instanceId + "-" + container.getListenerId());
+            container.getContainerProperties().setKafkaConsumerProperties(properties);
+        }
+    }
+
+    /**
+     * Map assignor names to class names. More than one may be listed, in order of preference, to move
+     * a running group from one to another: first deploy with both, then with only the new one.
+     */
+    static String assignorClassNames(String assignmentStrategy) {
+        return Arrays.stream(assignmentStrategy.split(","))
+                .map(String::trim)
+                .filter(name -> !name.isEmpty())
+                .map(name -> Optional.ofNullable(ASSIGNORS.get(name.toLowerCase()))
+                        .orElseThrow(() -> new IllegalArgumentException(String.format(
+                                "Unknown partition assignment strategy %s, expected one of %s", name,
+                                ASSIGNORS.keySet()))))
+                .collect(Collectors.joining(","));
+    }
+
+    private static String instanceId(String groupInstanceId, Map<String, String> environment) {
+        if (StringUtils.hasText(groupInstanceId)) {
+            return groupInstanceId.trim();
+        }
+        // e.g. http://169.254.170.2/v4/<task id>-<container id>
+        String metadataUri = environment.get(ECS_METADATA_URI);
+        if (StringUtils.hasText(metadataUri)) {
+            String trimmed = StringUtils.trimTrailingCharacter(metadataUri.trim(), '/');
+            return trimmed.substring(trimmed.lastIndexOf('/') + 1);
+        }
+        String hostname = environment.get(HOSTNAME);
+        if (StringUtils.hasText(hostname)) {
+            return hostname.trim();
+        }
+        throw new IllegalStateException(
+                "Static membership is enabled but no group instance id is set and none can be derived");
+    }
+}
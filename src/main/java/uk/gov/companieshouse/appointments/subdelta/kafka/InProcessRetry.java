@@ -0,0 +1,109 @@
+package uk.gov.companieshouse.appointments.subdelta.kafka;
+
+import static uk.gov.companieshouse.appointments.subdelta.Application.NAMESPACE;
+
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.stereotype.Component;
+import uk.gov.companieshouse.appointments.subdelta.companyprofile.ApiCircuitBreaker;
+import uk.gov.companieshouse.appointments.subdelta.exception.RetryableException;
+import uk.gov.companieshouse.appointments.subdelta.logging.DataMapHolder;
+import uk.gov.companieshouse.logging.Logger;
+import uk.gov.companieshouse.logging.LoggerFactory;
+import uk.gov.companieshouse.stream.ResourceChangedData;
+
+/**
+ * Retries a {@link RetryableException} a few times on the listener thread before it escalates to
+ * the retry topic, so a brief API blip costs a short sleep rather than a produce and consume.
+ * <p>
+ * Delays use full jitter: each is random up to the backoff doubled for every attempt so far. The
+ * attempts for a record, including the time spent processing them, must fit in a budget. The budget
+ * is capped at the record's share of {@code max.poll.interval.ms} across {@code max.poll.records},
+ * so that a poll full of failing records cannot get the consumer evicted from its group. Nothing is
+ * retried here while the API circuit breaker is open.
+ */
+@Component
+public class InProcessRetry {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NAMESPACE);
+
+    private static final String RETRY_MESSAGE = "In-process attempt %d of %d failed, retrying in %d ms";
+    private static final String ESCALATE_MESSAGE = "Escalating to retry topic after %d in-process attempt(s)";
+    private static final int DEFAULT_MAX_POLL_INTERVAL_MS = 300_000;
+    private static final int DEFAULT_MAX_POLL_RECORDS = 500;
+
+    private final ApiCircuitBreaker circuitBreaker;
+    private final int maxAttempts;
+    private final long backoffMillis;
+    private final long budgetNanos;
+
+    public InProcessRetry(ApiCircuitBreaker circuitBreaker,
+            ConsumerFactory<String, ResourceChangedData> consumerFactory,
+            @Value("${consumer.in_process_attempts}") int maxAttempts,
+            @Value("${consumer.in_process_backoff}") long backoffMillis,
+            @Value("${consumer.in_process_budget}") long budgetMillis) {
+        this.circuitBreaker = circuitBreaker;
+        this.maxAttempts = maxAttempts;
+        this.backoffMillis = backoffMillis;
+        long recordShare = recordShareOfPollInterval(consumerFactory.getConfigurationProperties());
+        if (budgetMillis > recordShare) {
+            LOGGER.info(String.format("In-process retry budget of %d ms capped to %d ms by max.poll.interval.ms",
+                    budgetMillis, recordShare));
+        }
+        this.budgetNanos = TimeUnit.MILLISECONDS.toNanos(Math.min(budgetMillis, recordShare));
+    }
+
+    /**
+     * Run the processing, retrying it while it throws {@link RetryableException} and attempts and
+     * budget remain.
+     *
+     * @throws RetryableException The last failure, once this stage gives up on the record.
+     */
+    public void run(Runnable processing) {
+        long start = System.nanoTime();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                processing.run();
+                return;
+            } catch (RetryableException ex) {
+                long delay = attempt < maxAttempts ? delayMillis(attempt) : -1;
+                long remaining = budgetNanos - (System.nanoTime() - start);
+                if (delay < 0 || TimeUnit.MILLISECONDS.toNanos(delay) >= remaining
+                        || circuitBreaker.getState() != ApiCircuitBreaker.State.CLOSED) {
+                    if (maxAttempts > 1) {
+                        LOGGER.info(String.format(ESCALATE_MESSAGE, attempt), DataMapHolder.getLogMap());
+                    }
+                    throw ex;
+                }
+                LOGGER.info(String.format(RETRY_MESSAGE, attempt, maxAttempts, delay), DataMapHolder.getLogMap());
+                sleep(delay, ex);
+            }
+        }
+    }
+
+    private long delayMillis(int attempt) {
+        long ceiling = backoffMillis << Math.min(attempt - 1, 20);
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    private static void sleep(long delay, RetryableException ex) {
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException interrupted) {
+            Thread.currentThread().interrupt();
+            throw ex;
+        }
+    }
+
+    private static long recordShareOfPollInterval(Map<String, Object> properties) {
+        long pollInterval = Long.parseLong(String.valueOf(properties.getOrDefault(
+                ConsumerConfig.MAX_POLL_INTERVAL_MS_CONFIG, DEFAULT_MAX_POLL_INTERVAL_MS)));
+        long pollRecords = Long.parseLong(String.valueOf(properties.getOrDefault(
+                ConsumerConfig.MAX_POLL_RECORDS_CONFIG, DEFAULT_MAX_POLL_RECORDS)));
+        return pollInterval / Math.max(1, pollRecords);
+    }
+}
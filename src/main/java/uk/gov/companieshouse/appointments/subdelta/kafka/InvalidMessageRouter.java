@@ -5,60 +5,52 @@ import static org.springframework.kafka.support.KafkaHeaders.ORIGINAL_OFFSET;
 import static org.springframework.kafka.support.KafkaHeaders.ORIGINAL_PARTITION;
 import static uk.gov.companieshouse.appointments.subdelta.Application.NAMESPACE;
 
-import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 import java.util.Map;
-import java.util.Optional;
 import org.apache.kafka.clients.producer.ProducerInterceptor;
 import org.apache.kafka.clients.producer.ProducerRecord;
 import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
 import uk.gov.companieshouse.logging.Logger;
 import uk.gov.companieshouse.logging.LoggerFactory;
 import uk.gov.companieshouse.stream.EventRecord;
 import uk.gov.companieshouse.stream.ResourceChangedData;
 
 /**
- * Routes a message to the invalid letter topic if a non-retryable error has been thrown during
- * message processing.
+ * Routes a message to the invalid letter topic if its {@link ErrorClassification} header says it
+ * failed with a non-retryable error. Any other message is sent unchanged. The route depends only on
+ * the record being sent, so this is safe to call from any thread.
  */
 public class InvalidMessageRouter implements ProducerInterceptor<String, ResourceChangedData> {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(NAMESPACE);
 
-    private MessageFlags messageFlags;
     private String profileInvalidTopic;
 
     @Override
     public ProducerRecord<String, ResourceChangedData> onSend(
             ProducerRecord<String, ResourceChangedData> producerRecord) {
-        if (messageFlags.isRetryable()) {
-            messageFlags.destroy();
+        if (!ErrorClassification.INVALID.isPresentIn(producerRecord.headers())) {
             return producerRecord;
-        } else {
-
-            String originalTopic = producerRecord.topic();
-            BigInteger partition = Optional.ofNullable(
-                            producerRecord.headers().lastHeader(ORIGINAL_PARTITION))
-                    .map(h -> new BigInteger(h.value())).orElse(BigInteger.valueOf(-1));
-            BigInteger offset = Optional.ofNullable(
-                            producerRecord.headers().lastHeader(ORIGINAL_OFFSET))
-                    .map(h -> new BigInteger(h.value())).orElse(BigInteger.valueOf(-1));
-            String exception = Optional.ofNullable(
-                            producerRecord.headers().lastHeader(EXCEPTION_MESSAGE))
-                    .map(h -> new String(h.value()))
-                    .orElse("unknown");
+        }
 
-            ResourceChangedData invalidData = new ResourceChangedData("", "", "", "",
-                    String.format(
-                            "{ \"invalid_message\": \"exception: [ %s ] redirecting message from topic: %s, partition: %d, offset: %d to invalid topic\" }",
-                            exception, originalTopic, partition, offset),
-                    new EventRecord("", "", Collections.emptyList()));
+        Headers headers = producerRecord.headers();
+        Header exception = headers.lastHeader(EXCEPTION_MESSAGE);
+        ResourceChangedData invalidData = new ResourceChangedData("", "", "", "",
+                String.format(
+                        "{ \"invalid_message\": \"exception: [ %s ] redirecting message from topic: %s, partition: %d, offset: %d to invalid topic\" }",
+                        exception != null ? new String(exception.value(), StandardCharsets.UTF_8) : "unknown",
+                        producerRecord.topic(),
+                        decode(headers.lastHeader(ORIGINAL_PARTITION)),
+                        decode(headers.lastHeader(ORIGINAL_OFFSET))),
+                new EventRecord("", "", Collections.emptyList()));
 
-            LOGGER.info(String.format("Moving record into topic: [%s]%nMessage content: %s",
-                    profileInvalidTopic, invalidData.getData()));
+        LOGGER.info(String.format("Moving record into topic: [%s]%nMessage content: %s",
+                profileInvalidTopic, invalidData.getData()));
 
-            return new ProducerRecord<>(profileInvalidTopic, producerRecord.key(), invalidData);
-        }
+        return new ProducerRecord<>(profileInvalidTopic, producerRecord.key(), invalidData);
     }
 
     @Override
@@ -73,7 +65,21 @@ public class InvalidMessageRouter implements ProducerInterceptor<String, Resourc
 
     @Override
     public void configure(Map<String, ?> configs) {
-        this.messageFlags = (MessageFlags) configs.get("message.flags");
         this.profileInvalidTopic = (String) configs.get("invalid.message.topic.profile");
     }
+
+    /**
+     * Decode a big-endian, two's complement partition or offset header, or -1 if it is missing.
+     */
+    private static long decode(Header header) {
+        if (header == null || header.value().length == 0) {
+            return -1;
+        }
+        byte[] bytes = header.value();
+        long value = bytes[0] < 0 ? -1 : 0;
+        for (byte b : bytes) {
+            value = (value << 8) | (b & 0xFF);
+        }
+        return value;
+    }
 }
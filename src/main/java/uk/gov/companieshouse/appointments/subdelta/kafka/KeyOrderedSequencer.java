@@ -0,0 +1,53 @@
+package uk.gov.companieshouse.appointments.subdelta.kafka;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Starts tasks so that a task only starts once the previous task with the same key has completed,
+ * successfully or not. Tasks with different keys are started straight away.
+ */
+class KeyOrderedSequencer {
+
+    private final Map<String, CompletableFuture<Void>> latestByKey = new ConcurrentHashMap<>();
+
+    /**
+     * @param key  The key to order by, or null if the task need not be ordered.
+     * @param task Starts the task.
+     * @return A future completed with the outcome of the task.
+     */
+    CompletableFuture<Void> submit(String key, Supplier<CompletableFuture<Void>> task) {
+        if (key == null) {
+            return task.get();
+        }
+        // Record a placeholder for the task and start the task afterwards, so that it never runs
+        // while holding the map's lock on the key
+        CompletableFuture<Void> submitted = new CompletableFuture<>();
+        CompletableFuture<Void> previous = latestByKey.put(key, submitted);
+        CompletableFuture<Void> started = previous == null ? start(task)
+                : previous.handle((result, throwable) -> null).thenCompose(ignored -> start(task));
+        started.whenComplete((result, throwable) -> {
+            if (throwable == null) {
+                submitted.complete(result);
+            } else {
+                submitted.completeExceptionally(throwable);
+            }
+        });
+        submitted.whenComplete((result, throwable) -> latestByKey.remove(key, submitted));
+        return submitted;
+    }
+
+    private static CompletableFuture<Void> start(Supplier<CompletableFuture<Void>> task) {
+        try {
+            return task.get();
+        } catch (RuntimeException ex) {
+            return CompletableFuture.failedFuture(ex);
+        }
+    }
+
+    int size() {
+        return latestByKey.size();
+    }
+}
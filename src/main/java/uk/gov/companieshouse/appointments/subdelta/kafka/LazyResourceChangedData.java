@@ -0,0 +1,85 @@
+package uk.gov.companieshouse.appointments.subdelta.kafka;
+
+import java.nio.charset.StandardCharsets;
+import uk.gov.companieshouse.stream.ResourceChangedData;
+
+/**
+ * A {@link ResourceChangedData} whose {@code data} field is still held as the UTF-8 bytes of the
+ * Avro record it was read from. The bytes are only decoded into a string when the field is first
+ * read, so records that are routed away never pay for it.
+ */
+public class LazyResourceChangedData extends ResourceChangedData {
+
+    static final int DATA_FIELD_POSITION = ResourceChangedData.getClassSchema().getField("data").pos();
+
+    private byte[] source;
+    private int dataOffset;
+    private int dataLength;
+
+    void deferData(byte[] source, int dataOffset, int dataLength) {
+        this.source = source;
+        this.dataOffset = dataOffset;
+        this.dataLength = dataLength;
+    }
+
+    /**
+     * @return True if the data field has not been decoded into a string yet.
+     */
+    public boolean isDataDeferred() {
+        return source != null;
+    }
+
+    /**
+     * The array holding the undecoded data field. Only valid while {@link #isDataDeferred()} is
+     * true, and must not be modified.
+     */
+    public byte[] getDataSource() {
+        return source;
+    }
+
+    public int getDataOffset() {
+        return dataOffset;
+    }
+
+    public int getDataLength() {
+        return dataLength;
+    }
+
+    @Override
+    public String getData() {
+        decodeData();
+        return super.getData();
+    }
+
+    @Override
+    public void setData(String value) {
+        source = null;
+        super.setData(value);
+    }
+
+    @Override
+    public Object get(int field) {
+        if (field == DATA_FIELD_POSITION) {
+            decodeData();
+        }
+        return super.get(field);
+    }
+
+    @Override
+    public void put(int field, Object value) {
+        if (field == DATA_FIELD_POSITION) {
+            source = null;
+        }
+        super.put(field, value);
+    }
+
+    /**
+     * Decode the deferred data field, if it has not been already.
+     */
+    public void decodeData() {
+        if (source != null) {
+            super.setData(new String(source, dataOffset, dataLength, StandardCharsets.UTF_8));
+            source = null;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package uk.gov.companieshouse.appointments.subdelta.kafka;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.avro.AvroRuntimeException;
+import org.apache.avro.Schema;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.DatumReader;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.specific.SpecificDatumReader;
+import org.apache.kafka.common.header.Headers;
+import uk.gov.companieshouse.stream.ResourceChangedData;
+
+/**
+ * Decodes {@link ResourceChangedData} in two phases. The small string fields ahead of {@code data},
+ * and everything after it (including the event used for routing), are decoded straight away. The
+ * {@code data} field is skipped and left as a slice of the record bytes in a
+ * {@link LazyResourceChangedData} until it is needed.
+ * <p>
+ * Like the reflect path, this assumes records were written with the reader schema.
+ */
+public class LazyResourceChangedDataDecoder implements PayloadDecoder {
+
+    private final List<Schema.Field> leadingFields = new ArrayList<>();
+    private final List<Schema.Field> trailingFields = new ArrayList<>();
+    private final ThreadLocal<TrailingState> state;
+
+    public LazyResourceChangedDataDecoder() {
+        Schema schema = ResourceChangedData.getClassSchema();
+        for (Schema.Field field : schema.getFields()) {
+            if (field.pos() < LazyResourceChangedData.DATA_FIELD_POSITION) {
+                if (field.schema().getType() != Schema.Type.STRING) {
+                    throw new IllegalStateException(String.format(
+                            "Lazy decoding needs string fields ahead of data, found %s", field));
+                }
+                leadingFields.add(field);
+            } else if (field.pos() > LazyResourceChangedData.DATA_FIELD_POSITION) {
+                trailingFields.add(field);
+            } else if (field.schema().getType() != Schema.Type.STRING) {
+                throw new IllegalStateException("Lazy decoding needs data to be a string");
+            }
+        }
+        this.state = ThreadLocal.withInitial(() -> new TrailingState(trailingFields));
+    }
+
+    @Override
+    public ResourceChangedData decode(byte[] data, Headers headers) throws IOException {
+        LazyResourceChangedData changedData = new LazyResourceChangedData();
+        int position = 0;
+        for (Schema.Field field : leadingFields) {
+            int length = readLength(data, position);
+            position = skipLength(data, position);
+            changedData.put(field.pos(), new String(data, position, length, StandardCharsets.UTF_8));
+            position += length;
+        }
+
+        int dataLength = readLength(data, position);
+        position = skipLength(data, position);
+        changedData.deferData(data, position, dataLength);
+        position += dataLength;
+
+        TrailingState trailing = state.get();
+        trailing.decoder = DecoderFactory.get()
+                .binaryDecoder(data, position, data.length - position, trailing.decoder);
+        for (int i = 0; i < trailingFields.size(); i++) {
+            changedData.put(trailingFields.get(i).pos(), trailing.readers.get(i).read(null, trailing.decoder));
+        }
+        return changedData;
+    }
+
+    /**
+     * Read the zig-zag varint length prefix at the position and check the bytes it covers exist.
+     */
+    private static int readLength(byte[] data, int position) throws IOException {
+        long raw = 0;
+        int shift = 0;
+        int index = position;
+        while (true) {
+            if (index >= data.length) {
+                throw new EOFException();
+            }
+            byte b = data[index++];
+            raw |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                break;
+            }
+            shift += 7;
+            if (shift > 63) {
+                throw new AvroRuntimeException("Invalid long encoding");
+            }
+        }
+        long length = (raw >>> 1) ^ -(raw & 1);
+        if (length < 0) {
+            throw new AvroRuntimeException("Malformed data. Length is negative: " + length);
+        }
+        if (length > data.length - index) {
+            throw new EOFException();
+        }
+        return (int) length;
+    }
+
+    private static int skipLength(byte[] data, int position) {
+        int index = position;
+        while ((data[index++] & 0x80) != 0) {
+            // continuation bit set, keep going
+        }
+        return index;
+    }
+
+    private static final class TrailingState {
+
+        private final List<DatumReader<Object>> readers = new ArrayList<>();
+        private BinaryDecoder decoder;
+
+        private TrailingState(List<Schema.Field> fields) {
+            for (Schema.Field field : fields) {
+                readers.add(new SpecificDatumReader<>(field.schema()));
+            }
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package uk.gov.companieshouse.appointments.subdelta.kafka;
+
+import static uk.gov.companieshouse.appointments.subdelta.Application.NAMESPACE;
+
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.OptionalDouble;
+import java.util.OptionalInt;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.apache.kafka.common.KafkaException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.KafkaAdmin;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.stereotype.Component;
+import uk.gov.companieshouse.logging.Logger;
+import uk.gov.companieshouse.logging.LoggerFactory;
+
+/**
+ * The number of threads each listener container runs, as set by {@code consumer.concurrency}.
+ * <p>
+ * Set to {@code auto}, enough threads are run to keep the CPUs available to the container busy:
+ * the CPUs divided by the fraction of each record's time a listener thread spends on the CPU rather
+ * than blocked, as measured by {@link BlockingRatioSampler}. It is never more than the main topic's
+ * partition count, as any more threads would have no partitions. Until enough records have been
+ * sampled the configured blocking ratio is used. The value is decided at startup and again after each
+ * rebalance, and running containers are restarted with the new value when it changes, but at most once
+ * every {@link #MIN_RESIZE_INTERVAL} since the restart itself causes a rebalance.
+ */
+@Component
+public class ListenerConcurrency {
+
+    static final Duration MIN_RESIZE_INTERVAL = Duration.ofMinutes(5);
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NAMESPACE);
+    private static final String AUTO = "auto";
+    private static final double MAX_BLOCKING_RATIO = 0.95;
+    private static final Path CGROUP = Path.of("/sys/fs/cgroup");
+
+    private final boolean auto;
+    private final String topic;
+    private final KafkaAdmin kafkaAdmin;
+    private final KafkaListenerEndpointRegistry registry;
+    private final BlockingRatioSampler sampler;
+    private final double cpus;
+    private final long minResizeIntervalNanos;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(
+            Thread.ofPlatform().name("listener-concurrency").daemon().factory());
+    private final AtomicBoolean evaluationPending = new AtomicBoolean();
+
+    private volatile Decision decision;
+    private double blockingRatio;
+    private String blockingRatioSource = "configured estimate";
+    private long lastResize = System.nanoTime();
+
+    public ListenerConcurrency(@Value("${consumer.concurrency}") String concurrency,
+            @Value("${consumer.concurrency_blocking_ratio}") double blockingRatio,
+            @Value("${consumer.profile.topic}") String topic,
+            KafkaAdmin kafkaAdmin, KafkaListenerEndpointRegistry registry, BlockingRatioSampler sampler) {
+        this(concurrency, blockingRatio, topic, kafkaAdmin, registry, sampler, availableCpus(CGROUP),
+                MIN_RESIZE_INTERVAL);
+    }
+
+    ListenerConcurrency(String concurrency, double blockingRatio, String topic, KafkaAdmin kafkaAdmin,
+            KafkaListenerEndpointRegistry registry, BlockingRatioSampler sampler, double cpus,
+            Duration minResizeInterval) {
+        this.auto = AUTO.equalsIgnoreCase(concurrency.trim());
+        this.topic = topic;
+        this.kafkaAdmin = kafkaAdmin;
+        this.registry = registry;
+        this.sampler = sampler;
+        this.cpus = cpus;
+        this.minResizeIntervalNanos = minResizeInterval.toNanos();
+        this.blockingRatio = blockingRatio;
+        if (auto) {
+            this.decision = decide();
+        } else {
+            this.decision = new Decision(false, Integer.parseInt(concurrency.trim()), null, cpus, null,
+                    "Set by consumer.concurrency");
+        }
+        LOGGER.info(String.format("Listener concurrency %d: %s", decision.concurrency(), decision.reason()));
+    }
+
+    public boolean isAuto() {
+        return auto;
+    }
+
+    public Decision getDecision() {
+        return decision;
+    }
+
+    /**
+     * Set the factory's concurrency.
+     */
+    public void apply(ConcurrentKafkaListenerContainerFactory<?, ?> factory) {
+        factory.setConcurrency(decision.concurrency());
+    }
+
+    /**
+     * In auto mode, decide the concurrency again after a rebalance. Called by {@link RebalanceHandler}.
+     */
+    public void rebalanced() {
+        // Called by every consumer in the group, so decide once; never restart on a consumer thread
+        if (auto && evaluationPending.compareAndSet(false, true)) {
+            executor.execute(this::reevaluate);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    void reevaluate() {
+        evaluationPending.set(false);
+        OptionalDouble measured = sampler.takeBlockingRatio();
+        if (measured.isPresent()) {
+            blockingRatio = measured.getAsDouble();
+            blockingRatioSource = "measured";
+        }
+        Decision next = decide();
+        if (next.concurrency() == decision.concurrency()) {
+            decision = next;
+            return;
+        }
+        long now = System.nanoTime();
+        if (now - lastResize < minResizeIntervalNanos) {
+            LOGGER.debug(String.format("Not resizing listener containers to %d threads so soon after the last resize",
+                    next.concurrency()));
+            return;
+        }
+        LOGGER.info(String.format("Resizing listener containers from %d to %d threads: %s",
+                decision.concurrency(), next.concurrency(), next.reason()));
+        decision = next;
+        lastResize = now;
+        for (MessageListenerContainer container : registry.getAllListenerContainers()) {
+            if (container instanceof ConcurrentMessageListenerContainer<?, ?> concurrent && concurrent.isRunning()) {
+                concurrent.stop();
+                concurrent.setConcurrency(next.concurrency());
+                concurrent.start();
+            }
+        }
+    }
+
+    private Decision decide() {
+        double ratio = Math.min(Math.max(blockingRatio, 0), MAX_BLOCKING_RATIO);
+        // Less a rounding allowance, so that e.g. 2 CPUs at 0.9 is 20 threads rather than 21
+        int forCpus = Math.max(1, (int) Math.ceil(cpus / (1 - ratio) - 1e-9));
+        String reason = String.format("%.2f CPUs / (1 - %.2f %s blocking ratio) = %d threads", cpus, ratio,
+                blockingRatioSource, forCpus);
+        OptionalInt partitions = partitions();
+        if (partitions.isEmpty()) {
+            return new Decision(true, forCpus, null, cpus, ratio, reason + ", partition count unknown");
+        }
+        int partitionCount = partitions.getAsInt();
+        if (forCpus > partitionCount) {
+            return new Decision(true, Math.max(1, partitionCount), partitionCount, cpus, ratio,
+                    String.format("%s, capped at the %d partitions of %s", reason, partitionCount, topic));
+        }
+        return new Decision(true, forCpus, partitionCount, cpus, ratio,
+                String.format("%s, within the %d partitions of %s", reason, partitionCount, topic));
+    }
+
+    private OptionalInt partitions() {
+        try {
+            return OptionalInt.of(kafkaAdmin.describeTopics(topic).get(topic).partitions().size());
+        } catch (KafkaException ex) {
+            LOGGER.info(String.format("Unable to describe topic %s: %s", topic, ex.getMessage()));
+            return OptionalInt.empty();
+        }
+    }
+
+    /**
+     * The CPUs available to this container: its cgroup CPU quota, which may be fractional, if it has
+     * one, otherwise the processors available to the JVM.
+     */
+    static double availableCpus(Path cgroup) {
+        double processors = Runtime.getRuntime().availableProcessors();
+        try {
+            Path cgroupV2 = cgroup.resolve("cpu.max");
+            if (Files.isReadable(cgroupV2)) {
+                // "<quota> <period>", or "max <period>" without a quota
+                String[] max = Files.readString(cgroupV2).trim().split("\\s+");
+                return max[0].equals("max") ? processors
+                        : Math.min(processors, Double.parseDouble(max[0]) / Double.parseDouble(max[1]));
+            }
+            for (String controller : List.of("cpu", "cpu,cpuacct")) {
+                Path quota = cgroup.resolve(controller).resolve("cpu.cfs_quota_us");
+                Path period = cgroup.resolve(controller).resolve("cpu.cfs_period_us");
+                if (Files.isReadable(quota) && Files.isReadable(period)) {
+                    double quotaMicros = Double.parseDouble(Files.readString(quota).trim());
+                    return quotaMicros <= 0 ? processors
+                            : Math.min(processors, quotaMicros / Double.parseDouble(Files.readString(period).trim()));
+                }
+            }
+        } catch (IOException | RuntimeException ex) {
+            LOGGER.info(String.format("Unable to read cgroup CPU quota: %s", ex.getMessage()));
+        }
+        return processors;
+    }
+
+    /**
+     * @param auto          True if decided automatically, false if set by {@code consumer.concurrency}.
+     * @param concurrency   The number of threads each listener container runs.
+     * @param partitions    The main topic's partition count, if known.
+     * @param cpus          The CPUs available to the container.
+     * @param blockingRatio The fraction of listener time spent blocked that the decision used.
+     * @param reason        How the number of threads was arrived at.
+     */
+    public record Decision(boolean auto, int concurrency, Integer partitions, double cpus, Double blockingRatio,
+            String reason) {
+    }
+}
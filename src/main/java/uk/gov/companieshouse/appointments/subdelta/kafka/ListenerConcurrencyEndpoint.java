@@ -0,0 +1,24 @@
+package uk.gov.companieshouse.appointments.subdelta.kafka;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+/**
+ * Exposes the listener concurrency in use and how it was decided.
+ */
+@Component
+@Endpoint(id = "concurrency")
+public class ListenerConcurrencyEndpoint {
+
+    private final ListenerConcurrency listenerConcurrency;
+
+    public ListenerConcurrencyEndpoint(ListenerConcurrency listenerConcurrency) {
+        this.listenerConcurrency = listenerConcurrency;
+    }
+
+    @ReadOperation
+    public ListenerConcurrency.Decision concurrency() {
+        return listenerConcurrency.getDecision();
+    }
+}
@@ -0,0 +1,173 @@
+package uk.gov.companieshouse.appointments.subdelta.kafka;
+
+import static uk.gov.companieshouse.appointments.subdelta.Application.NAMESPACE;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.kafka.event.ListenerContainerIdleEvent;
+import org.springframework.stereotype.Component;
+import uk.gov.companieshouse.logging.Logger;
+import uk.gov.companieshouse.logging.LoggerFactory;
+
+/**
+ * Commits the offsets of records processed off the consumer thread, which complete out of order.
+ * Each record is tracked in offset order as it is consumed and marked complete from whichever thread
+ * completes it; the offset committed for a partition is that of its first record not yet complete,
+ * so a record is never committed before it has been processed.
+ * <p>
+ * Rather than after every record, offsets are committed at most every {@code consumer.commit_count}
+ * records or {@code consumer.commit_interval} milliseconds, whichever comes first, and always when
+ * partitions are revoked or the consumer stops. A consumer whose partitions have gone quiet commits
+ * when its container reports it idle, so records that complete after the last one consumed are
+ * committed without waiting for another. Commits are made on the consumer thread, as the consumer
+ * is not thread safe.
+ */
+@Component
+public class OffsetManager {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NAMESPACE);
+
+    private final int commitCount;
+    private final long commitIntervalNanos;
+    private final Map<TopicPartition, PartitionOffsets> partitions = new ConcurrentHashMap<>();
+    // Each consumer has its own thread, so each has its own count and interval
+    private final ThreadLocal<CommitSchedule> schedule = ThreadLocal.withInitial(CommitSchedule::new);
+
+    public OffsetManager(@Value("${consumer.commit_count}") int commitCount,
+            @Value("${consumer.commit_interval}") long commitInterval) {
+        this.commitCount = commitCount;
+        this.commitIntervalNanos = TimeUnit.MILLISECONDS.toNanos(commitInterval);
+    }
+
+    /**
+     * Track a record as consumed but not yet complete. Called on the consumer thread in offset order.
+     */
+    public void track(TopicPartition partition, long offset) {
+        partitions.computeIfAbsent(partition, key -> new PartitionOffsets()).offsets.put(offset, Boolean.FALSE);
+    }
+
+    /**
+     * Mark a record complete, from any thread, so that its offset can be committed once every earlier
+     * record of its partition is complete too.
+     */
+    public void complete(TopicPartition partition, long offset) {
+        PartitionOffsets partitionOffsets = partitions.get(partition);
+        if (partitionOffsets != null) {
+            partitionOffsets.offsets.replace(offset, Boolean.TRUE);
+        }
+    }
+
+    /**
+     * Commit the consumer's partitions without waiting if the commit count or interval has been
+     * reached since its last commit. Called on the consumer thread for each record consumed.
+     */
+    public void commitIfDue(Consumer<?, ?> consumer) {
+        CommitSchedule commitSchedule = schedule.get();
+        long now = System.nanoTime();
+        if (++commitSchedule.records < commitCount && now - commitSchedule.lastCommit < commitIntervalNanos) {
+            return;
+        }
+        commit(consumer, commitSchedule, now);
+    }
+
+    /**
+     * Commit the consumer's partitions without waiting when its container has had no records for the
+     * idle event interval. Called on the consumer thread.
+     */
+    @EventListener
+    public void onIdle(ListenerContainerIdleEvent event) {
+        commit(event.getConsumer(), schedule.get(), System.nanoTime());
+    }
+
+    private void commit(Consumer<?, ?> consumer, CommitSchedule commitSchedule, long now) {
+        commitSchedule.records = 0;
+        commitSchedule.lastCommit = now;
+        Map<TopicPartition, OffsetAndMetadata> offsets = committable(consumer.assignment());
+        if (!offsets.isEmpty()) {
+            consumer.commitAsync(offsets, (committed, ex) -> {
+                if (ex != null) {
+                    // A later commit, or the commit when the partitions are revoked, covers these offsets
+                    LOGGER.info(String.format("Failed to commit offsets %s: %s", committed, ex.getMessage()));
+                }
+            });
+        }
+    }
+
+    /**
+     * Commit the partitions, waiting for the commit, and stop tracking them. Called on the consumer
+     * thread when the partitions are revoked or the consumer stops, once in-flight records have been
+     * drained. Records not yet complete are consumed again by the partitions' next owner.
+     */
+    public void commitAndRelease(Consumer<?, ?> consumer, Collection<TopicPartition> revoked) {
+        Map<TopicPartition, OffsetAndMetadata> offsets = committable(revoked);
+        try {
+            if (!offsets.isEmpty()) {
+                consumer.commitSync(offsets);
+            }
+        } catch (KafkaException ex) {
+            LOGGER.error(String.format("Failed to commit offsets %s of revoked partitions", offsets), ex);
+        } finally {
+            release(revoked);
+        }
+    }
+
+    /**
+     * Stop tracking partitions without committing them, when they are lost to another consumer.
+     */
+    public void release(Collection<TopicPartition> released) {
+        released.forEach(partitions::remove);
+    }
+
+    private Map<TopicPartition, OffsetAndMetadata> committable(Collection<TopicPartition> assigned) {
+        Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+        for (TopicPartition partition : assigned) {
+            PartitionOffsets partitionOffsets = partitions.get(partition);
+            if (partitionOffsets != null) {
+                long next = partitionOffsets.takeCompleted();
+                if (next > partitionOffsets.committed) {
+                    partitionOffsets.committed = next;
+                    offsets.put(partition, new OffsetAndMetadata(next));
+                }
+            }
+        }
+        return offsets;
+    }
+
+    private static final class PartitionOffsets {
+
+        // Whether each tracked record is complete, by offset; completed records are only removed
+        // from the head, on the consumer thread
+        private final ConcurrentSkipListMap<Long, Boolean> offsets = new ConcurrentSkipListMap<>();
+        private long committed = -1;
+
+        /**
+         * @return The offset to commit: that of the first record not yet complete, or the offset
+         *         after the last record if every record is complete.
+         */
+        private long takeCompleted() {
+            long next = committed;
+            Map.Entry<Long, Boolean> first;
+            while ((first = offsets.firstEntry()) != null && first.getValue()) {
+                offsets.remove(first.getKey());
+                next = first.getKey() + 1;
+            }
+            return next;
+        }
+    }
+
+    private static final class CommitSchedule {
+
+        private int records;
+        private long lastCommit = System.nanoTime();
+    }
+}
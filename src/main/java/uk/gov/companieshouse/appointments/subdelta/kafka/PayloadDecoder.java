@@ -0,0 +1,20 @@
+package uk.gov.companieshouse.appointments.subdelta.kafka;
+
+import java.io.IOException;
+import org.apache.kafka.common.header.Headers;
+import uk.gov.companieshouse.stream.ResourceChangedData;
+
+/**
+ * Decodes the value bytes of a Kafka record into a {@link ResourceChangedData}.
+ */
+@FunctionalInterface
+interface PayloadDecoder {
+
+    /**
+     * @param data    The record value.
+     * @param headers The record headers, which may be null.
+     * @return The decoded record.
+     * @throws IOException If the data cannot be decoded.
+     */
+    ResourceChangedData decode(byte[] data, Headers headers) throws IOException;
+}
@@ -0,0 +1,29 @@
+package uk.gov.companieshouse.appointments.subdelta.kafka;
+
+/**
+ * How records on the company profile topic are handed to the listener.
+ */
+public enum ProcessingMode {
+
+    /**
+     * One record per listener call, with failures handled by the container.
+     */
+    RECORD,
+
+    /**
+     * The whole poll result per listener call, with failures published record by record.
+     */
+    BATCH,
+
+    /**
+     * One record per listener call, acknowledged once its PATCH completes without blocking the
+     * listener, up to a limit of PATCHes in flight per partition.
+     */
+    ASYNC,
+
+    /**
+     * One record per listener call, processed on its own virtual thread and acknowledged once
+     * complete, with records for the same company kept in order.
+     */
+    PARALLEL
+}
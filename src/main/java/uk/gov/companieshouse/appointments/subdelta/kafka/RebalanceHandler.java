@@ -0,0 +1,130 @@
+package uk.gov.companieshouse.appointments.subdelta.kafka;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.kafka.event.ConsumerStoppingEvent;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
+import org.springframework.stereotype.Component;
+import uk.gov.companieshouse.appointments.subdelta.companyprofile.AppliedNameStatusCache;
+
+/**
+ * The rebalance listener of every listener container. When partitions are revoked, or the consumer
+ * stops, it drains the {@link AsyncConsumer}'s in-flight records of those partitions, for up to
+ * {@code consumer.drain_timeout}, and has the {@link OffsetManager} commit every record completed by
+ * then, so that the new owner starts after them. It has {@link CatchUpMode} forget the consumer's
+ * mode, which is decided again from the lag of the partitions it keeps. After each assignment it lets
+ * {@link ListenerConcurrency} decide the concurrency again.
+ * <p>
+ * Whenever partitions are revoked, lost or assigned it clears the {@link AppliedNameStatusCache}, as
+ * another consumer may have applied other names and statuses to their companies in between.
+ * <p>
+ * Times how long each consumer is without its revoked partitions, from revocation to its next
+ * assignment, and how long the drain took. With the eager protocol that is every consumer in the
+ * group on every rebalance; with the cooperative protocol it is only those giving up partitions.
+ */
+@Component
+public class RebalanceHandler implements ConsumerAwareRebalanceListener {
+
+    static final String PAUSE_METRIC = "appointments.consumer.rebalance.pause";
+    static final String DRAIN_METRIC = "appointments.consumer.rebalance.drain";
+
+    private final ListenerConcurrency listenerConcurrency;
+    private final OffsetManager offsetManager;
+    private final CatchUpMode catchUpMode;
+    private final AppliedNameStatusCache appliedCache;
+    private final ObjectProvider<AsyncConsumer> asyncConsumer;
+    private final Duration drainTimeout;
+    private final Timer pause;
+    private final Timer drained;
+    private final Timer drainTimedOut;
+    // Each consumer has its own thread, on which all of its rebalance callbacks are made
+    private final ThreadLocal<Long> revokedAt = new ThreadLocal<>();
+
+    public RebalanceHandler(ListenerConcurrency listenerConcurrency, OffsetManager offsetManager,
+            CatchUpMode catchUpMode, AppliedNameStatusCache appliedCache,
+            ObjectProvider<AsyncConsumer> asyncConsumer, MeterRegistry meterRegistry,
+            @Value("${consumer.drain_timeout}") long drainTimeout) {
+        this.listenerConcurrency = listenerConcurrency;
+        this.offsetManager = offsetManager;
+        this.catchUpMode = catchUpMode;
+        this.appliedCache = appliedCache;
+        this.asyncConsumer = asyncConsumer;
+        this.drainTimeout = Duration.ofMillis(drainTimeout);
+        this.pause = Timer.builder(PAUSE_METRIC)
+                .description("Time a consumer is without its revoked partitions until it is assigned partitions again")
+                .register(meterRegistry);
+        this.drained = drainTimer(meterRegistry, "drained");
+        this.drainTimedOut = drainTimer(meterRegistry, "timed_out");
+    }
+
+    @Override
+    public void onPartitionsRevokedBeforeCommit(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        if (partitions.isEmpty()) {
+            return;
+        }
+        revokedAt.set(System.nanoTime());
+        catchUpMode.reset(consumer);
+        drainAndCommit(consumer, partitions);
+        // After the drain, so records completed by then cannot fill it again
+        appliedCache.clear();
+    }
+
+    /**
+     * Drain and commit before the container closes the consumer, which with static membership
+     * leaves the group without the partitions being revoked. Published on the consumer thread.
+     */
+    @EventListener
+    public void onConsumerStopping(ConsumerStoppingEvent event) {
+        drainAndCommit(event.getConsumer(), event.getConsumer().assignment());
+    }
+
+    @Override
+    public void onPartitionsLost(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        // Already owned by another consumer, so nothing in flight can be committed
+        revokedAt.set(System.nanoTime());
+        catchUpMode.reset(consumer);
+        asyncConsumer.ifAvailable(async -> async.handOver(partitions));
+        offsetManager.release(partitions);
+        appliedCache.clear();
+    }
+
+    @Override
+    public void onPartitionsAssigned(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        Long start = revokedAt.get();
+        if (start != null) {
+            pause.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            revokedAt.remove();
+        }
+        if (!partitions.isEmpty()) {
+            // Also forgets records of previously revoked partitions that completed after their drain
+            appliedCache.clear();
+        }
+        asyncConsumer.ifAvailable(async -> async.assigned(partitions));
+        listenerConcurrency.rebalanced();
+    }
+
+    private void drainAndCommit(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        AsyncConsumer async = asyncConsumer.getIfAvailable();
+        if (async != null) {
+            long start = System.nanoTime();
+            boolean complete = async.drain(partitions, drainTimeout);
+            (complete ? drained : drainTimedOut).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        offsetManager.commitAndRelease(consumer, partitions);
+    }
+
+    private static Timer drainTimer(MeterRegistry meterRegistry, String outcome) {
+        return Timer.builder(DRAIN_METRIC)
+                .description("Time waiting for in-flight records of revoked partitions to complete")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
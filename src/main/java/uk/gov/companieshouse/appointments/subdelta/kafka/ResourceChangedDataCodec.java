@@ -0,0 +1,124 @@
+package uk.gov.companieshouse.appointments.subdelta.kafka;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import org.apache.avro.Schema;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DatumReader;
+import org.apache.avro.io.DatumWriter;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.avro.reflect.ReflectData;
+import org.apache.avro.reflect.ReflectDatumReader;
+import org.apache.avro.reflect.ReflectDatumWriter;
+import uk.gov.companieshouse.stream.ResourceChangedData;
+
+/**
+ * Encodes and decodes {@link ResourceChangedData} as Avro binary.
+ * <p>
+ * The schema is resolved once per codec. Avro datum readers and writers are not safe for concurrent
+ * use, so each thread gets its own reader, writer, decoder, encoder and output buffer, which are
+ * then reused for every record that thread handles.
+ */
+public class ResourceChangedDataCodec {
+
+    private static final int INITIAL_BUFFER_SIZE = 1024;
+    private static final int MAX_RETAINED_BUFFER_SIZE = 1024 * 1024;
+
+    private final Schema schema;
+    private final ThreadLocal<State> state;
+
+    public ResourceChangedDataCodec() {
+        this.schema = ReflectData.get().getSchema(ResourceChangedData.class);
+        this.state = ThreadLocal.withInitial(() -> new State(schema));
+    }
+
+    /**
+     * Decode a record into a new {@link ResourceChangedData} instance.
+     *
+     * @param data Avro binary encoded record.
+     * @return The decoded record.
+     * @throws IOException If the data cannot be decoded.
+     */
+    public ResourceChangedData decode(byte[] data) throws IOException {
+        return decode(data, null);
+    }
+
+    /**
+     * Decode a record, reusing the given instance if provided. Only pass an instance that is not
+     * referenced elsewhere, as its fields will be overwritten.
+     *
+     * @param data  Avro binary encoded record.
+     * @param reuse An instance to decode into, or null to create a new one.
+     * @return The decoded record.
+     * @throws IOException If the data cannot be decoded.
+     */
+    public ResourceChangedData decode(byte[] data, ResourceChangedData reuse) throws IOException {
+        State current = state.get();
+        current.decoder = DecoderFactory.get().binaryDecoder(data, current.decoder);
+        return current.reader.read(reuse, current.decoder);
+    }
+
+    /**
+     * Encode a record using this thread's datum writer.
+     *
+     * @param data The record to encode.
+     * @return Avro binary encoded record.
+     * @throws IOException If the record cannot be encoded.
+     */
+    public byte[] encode(ResourceChangedData data) throws IOException {
+        return encode(data, state.get().writer);
+    }
+
+    /**
+     * Encode a record with the given datum writer, reusing this thread's encoder and output buffer.
+     *
+     * @param data   The record to encode.
+     * @param writer The datum writer to use.
+     * @return Avro binary encoded record.
+     * @throws IOException If the record cannot be encoded.
+     */
+    public byte[] encode(ResourceChangedData data, DatumWriter<ResourceChangedData> writer)
+            throws IOException {
+        if (data instanceof LazyResourceChangedData lazyData) {
+            // The reflect writer reads fields directly, so the deferred data must be decoded first
+            lazyData.decodeData();
+        }
+        State current = state.get();
+        current.buffer.reset();
+        try {
+            writer.write(data, current.encoder);
+            current.encoder.flush();
+            return current.buffer.toByteArray();
+        } finally {
+            if (current.buffer.size() > MAX_RETAINED_BUFFER_SIZE) {
+                // Avoid pinning the buffer for an unusually large record to this thread
+                state.remove();
+            }
+        }
+    }
+
+    /**
+     * @return This thread's datum writer.
+     */
+    DatumWriter<ResourceChangedData> writer() {
+        return state.get().writer;
+    }
+
+    private static final class State {
+
+        private final DatumReader<ResourceChangedData> reader;
+        private final DatumWriter<ResourceChangedData> writer;
+        private final ByteArrayOutputStream buffer;
+        private final BinaryEncoder encoder;
+        private BinaryDecoder decoder;
+
+        private State(Schema schema) {
+            this.reader = new ReflectDatumReader<>(schema, schema, ReflectData.get());
+            this.writer = new ReflectDatumWriter<>(schema, ReflectData.get());
+            this.buffer = new ByteArrayOutputStream(INITIAL_BUFFER_SIZE);
+            this.encoder = EncoderFactory.get().directBinaryEncoder(buffer, null);
+        }
+    }
+}
@@ -2,12 +2,14 @@ package uk.gov.companieshouse.appointments.subdelta.kafka;
 
 import static uk.gov.companieshouse.appointments.subdelta.Application.NAMESPACE;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
 import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
 import org.apache.avro.AvroRuntimeException;
-import org.apache.avro.io.DatumReader;
-import org.apache.avro.io.Decoder;
-import org.apache.avro.io.DecoderFactory;
-import org.apache.avro.reflect.ReflectDatumReader;
+import org.apache.kafka.common.header.Headers;
 import org.apache.kafka.common.serialization.Deserializer;
 import uk.gov.companieshouse.appointments.subdelta.exception.InvalidPayloadException;
 import uk.gov.companieshouse.logging.Logger;
@@ -16,19 +18,58 @@ import uk.gov.companieshouse.stream.ResourceChangedData;
 
 public class ResourceChangedDataDeserialiser implements Deserializer<ResourceChangedData> {
 
+    static final String DECODE_METRIC = "appointments.consumer.decode";
+
     private static final Logger LOGGER = LoggerFactory.getLogger(NAMESPACE);
 
+    private final PayloadDecoder decoder;
+    private final Timer decoded;
+    private final Timer failed;
+
+    public ResourceChangedDataDeserialiser() {
+        this(new ResourceChangedDataCodec());
+    }
+
+    public ResourceChangedDataDeserialiser(ResourceChangedDataCodec codec) {
+        this(codec, Metrics.globalRegistry);
+    }
+
+    public ResourceChangedDataDeserialiser(ResourceChangedDataCodec codec, MeterRegistry meterRegistry) {
+        // Records are handed on to the listener and may be republished, so never reuse them
+        this((data, headers) -> codec.decode(data), meterRegistry, DecodeMode.REFLECT);
+    }
+
+    ResourceChangedDataDeserialiser(PayloadDecoder decoder, MeterRegistry meterRegistry, DecodeMode decodeMode) {
+        this.decoder = decoder;
+        this.decoded = decodeTimer(meterRegistry, decodeMode, "success");
+        this.failed = decodeTimer(meterRegistry, decodeMode, "failure");
+    }
+
     @Override
     public ResourceChangedData deserialize(String topic, byte[] data) {
+        return deserialize(topic, null, data);
+    }
+
+    @Override
+    public ResourceChangedData deserialize(String topic, Headers headers, byte[] data) {
+        long start = System.nanoTime();
         try {
-            Decoder decoder = DecoderFactory.get().binaryDecoder(data, null);
-            DatumReader<ResourceChangedData> reader = new ReflectDatumReader<>(
-                    ResourceChangedData.class);
-            return reader.read(null, decoder);
+            ResourceChangedData changedData = decoder.decode(data, headers);
+            decoded.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return changedData;
         } catch (IOException | AvroRuntimeException e) {
+            failed.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
             LOGGER.error("Error deserialising message.", e);
             throw new InvalidPayloadException(
                     String.format("Invalid payload: [%s] was provided.", new String(data)), e);
         }
     }
+
+    private static Timer decodeTimer(MeterRegistry meterRegistry, DecodeMode decodeMode, String outcome) {
+        return Timer.builder(DECODE_METRIC)
+                .description("Time to decode a record value from Avro")
+                .tag("mode", decodeMode.name().toLowerCase(Locale.ROOT))
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
 }
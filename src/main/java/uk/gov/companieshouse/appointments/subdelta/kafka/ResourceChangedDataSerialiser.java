@@ -1,31 +1,33 @@
 package uk.gov.companieshouse.appointments.subdelta.kafka;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import org.apache.avro.io.DatumWriter;
-import org.apache.avro.io.Encoder;
-import org.apache.avro.io.EncoderFactory;
-import org.apache.avro.reflect.ReflectDatumWriter;
 import org.apache.kafka.common.serialization.Serializer;
 import uk.gov.companieshouse.appointments.subdelta.exception.NonRetryableException;
 import uk.gov.companieshouse.stream.ResourceChangedData;
 
 public class ResourceChangedDataSerialiser implements Serializer<ResourceChangedData> {
 
+    private final ResourceChangedDataCodec codec;
+
+    public ResourceChangedDataSerialiser() {
+        this(new ResourceChangedDataCodec());
+    }
+
+    public ResourceChangedDataSerialiser(ResourceChangedDataCodec codec) {
+        this.codec = codec;
+    }
+
     @Override
     public byte[] serialize(String topic, ResourceChangedData data) {
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-        Encoder encoder = EncoderFactory.get().directBinaryEncoder(outputStream, null);
-        DatumWriter<ResourceChangedData> writer = getDatumWriter();
         try {
-            writer.write(data, encoder);
+            return codec.encode(data, getDatumWriter());
         } catch (IOException e) {
             throw new NonRetryableException("Error serialising delta", e);
         }
-        return outputStream.toByteArray();
     }
 
     DatumWriter<ResourceChangedData> getDatumWriter() {
-        return new ReflectDatumWriter<>(ResourceChangedData.class);
+        return codec.writer();
     }
 }
@@ -0,0 +1,102 @@
+package uk.gov.companieshouse.appointments.subdelta.kafka;
+
+import java.math.BigInteger;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.retrytopic.RetryTopicHeaders;
+import org.springframework.stereotype.Component;
+
+/**
+ * The backoff between retry topic attempts, as configured on {@link Consumer}'s
+ * {@code @RetryableTopic}.
+ * <p>
+ * With a multiplier of 0 every retry waits the same delay and goes through the single
+ * {@code -<group>-retry} topic. With a multiplier above 1 the delay grows with each attempt up to
+ * the maximum, and each delay tier has its own topic, suffixed with its index:
+ * {@code -<group>-retry-0}, {@code -<group>-retry-1} and so on. Attempts that have reached the
+ * maximum delay share the last tier's topic.
+ * <p>
+ * Jitter takes up to the given fraction off each record's delay, so records that failed together
+ * do not all come back together.
+ */
+@Component
+public class RetryBackoff {
+
+    private final String retryTopicSuffix;
+    private final long delay;
+    private final double multiplier;
+    private final long maxDelay;
+    private final double jitter;
+
+    public RetryBackoff(@Value("${consumer.group_id}") String groupId,
+            @Value("${consumer.backoff_delay}") long delay,
+            @Value("${consumer.backoff_multiplier}") double multiplier,
+            @Value("${consumer.backoff_max_delay}") long maxDelay,
+            @Value("${consumer.backoff_jitter}") double jitter) {
+        if (multiplier != 0 && multiplier <= 1) {
+            throw new IllegalArgumentException(
+                    "Backoff multiplier must be 0 for a fixed delay or above 1 for tiered delays");
+        }
+        if (jitter < 0 || jitter >= 1) {
+            throw new IllegalArgumentException("Backoff jitter must be at least 0 and less than 1");
+        }
+        this.retryTopicSuffix = "-" + groupId + "-retry";
+        this.delay = delay;
+        this.multiplier = multiplier;
+        this.maxDelay = maxDelay;
+        this.jitter = jitter;
+    }
+
+    public boolean isTiered() {
+        return multiplier > 1;
+    }
+
+    public boolean isJittered() {
+        return jitter > 0;
+    }
+
+    /**
+     * @param topic The main topic.
+     * @return The retry topic a record goes to after failing its first attempt.
+     */
+    public String firstRetryTopic(String topic) {
+        return topic + retryTopicSuffix + (isTiered() ? "-0" : "");
+    }
+
+    /**
+     * @param failedAttempt The attempt that has just failed, starting at 1.
+     * @return The delay in milliseconds before the next attempt, after jitter.
+     */
+    public long delayAfter(int failedAttempt) {
+        long tierDelay = delay;
+        if (isTiered()) {
+            double grown = delay * Math.pow(multiplier, Math.max(0, failedAttempt - 1));
+            tierDelay = (long) Math.min(grown, Math.max(delay, maxDelay));
+        }
+        if (!isJittered()) {
+            return tierDelay;
+        }
+        return tierDelay - (long) (ThreadLocalRandom.current().nextDouble() * jitter * tierDelay);
+    }
+
+    /**
+     * Headers for the retry topic error handler to add to a failed record. The backoff timestamp
+     * here is added after the handler's own, and the later header is the one used.
+     */
+    public Headers jitteredBackoffHeaders(ConsumerRecord<?, ?> consumerRecord, Exception exception) {
+        int failedAttempt = Optional.ofNullable(consumerRecord.headers()
+                        .lastHeader(RetryTopicHeaders.DEFAULT_HEADER_ATTEMPTS))
+                .map(Header::value)
+                .map(value -> new BigInteger(value).intValue())
+                .orElse(1);
+        Headers headers = new RecordHeaders();
+        headers.add(RetryTopicHeaders.DEFAULT_HEADER_BACKOFF_TIMESTAMP,
+                BigInteger.valueOf(System.currentTimeMillis() + delayAfter(failedAttempt)).toByteArray());
+        return headers;
+    }
+}
@@ -0,0 +1,32 @@
+package uk.gov.companieshouse.appointments.subdelta.kafka;
+
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.retrytopic.DeadLetterPublishingRecovererFactory;
+import org.springframework.kafka.retrytopic.RetryTopicConfigurationSupport;
+
+/**
+ * Customises the retry topic infrastructure behind {@link Consumer}'s {@code @RetryableTopic}.
+ */
+@Configuration
+public class RetryTopicConfig extends RetryTopicConfigurationSupport {
+
+    private final RetryBackoff retryBackoff;
+
+    public RetryTopicConfig(RetryBackoff retryBackoff) {
+        this.retryBackoff = retryBackoff;
+    }
+
+    @Override
+    protected java.util.function.Consumer<DeadLetterPublishingRecovererFactory> configureDeadLetterPublishingContainerFactory() {
+        // Every failed record is classified for InvalidMessageRouter
+        return factory -> factory.setHeadersFunction((consumerRecord, exception) -> {
+            Headers headers = retryBackoff.isJittered()
+                    ? retryBackoff.jitteredBackoffHeaders(consumerRecord, exception)
+                    : new RecordHeaders();
+            headers.add(ErrorClassification.of(exception).header());
+            return headers;
+        });
+    }
+}
@@ -0,0 +1,121 @@
+package uk.gov.companieshouse.appointments.subdelta.kafka;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.apache.avro.AvroRuntimeException;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaNormalization;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.message.SchemaStore;
+import org.apache.avro.specific.SpecificDatumReader;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import uk.gov.companieshouse.stream.ResourceChangedData;
+
+/**
+ * Decodes {@link ResourceChangedData} with the generated specific reader, resolving the writer
+ * schema from its fingerprint.
+ * <p>
+ * The fingerprint is taken from an Avro single-object encoding prefix if present, otherwise from
+ * the {@value #SCHEMA_FINGERPRINT_HEADER} header. Records carrying neither are assumed to have been
+ * written with the reader schema. Readers are cached per thread and per fingerprint, and each one
+ * keeps its resolving decoder, so resolution is only worked out once per writer schema.
+ */
+public class SpecificResourceChangedDataDecoder implements PayloadDecoder {
+
+    public static final String SCHEMA_FINGERPRINT_HEADER = "schema-fingerprint";
+
+    private static final byte SINGLE_OBJECT_MARKER_0 = (byte) 0xC3;
+    private static final byte SINGLE_OBJECT_MARKER_1 = (byte) 0x01;
+    private static final int SINGLE_OBJECT_HEADER_LENGTH = 10;
+
+    private final Schema readerSchema;
+    private final long readerFingerprint;
+    private final SchemaStore schemaStore;
+    private final ThreadLocal<ReaderCache> readers;
+
+    public SpecificResourceChangedDataDecoder(SchemaStore schemaStore, int cacheSize) {
+        this.readerSchema = ResourceChangedData.getClassSchema();
+        this.readerFingerprint = SchemaNormalization.parsingFingerprint64(readerSchema);
+        this.schemaStore = schemaStore;
+        this.readers = ThreadLocal.withInitial(() -> new ReaderCache(cacheSize));
+    }
+
+    @Override
+    public ResourceChangedData decode(byte[] data, Headers headers) throws IOException {
+        ReaderCache cache = readers.get();
+        int offset = 0;
+        long fingerprint = readerFingerprint;
+        if (isSingleObjectEncoded(data)) {
+            fingerprint = readLittleEndianLong(data, 2);
+            offset = SINGLE_OBJECT_HEADER_LENGTH;
+        } else {
+            Header header = headers == null ? null : headers.lastHeader(SCHEMA_FINGERPRINT_HEADER);
+            if (header != null) {
+                fingerprint = readBigEndianLong(header.value());
+            }
+        }
+        cache.decoder = DecoderFactory.get()
+                .binaryDecoder(data, offset, data.length - offset, cache.decoder);
+        return cache.reader(fingerprint).read(null, cache.decoder);
+    }
+
+    private SpecificDatumReader<ResourceChangedData> newReader(long fingerprint) {
+        if (fingerprint == readerFingerprint) {
+            return new SpecificDatumReader<>(readerSchema);
+        }
+        Schema writerSchema = schemaStore.findByFingerprint(fingerprint);
+        if (writerSchema == null) {
+            throw new AvroRuntimeException(
+                    String.format("No writer schema found for fingerprint %d", fingerprint));
+        }
+        return new SpecificDatumReader<>(writerSchema, readerSchema);
+    }
+
+    private static boolean isSingleObjectEncoded(byte[] data) {
+        return data.length > SINGLE_OBJECT_HEADER_LENGTH
+                && data[0] == SINGLE_OBJECT_MARKER_0
+                && data[1] == SINGLE_OBJECT_MARKER_1;
+    }
+
+    private static long readLittleEndianLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = 7; i >= 0; i--) {
+            value = (value << 8) | (bytes[offset + i] & 0xFF);
+        }
+        return value;
+    }
+
+    private static long readBigEndianLong(byte[] bytes) {
+        if (bytes == null || bytes.length != Long.BYTES) {
+            throw new AvroRuntimeException("Invalid schema fingerprint header");
+        }
+        long value = 0;
+        for (byte b : bytes) {
+            value = (value << 8) | (b & 0xFF);
+        }
+        return value;
+    }
+
+    private final class ReaderCache extends LinkedHashMap<Long, SpecificDatumReader<ResourceChangedData>> {
+
+        private final int maxSize;
+        private BinaryDecoder decoder;
+
+        private ReaderCache(int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        private SpecificDatumReader<ResourceChangedData> reader(long fingerprint) {
+            return computeIfAbsent(fingerprint, SpecificResourceChangedDataDecoder.this::newReader);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, SpecificDatumReader<ResourceChangedData>> eldest) {
+            return size() > maxSize;
+        }
+    }
+}
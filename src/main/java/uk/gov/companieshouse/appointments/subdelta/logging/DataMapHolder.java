@@ -1,34 +1,72 @@
 package uk.gov.companieshouse.appointments.subdelta.logging;
 
 import java.util.Map;
+import java.util.function.Supplier;
 import uk.gov.companieshouse.logging.util.DataMap.Builder;
 
+/**
+ * Holds the structured logging context of the record being processed on this thread. The log map
+ * is built once and reused by every log line until the builder is next handed out, as the holder
+ * of the builder may change it. Log maps are shared, so must not be modified.
+ */
 public class DataMapHolder {
 
-    private static final ThreadLocal<Builder> DATAMAP_BUILDER
-        = ThreadLocal.withInitial(() -> new Builder().requestId("uninitialised"));
+    private static final ThreadLocal<Context> CONTEXT
+        = ThreadLocal.withInitial(() -> new Context(new Builder().requestId("uninitialised")));
 
     public static void initialise(String requestId) {
-        DATAMAP_BUILDER.get().requestId(requestId);
+        Context context = CONTEXT.get();
+        context.builder.requestId(requestId);
+        context.logMap = null;
     }
 
     private DataMapHolder() {}
 
     public static void clear() {
-        DATAMAP_BUILDER.remove();
+        CONTEXT.remove();
     }
 
     public static Builder get() {
-        return DATAMAP_BUILDER.get();
+        Context context = CONTEXT.get();
+        context.logMap = null;
+        return context.builder;
+    }
+
+    /**
+     * Run with the given builder as this thread's data map, restoring the previous one afterwards.
+     * Used to carry a record's logging context onto the thread that completes its processing.
+     */
+    public static <T> T callWith(Builder builder, Supplier<T> supplier) {
+        Context previous = CONTEXT.get();
+        CONTEXT.set(new Context(builder));
+        try {
+            return supplier.get();
+        } finally {
+            CONTEXT.set(previous);
+        }
     }
 
     public static Map<String, Object> getLogMap() {
-        return DATAMAP_BUILDER.get()
-                .build()
-                .getLogMap();
+        Context context = CONTEXT.get();
+        if (context.logMap == null) {
+            context.logMap = context.builder
+                    .build()
+                    .getLogMap();
+        }
+        return context.logMap;
     }
     
     public static String getRequestId() {
         return (String) getLogMap().get("request_id");
     }
+
+    private static final class Context {
+
+        private final Builder builder;
+        private Map<String, Object> logMap;
+
+        private Context(Builder builder) {
+            this.builder = builder;
+        }
+    }
 }
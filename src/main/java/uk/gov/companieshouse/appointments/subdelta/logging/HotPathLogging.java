@@ -0,0 +1,125 @@
+package uk.gov.companieshouse.appointments.subdelta.logging;
+
+import static uk.gov.companieshouse.appointments.subdelta.Application.NAMESPACE;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import jakarta.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import uk.gov.companieshouse.logging.Logger;
+import uk.gov.companieshouse.logging.LoggerFactory;
+
+/**
+ * Applies the {@link LogMode} to the logging done for every record.
+ * <p>
+ * In {@link LogMode#HIGH_THROUGHPUT} mode:
+ * <ul>
+ *     <li>success lines are logged for one record in every sample interval;</li>
+ *     <li>a retryable failure's stack trace is logged at most once per interval for each place it
+ *     is thrown from;</li>
+ *     <li>each appender is wrapped in a Logback {@link AsyncAppender}, so that listener threads
+ *     only put events on its ring buffer. When the buffer is nearly full, INFO and lower events
+ *     are dropped, not queued.</li>
+ * </ul>
+ */
+@Component
+public class HotPathLogging {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NAMESPACE);
+
+    private static final String REPEATED_STACK_TRACE = "[stack trace logged within the last %d ms]";
+    private static final int MAX_STACK_TRACE_SIGNATURES = 1000;
+
+    private final LogMode mode;
+    private final long sampleInterval;
+    private final long stackTraceIntervalMillis;
+    private final int queueSize;
+    private final Map<String, Long> stackTracesLogged = new ConcurrentHashMap<>();
+
+    public HotPathLogging(@Value("${consumer.log_mode}") LogMode mode,
+            @Value("${consumer.log_sample_interval}") long sampleInterval,
+            @Value("${consumer.log_stack_trace_interval}") long stackTraceIntervalMillis,
+            @Value("${consumer.log_queue_size}") int queueSize) {
+        this.mode = mode;
+        this.sampleInterval = sampleInterval;
+        this.stackTraceIntervalMillis = stackTraceIntervalMillis;
+        this.queueSize = queueSize;
+    }
+
+    public boolean isHighThroughput() {
+        return mode == LogMode.HIGH_THROUGHPUT;
+    }
+
+    /**
+     * @return A sampler for one per-record success line, which lets every line through in
+     *         {@link LogMode#STANDARD} mode.
+     */
+    public LogSampler successSampler() {
+        return new LogSampler(isHighThroughput() ? sampleInterval : 1);
+    }
+
+    /**
+     * @param ex A retryable failure.
+     * @return The stack trace of the failure, or a note that it has already been logged recently.
+     */
+    public String stackTrace(Throwable ex) {
+        StackTraceElement[] frames = ex.getStackTrace();
+        if (!isHighThroughput()) {
+            return Arrays.toString(frames);
+        }
+        // The exception type and where it was thrown, as the message often varies by record
+        String signature = ex.getClass().getName() + (frames.length > 0 ? "@" + frames[0] : "");
+        long now = System.currentTimeMillis();
+        Long lastLogged = stackTracesLogged.get(signature);
+        if (lastLogged != null && now - lastLogged < stackTraceIntervalMillis) {
+            return String.format(REPEATED_STACK_TRACE, stackTraceIntervalMillis);
+        }
+        if (stackTracesLogged.size() >= MAX_STACK_TRACE_SIGNATURES) {
+            stackTracesLogged.clear();
+        }
+        stackTracesLogged.put(signature, now);
+        return Arrays.toString(frames);
+    }
+
+    @PostConstruct
+    void installAsyncAppenders() {
+        if (!isHighThroughput()) {
+            return;
+        }
+        if (!(org.slf4j.LoggerFactory.getILoggerFactory() instanceof LoggerContext context)) {
+            LOGGER.info("Logging backend is not Logback, so log events will be written synchronously");
+            return;
+        }
+        for (ch.qos.logback.classic.Logger logger : context.getLoggerList()) {
+            List<Appender<ILoggingEvent>> appenders = new ArrayList<>();
+            for (Iterator<Appender<ILoggingEvent>> it = logger.iteratorForAppenders(); it.hasNext(); ) {
+                Appender<ILoggingEvent> appender = it.next();
+                if (!(appender instanceof AsyncAppender)) {
+                    appenders.add(appender);
+                }
+            }
+            if (appenders.isEmpty()) {
+                continue;
+            }
+            AsyncAppender asyncAppender = new AsyncAppender();
+            asyncAppender.setContext(context);
+            asyncAppender.setName("ASYNC-" + logger.getName());
+            asyncAppender.setQueueSize(queueSize);
+            asyncAppender.setIncludeCallerData(false);
+            appenders.forEach(asyncAppender::addAppender);
+            asyncAppender.start();
+            appenders.forEach(logger::detachAppender);
+            logger.addAppender(asyncAppender);
+        }
+        LOGGER.info(String.format("High throughput logging enabled with a queue of %d events", queueSize));
+    }
+}
@@ -0,0 +1,196 @@
+package uk.gov.companieshouse.appointments.subdelta.logging;
+
+import static uk.gov.companieshouse.appointments.subdelta.Application.NAMESPACE;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import uk.gov.companieshouse.appointments.subdelta.exception.NonRetryableException;
+import uk.gov.companieshouse.appointments.subdelta.exception.RetryableException;
+import uk.gov.companieshouse.logging.Logger;
+import uk.gov.companieshouse.logging.LoggerFactory;
+import uk.gov.companieshouse.stream.ResourceChangedData;
+
+/**
+ * Sets up the structured logging context for a single record and logs the outcome of processing
+ * it. Used by {@link LoggingRecordInterceptor} for record listeners and directly by batch and async
+ * listeners.
+ */
+@Component
+public class ListenerLogging {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NAMESPACE);
+    private static final String LOG_MESSAGE_RECEIVED = "Processing delta";
+    private static final String LOG_MESSAGE_PROCESSED = "Processed delta";
+    private static final String EXCEPTION_MESSAGE = "%s exception thrown: %s";
+
+    private final int maxAttempts;
+    private final HotPathLogging hotPathLogging;
+    private final LogSampler processedLog;
+
+    public ListenerLogging(@Value("${consumer.max_attempts}") int maxAttempts, HotPathLogging hotPathLogging) {
+        this.maxAttempts = maxAttempts;
+        this.hotPathLogging = hotPathLogging;
+        this.processedLog = hotPathLogging.successSampler();
+    }
+
+    /**
+     * Process a record within its own logging context.
+     *
+     * @param payload    The record value.
+     * @param attempts   The attempt number from the retry topic headers, or null on the main topic.
+     * @param topic      The topic the record was received from.
+     * @param partition  The partition the record was received from.
+     * @param offset     The offset of the record.
+     * @param invocation The processing to run.
+     * @return The result of the invocation.
+     */
+    public <T, E extends Throwable> T invoke(Object payload, Integer attempts, String topic,
+            Integer partition, Long offset, Invocation<T, E> invocation) throws E {
+
+        int retryCount = Optional.ofNullable(attempts).orElse(1) - 1;
+        try {
+            start(payload, retryCount, topic, partition, offset);
+
+            T result = invocation.proceed();
+
+            logProcessed(DataMapHolder.getLogMap());
+
+            return result;
+        } catch (Exception ex) {
+            logFailure(ex, retryCount, DataMapHolder.getLogMap());
+            throw ex;
+        } finally {
+            DataMapHolder.clear();
+        }
+    }
+
+    /**
+     * Set up the logging context for a record about to be processed on this thread. Must be
+     * followed by {@link #succeeded()} or {@link #failed(Throwable, Integer)}, then {@link #end()}.
+     *
+     * @param payload   The record value.
+     * @param attempts  The attempt number from the retry topic headers, or null on the main topic.
+     * @param topic     The topic the record was received from.
+     * @param partition The partition the record was received from.
+     * @param offset    The offset of the record.
+     */
+    public void begin(Object payload, Integer attempts, String topic, Integer partition, Long offset) {
+        start(payload, Optional.ofNullable(attempts).orElse(1) - 1, topic, partition, offset);
+    }
+
+    public void succeeded() {
+        logProcessed(DataMapHolder.getLogMap());
+    }
+
+    public void failed(Throwable ex, Integer attempts) {
+        logFailure(ex, Optional.ofNullable(attempts).orElse(1) - 1, DataMapHolder.getLogMap());
+    }
+
+    public void end() {
+        DataMapHolder.clear();
+    }
+
+    /**
+     * Start processing a record within its own logging context, and log the outcome once the
+     * returned future completes. The context is available to the invocation while it starts the
+     * processing, but not to the threads that complete it.
+     *
+     * @param payload    The record value.
+     * @param attempts   The attempt number from the retry topic headers, or null on the main topic.
+     * @param topic      The topic the record was received from.
+     * @param partition  The partition the record was received from.
+     * @param offset     The offset of the record.
+     * @param invocation Starts the processing.
+     * @return A future completed with the outcome of the processing.
+     */
+    public <T> CompletableFuture<T> invokeAsync(Object payload, Integer attempts, String topic,
+            Integer partition, Long offset, Supplier<CompletableFuture<T>> invocation) {
+
+        int retryCount = Optional.ofNullable(attempts).orElse(1) - 1;
+        CompletableFuture<T> result;
+        try {
+            start(payload, retryCount, topic, partition, offset);
+            result = invocation.get();
+        } catch (RuntimeException ex) {
+            result = CompletableFuture.failedFuture(ex);
+        }
+        Map<String, Object> logMap = DataMapHolder.getLogMap();
+        DataMapHolder.clear();
+
+        return result.whenComplete((value, throwable) -> {
+            if (throwable == null) {
+                logProcessed(logMap);
+            } else {
+                logFailure(throwable instanceof CompletionException ? throwable.getCause() : throwable,
+                        retryCount, logMap);
+            }
+        });
+    }
+
+    private void start(Object payload, int retryCount, String topic, Integer partition, Long offset) {
+        // Never carry fields over from a record whose processing did not end cleanly
+        DataMapHolder.clear();
+        DataMapHolder.initialise(Optional.of(extractData(payload).getContextId())
+                .orElse(UUID.randomUUID().toString()));
+
+        DataMapHolder.get()
+                .retryCount(retryCount)
+                .topic(topic)
+                .partition(partition)
+                .offset(offset);
+
+        if (hotPathLogging.isHighThroughput()) {
+            LOGGER.debug(LOG_MESSAGE_RECEIVED, DataMapHolder.getLogMap());
+        } else {
+            LOGGER.info(LOG_MESSAGE_RECEIVED, DataMapHolder.getLogMap());
+        }
+    }
+
+    private void logProcessed(Map<String, Object> logMap) {
+        if (processedLog.sample()) {
+            LOGGER.info(LOG_MESSAGE_PROCESSED, logMap);
+        }
+    }
+
+    private void logFailure(Throwable ex, int retryCount, Map<String, Object> logMap) {
+        if (ex instanceof CancellationException) {
+            // Not a failure: the record's partition was revoked before it was started
+            LOGGER.info(String.format("Not processed: %s", ex.getMessage()), logMap);
+        } else if (ex instanceof RetryableException retryable) {
+            // maxAttempts includes first attempt which is not a retry
+            if (retryCount >= maxAttempts - 1) {
+                LOGGER.error("Max retry attempts reached", retryable, logMap);
+            } else {
+                LOGGER.info(String.format(EXCEPTION_MESSAGE,
+                        ex.getClass().getSimpleName(), hotPathLogging.stackTrace(ex)), logMap);
+            }
+        } else if (ex instanceof Exception exception) {
+            LOGGER.error(ex.getMessage(), exception, logMap);
+        } else {
+            LOGGER.error(ex.getMessage(), logMap);
+        }
+    }
+
+    private ResourceChangedData extractData(Object payload) {
+        if (payload instanceof ResourceChangedData) {
+            return (ResourceChangedData) payload;
+        }
+        throw new NonRetryableException(String.format("Invalid payload type. Payload: %s", payload));
+    }
+
+    /**
+     * The processing of a single record.
+     */
+    @FunctionalInterface
+    public interface Invocation<T, E extends Throwable> {
+
+        T proceed() throws E;
+    }
+}
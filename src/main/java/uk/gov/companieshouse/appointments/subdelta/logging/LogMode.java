@@ -0,0 +1,18 @@
+package uk.gov.companieshouse.appointments.subdelta.logging;
+
+/**
+ * How much is logged on the per-record hot path.
+ */
+public enum LogMode {
+
+    /**
+     * Every record's progress and every retryable failure's stack trace are logged.
+     */
+    STANDARD,
+
+    /**
+     * Success lines are sampled, repeated stack traces are suppressed and log events are written
+     * from a queue by a background thread. For replays and other sustained high throughput.
+     */
+    HIGH_THROUGHPUT
+}
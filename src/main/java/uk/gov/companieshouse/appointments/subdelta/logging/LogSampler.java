@@ -0,0 +1,23 @@
+package uk.gov.companieshouse.appointments.subdelta.logging;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lets through one in every interval of a repeated log line, starting with the first.
+ */
+public final class LogSampler {
+
+    private final long interval;
+    private final AtomicLong events = new AtomicLong();
+
+    LogSampler(long interval) {
+        this.interval = interval;
+    }
+
+    /**
+     * @return True if this occurrence of the line should be logged.
+     */
+    public boolean sample() {
+        return interval <= 1 || events.getAndIncrement() % interval == 0;
+    }
+}
@@ -0,0 +1,72 @@
+package uk.gov.companieshouse.appointments.subdelta.logging;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Header;
+import org.springframework.kafka.listener.ListenerExecutionFailedException;
+import org.springframework.kafka.listener.RecordInterceptor;
+import org.springframework.kafka.retrytopic.RetryTopicHeaders;
+import org.springframework.stereotype.Component;
+import uk.gov.companieshouse.stream.ResourceChangedData;
+
+/**
+ * Applies {@link ListenerLogging} to each record delivered to a record listener. The topic,
+ * partition, offset and retry attempt are read from the record, not from the listener's arguments,
+ * so any listener signature is supported and the listener is not proxied. Batch and async
+ * listeners process records after the container has handed them over, so they use
+ * {@link ListenerLogging} directly.
+ */
+@Component
+public class LoggingRecordInterceptor implements RecordInterceptor<String, ResourceChangedData> {
+
+    private final ListenerLogging listenerLogging;
+
+    public LoggingRecordInterceptor(ListenerLogging listenerLogging) {
+        this.listenerLogging = listenerLogging;
+    }
+
+    @Override
+    public ConsumerRecord<String, ResourceChangedData> intercept(ConsumerRecord<String, ResourceChangedData> record,
+            Consumer<String, ResourceChangedData> consumer) {
+        listenerLogging.begin(record.value(), attempts(record), record.topic(), record.partition(),
+                record.offset());
+        return record;
+    }
+
+    @Override
+    public void success(ConsumerRecord<String, ResourceChangedData> record,
+            Consumer<String, ResourceChangedData> consumer) {
+        listenerLogging.succeeded();
+    }
+
+    @Override
+    public void failure(ConsumerRecord<String, ResourceChangedData> record, Exception exception,
+            Consumer<String, ResourceChangedData> consumer) {
+        Throwable cause = exception instanceof ListenerExecutionFailedException && exception.getCause() != null
+                ? exception.getCause()
+                : exception;
+        listenerLogging.failed(cause, attempts(record));
+    }
+
+    @Override
+    public void afterRecord(ConsumerRecord<String, ResourceChangedData> record,
+            Consumer<String, ResourceChangedData> consumer) {
+        listenerLogging.end();
+    }
+
+    /**
+     * Decode the big-endian attempts header added by the retry topic error handler, or null on the
+     * main topic.
+     */
+    private static Integer attempts(ConsumerRecord<String, ResourceChangedData> record) {
+        Header header = record.headers().lastHeader(RetryTopicHeaders.DEFAULT_HEADER_ATTEMPTS);
+        if (header == null || header.value().length == 0) {
+            return null;
+        }
+        int attempts = 0;
+        for (byte b : header.value()) {
+            attempts = (attempts << 8) | (b & 0xFF);
+        }
+        return attempts;
+    }
+}
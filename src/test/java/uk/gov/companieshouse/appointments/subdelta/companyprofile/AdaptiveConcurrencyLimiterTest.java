@@ -0,0 +1,151 @@
+package uk.gov.companieshouse.appointments.subdelta.companyprofile;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    private static final long RTT_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    @DisplayName("Grows the limit while latency stays flat and the limit is in use")
+    void growsWhileLatencyFlat() {
+        // given
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(meterRegistry, 4, 1, 20, 0);
+
+        // when
+        for (int round = 0; round < 20; round++) {
+            respond(limiter, fillLimit(limiter), RTT_NANOS, false);
+        }
+
+        // then
+        assertThat(limiter.getLimit()).isGreaterThan(8);
+        assertThat(meterRegistry.get(AdaptiveConcurrencyLimiter.LIMIT_METRIC).gauge().value())
+                .isEqualTo(limiter.getLimit());
+    }
+
+    @Test
+    @DisplayName("Does not grow the limit when it is not being used")
+    void doesNotGrowWhenIdle() {
+        // given
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(meterRegistry, 10, 1, 20, 0);
+
+        // when
+        for (int i = 0; i < 50; i++) {
+            limiter.acquire().release(false);
+        }
+
+        // then
+        assertThat(limiter.getLimit()).isEqualTo(10);
+    }
+
+    @Test
+    @DisplayName("Backs off once when a round of requests signals overload")
+    void backsOffOnOverload() {
+        // given
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(meterRegistry, 10, 1, 20, 0);
+
+        // when
+        respond(limiter, fillLimit(limiter), RTT_NANOS, true);
+
+        // then
+        assertThat(limiter.getLimit()).isEqualTo(10 * AdaptiveConcurrencyLimiter.BACKOFF_RATIO);
+        assertThat(limiter.getInFlight()).isZero();
+    }
+
+    @Test
+    @DisplayName("Backs off when latency rises well above its running average")
+    void backsOffOnLatencyRise() {
+        // given
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(meterRegistry, 10, 1, 20, 0);
+        limiter.acquire();
+        limiter.onResponse(System.nanoTime(), RTT_NANOS, false);
+        double before = limiter.getLimit();
+
+        // when
+        respond(limiter, fillLimit(limiter), RTT_NANOS * 5, false);
+
+        // then
+        assertThat(limiter.getLimit()).isLessThan(before);
+    }
+
+    @Test
+    @DisplayName("Never backs off below the minimum limit")
+    void backsOffToMinimum() {
+        // given
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(meterRegistry, 2, 2, 20, 0);
+
+        // when
+        for (int round = 0; round < 10; round++) {
+            respond(limiter, fillLimit(limiter), RTT_NANOS, true);
+        }
+
+        // then
+        assertThat(limiter.getLimit()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Keeps waiting for a permit past the wait time, and counts the long wait")
+    void waitsPastWaitTimeWhenLimitReached() throws Exception {
+        // given
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(meterRegistry, 1, 1, 1, 10);
+        AdaptiveConcurrencyLimiter.Permit held = limiter.acquire();
+        Thread waiter = Thread.ofVirtual().start(() -> limiter.acquire().release(false));
+
+        // when
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (meterRegistry.get(AdaptiveConcurrencyLimiter.WAITED_METRIC).counter().count() == 0
+                && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+
+        // then
+        assertThat(meterRegistry.get(AdaptiveConcurrencyLimiter.WAITED_METRIC).counter().count()).isEqualTo(1);
+        assertThat(waiter.isAlive()).isTrue();
+        held.release(false);
+        waiter.join(5000);
+        assertThat(waiter.isAlive()).isFalse();
+        assertThat(meterRegistry.get(AdaptiveConcurrencyLimiter.IN_FLIGHT_METRIC).gauge().value()).isZero();
+    }
+
+    @Test
+    @DisplayName("Hands a released permit to a waiting caller")
+    void waitsForReleasedPermit() throws Exception {
+        // given
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(meterRegistry, 1, 1, 1, 5000);
+        AdaptiveConcurrencyLimiter.Permit held = limiter.acquire();
+        Thread waiter = Thread.ofVirtual().start(() -> limiter.acquire().release(false));
+
+        // when
+        held.release(false);
+        waiter.join(5000);
+
+        // then
+        assertThat(waiter.isAlive()).isFalse();
+        assertThat(limiter.getInFlight()).isZero();
+    }
+
+    private static List<Long> fillLimit(AdaptiveConcurrencyLimiter limiter) {
+        List<Long> starts = new ArrayList<>();
+        while (limiter.getInFlight() < (int) limiter.getLimit()) {
+            limiter.acquire();
+            starts.add(System.nanoTime());
+        }
+        return starts;
+    }
+
+    private static void respond(AdaptiveConcurrencyLimiter limiter, List<Long> starts, long rttNanos,
+            boolean overloaded) {
+        for (long start : starts) {
+            limiter.onResponse(start, rttNanos, overloaded);
+        }
+    }
+}
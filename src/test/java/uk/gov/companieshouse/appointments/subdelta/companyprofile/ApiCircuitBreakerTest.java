@@ -0,0 +1,186 @@
+package uk.gov.companieshouse.appointments.subdelta.companyprofile;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.client.BasicCredentials;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import uk.gov.companieshouse.appointments.subdelta.companyprofile.ApiCircuitBreaker.State;
+
+@ExtendWith(MockitoExtension.class)
+class ApiCircuitBreakerTest {
+
+    private static final String PROBE_PATH = "/healthcheck";
+    private static final int THRESHOLD = 3;
+
+    private static WireMockServer server;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private CloseableHttpClient httpClient;
+    private ApiCircuitBreaker circuitBreaker;
+
+    @BeforeAll
+    static void startServer() {
+        server = new WireMockServer(options().dynamicPort());
+        server.start();
+    }
+
+    @AfterAll
+    static void stopServer() {
+        server.stop();
+    }
+
+    @BeforeEach
+    void setUp() {
+        server.resetAll();
+        httpClient = HttpClients.createDefault();
+        // Probes are only sent when the tests call them, never on the schedule
+        circuitBreaker = circuitBreaker(THRESHOLD);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        circuitBreaker.shutdown();
+        httpClient.close();
+    }
+
+    @Test
+    @DisplayName("Opens and asks for consumption to pause after consecutive failures")
+    void opensAfterConsecutiveFailures() {
+        // when
+        for (int i = 0; i < THRESHOLD; i++) {
+            circuitBreaker.recordFailure();
+        }
+
+        // then
+        assertThat(circuitBreaker.getState()).isEqualTo(State.OPEN);
+        assertThat(meterRegistry.get(ApiCircuitBreaker.STATE_METRIC).gauge().value()).isEqualTo(1);
+        verify(eventPublisher).publishEvent(new ApiCircuitBreakerEvent(true));
+    }
+
+    @Test
+    @DisplayName("Stays closed when successes break up the failures")
+    void successResetsFailures() {
+        // when
+        for (int i = 0; i < THRESHOLD * 2; i++) {
+            circuitBreaker.recordFailure();
+            circuitBreaker.recordSuccess();
+        }
+
+        // then
+        assertThat(circuitBreaker.getState()).isEqualTo(State.CLOSED);
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    @DisplayName("Closes and asks for consumption to resume when a probe succeeds")
+    void closesWhenProbeSucceeds() {
+        // given
+        server.stubFor(get(urlEqualTo(PROBE_PATH)).willReturn(aResponse().withStatus(200)));
+        open();
+
+        // when
+        circuitBreaker.probe();
+
+        // then
+        assertThat(circuitBreaker.getState()).isEqualTo(State.CLOSED);
+        verify(eventPublisher).publishEvent(new ApiCircuitBreakerEvent(false));
+        server.verify(getRequestedFor(urlEqualTo(PROBE_PATH)).withBasicAuth(new BasicCredentials("apiKey", "")));
+    }
+
+    @Test
+    @DisplayName("Closes when a probe gets a client error, as the API answered")
+    void closesWhenProbeGetsClientError() {
+        // given
+        server.stubFor(get(urlEqualTo(PROBE_PATH)).willReturn(aResponse().withStatus(404)));
+        open();
+
+        // when
+        circuitBreaker.probe();
+
+        // then
+        assertThat(circuitBreaker.getState()).isEqualTo(State.CLOSED);
+        verify(eventPublisher).publishEvent(new ApiCircuitBreakerEvent(false));
+    }
+
+    @Test
+    @DisplayName("Stays open when a probe is answered with too many requests")
+    void staysOpenWhenProbeTooManyRequests() {
+        // given
+        server.stubFor(get(urlEqualTo(PROBE_PATH)).willReturn(aResponse().withStatus(429)));
+        open();
+
+        // when
+        circuitBreaker.probe();
+
+        // then
+        assertThat(circuitBreaker.getState()).isEqualTo(State.OPEN);
+        verify(eventPublisher, never()).publishEvent(new ApiCircuitBreakerEvent(false));
+    }
+
+    @Test
+    @DisplayName("Stays open when a probe fails")
+    void staysOpenWhenProbeFails() {
+        // given
+        server.stubFor(get(urlEqualTo(PROBE_PATH)).willReturn(aResponse().withStatus(503)));
+        open();
+
+        // when
+        circuitBreaker.probe();
+
+        // then
+        assertThat(circuitBreaker.getState()).isEqualTo(State.OPEN);
+        verify(eventPublisher, never()).publishEvent(new ApiCircuitBreakerEvent(false));
+    }
+
+    @Test
+    @DisplayName("Never opens when the failure threshold is zero")
+    void disabledWithZeroThreshold() {
+        // given
+        circuitBreaker.shutdown();
+        circuitBreaker = circuitBreaker(0);
+
+        // when
+        for (int i = 0; i < 100; i++) {
+            circuitBreaker.recordFailure();
+        }
+
+        // then
+        assertThat(circuitBreaker.getState()).isEqualTo(State.CLOSED);
+        verifyNoInteractions(eventPublisher);
+    }
+
+    private ApiCircuitBreaker circuitBreaker(int threshold) {
+        return new ApiCircuitBreaker(eventPublisher, httpClient, meterRegistry, server.baseUrl(), "apiKey",
+                PROBE_PATH, threshold, 60_000);
+    }
+
+    private void open() {
+        for (int i = 0; i < THRESHOLD; i++) {
+            circuitBreaker.recordFailure();
+        }
+    }
+}
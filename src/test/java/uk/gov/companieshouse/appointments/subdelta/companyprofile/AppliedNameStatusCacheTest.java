@@ -0,0 +1,136 @@
+package uk.gov.companieshouse.appointments.subdelta.companyprofile;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class AppliedNameStatusCacheTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    @DisplayName("Reports unchanged only for the name and status last applied")
+    void isUnchanged() {
+        // given
+        AppliedNameStatusCache cache = new AppliedNameStatusCache(16, meterRegistry);
+        cache.applied("12345678", "COMPANY LIMITED", "active");
+
+        // when
+        boolean unchanged = cache.isUnchanged("12345678", "COMPANY LIMITED", "active");
+        boolean statusChanged = cache.isUnchanged("12345678", "COMPANY LIMITED", "dissolved");
+        boolean nameChanged = cache.isUnchanged("12345678", "NEW COMPANY LIMITED", "active");
+        boolean otherCompany = cache.isUnchanged("SC123456", "COMPANY LIMITED", "active");
+
+        // then
+        assertThat(unchanged).isTrue();
+        assertThat(statusChanged).isFalse();
+        assertThat(nameChanged).isFalse();
+        assertThat(otherCompany).isFalse();
+        assertThat(count("appointments.consumer.applied_cache.requests", "result", "hit")).isEqualTo(1.0);
+        assertThat(count("appointments.consumer.applied_cache.requests", "result", "miss")).isEqualTo(3.0);
+        assertThat(count("appointments.consumer.patches.avoided", "reason", "unchanged")).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("Replaces the name and status when a new value is applied")
+    void appliedReplacesValue() {
+        // given
+        AppliedNameStatusCache cache = new AppliedNameStatusCache(16, meterRegistry);
+        cache.applied("12345678", "COMPANY LIMITED", "active");
+
+        // when
+        cache.applied("12345678", "COMPANY LIMITED", "dissolved");
+
+        // then
+        assertThat(cache.isUnchanged("12345678", "COMPANY LIMITED", "dissolved")).isTrue();
+        assertThat(cache.isUnchanged("12345678", "COMPANY LIMITED", "active")).isFalse();
+        assertThat(cache.size()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Evicts an entry that has not been hit before one that has")
+    void appliedEvictsUnreferencedEntry() {
+        // given
+        AppliedNameStatusCache cache = new AppliedNameStatusCache(2, meterRegistry);
+        cache.applied("00000001", "ONE LIMITED", "active");
+        cache.applied("00000002", "TWO LIMITED", "active");
+        cache.isUnchanged("00000001", "ONE LIMITED", "active");
+
+        // when
+        cache.applied("00000003", "THREE LIMITED", "active");
+
+        // then
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.isUnchanged("00000001", "ONE LIMITED", "active")).isTrue();
+        assertThat(cache.isUnchanged("00000002", "TWO LIMITED", "active")).isFalse();
+        assertThat(cache.isUnchanged("00000003", "THREE LIMITED", "active")).isTrue();
+        assertThat(meterRegistry.get("appointments.consumer.applied_cache.evictions").counter().count())
+                .isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("Keeps every entry reachable while evicting under churn")
+    void appliedUnderChurn() {
+        // given
+        AppliedNameStatusCache cache = new AppliedNameStatusCache(100, meterRegistry);
+
+        // when
+        for (int i = 0; i < 10_000; i++) {
+            cache.applied(String.format("%08d", i), "COMPANY " + i, "active");
+        }
+
+        // then
+        assertThat(cache.size()).isEqualTo(100);
+        assertThat(cache.isUnchanged("00009999", "COMPANY 9999", "active")).isTrue();
+        int present = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (cache.isUnchanged(String.format("%08d", i), "COMPANY " + i, "active")) {
+                present++;
+            }
+        }
+        assertThat(present).isEqualTo(100);
+    }
+
+    @Test
+    @DisplayName("Does not cache company numbers that cannot be packed, or when disabled")
+    void appliedIgnoresUncacheable() {
+        // given
+        AppliedNameStatusCache cache = new AppliedNameStatusCache(16, meterRegistry);
+        AppliedNameStatusCache disabled = new AppliedNameStatusCache(0, new SimpleMeterRegistry());
+
+        // when
+        cache.applied("sc123456", "COMPANY LIMITED", "active");
+        cache.applied("12345678901", "COMPANY LIMITED", "active");
+        disabled.applied("12345678", "COMPANY LIMITED", "active");
+
+        // then
+        assertThat(cache.size()).isZero();
+        assertThat(disabled.isUnchanged("12345678", "COMPANY LIMITED", "active")).isFalse();
+    }
+
+    @Test
+    @DisplayName("Packs company numbers of different lengths to different keys")
+    void pack() {
+        assertThat(AppliedNameStatusCache.pack("1")).isNotEqualTo(AppliedNameStatusCache.pack("01"));
+        assertThat(AppliedNameStatusCache.pack("SC123456")).isNotEqualTo(AppliedNameStatusCache.UNPACKABLE);
+        assertThat(AppliedNameStatusCache.pack("ZZZZZZZZZZ")).isPositive();
+        assertThat(AppliedNameStatusCache.pack("")).isEqualTo(AppliedNameStatusCache.UNPACKABLE);
+        assertThat(AppliedNameStatusCache.pack(null)).isEqualTo(AppliedNameStatusCache.UNPACKABLE);
+    }
+
+    @Test
+    @DisplayName("Distinguishes a null name or status from an empty one")
+    void fingerprint() {
+        assertThat(AppliedNameStatusCache.fingerprint(null, "active"))
+                .isNotEqualTo(AppliedNameStatusCache.fingerprint("", "active"));
+        assertThat(AppliedNameStatusCache.fingerprint("AB", "C"))
+                .isNotEqualTo(AppliedNameStatusCache.fingerprint("A", "BC"));
+    }
+
+    private double count(String name, String tagKey, String tagValue) {
+        return meterRegistry.get(name).tag(tagKey, tagValue).counter().count();
+    }
+}
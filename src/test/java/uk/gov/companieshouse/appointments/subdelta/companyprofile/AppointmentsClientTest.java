@@ -1,114 +1,198 @@
 package uk.gov.companieshouse.appointments.subdelta.companyprofile;
 
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalToJson;
+import static com.github.tomakehurst.wiremock.client.WireMock.patch;
+import static com.github.tomakehurst.wiremock.client.WireMock.patchRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
-import static org.mockito.Mockito.when;
 
-import com.google.api.client.http.HttpHeaders;
-import com.google.api.client.http.HttpResponseException;
-import java.util.function.Supplier;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.client.BasicCredentials;
+import com.github.tomakehurst.wiremock.http.Fault;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.net.http.HttpClient;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import uk.gov.companieshouse.api.InternalApiClient;
-import uk.gov.companieshouse.api.appointment.PatchAppointmentNameStatusApi;
 import uk.gov.companieshouse.api.error.ApiErrorResponseException;
-import uk.gov.companieshouse.api.handler.delta.PrivateDeltaResourceHandler;
-import uk.gov.companieshouse.api.handler.delta.company.appointment.request.PrivateCompanyAppointmentPatch;
 import uk.gov.companieshouse.api.handler.exception.URIValidationException;
-import uk.gov.companieshouse.api.http.HttpClient;
+import uk.gov.companieshouse.appointments.subdelta.logging.DataMapHolder;
 
 @ExtendWith(MockitoExtension.class)
 class AppointmentsClientTest {
 
-    private static final String RESOURCE_URI = "resource URI";
+    private static final String RESOURCE_URI = "/company/12345678/appointments";
     private static final String COMPANY_NAME = "company name";
     private static final String COMPANY_STATUS = "company status";
 
-    @Mock
-    private Supplier<InternalApiClient> clientSupplier;
+    private static WireMockServer server;
+
     @Mock
     private ResponseHandler responseHandler;
-    @InjectMocks
+
+    private CloseableHttpClient httpClient;
+    private SimpleMeterRegistry meterRegistry;
+    private AdaptiveConcurrencyLimiter limiter;
     private AppointmentsClient client;
-    @Mock
-    private InternalApiClient apiClient;
-    @Mock
-    private HttpClient httpClient;
-    @Mock
-    private PrivateDeltaResourceHandler resourceHandler;
-    @Mock
-    private PrivateCompanyAppointmentPatch appointmentPatch;
+
+    @BeforeAll
+    static void startServer() {
+        server = new WireMockServer(options().dynamicPort());
+        server.start();
+    }
+
+    @AfterAll
+    static void stopServer() {
+        server.stop();
+    }
 
     @BeforeEach
     void setUp() {
-        when(clientSupplier.get()).thenReturn(apiClient);
-        when(apiClient.getHttpClient()).thenReturn(httpClient);
-        when(apiClient.privateDeltaResourceHandler()).thenReturn(resourceHandler);
-        when(resourceHandler.patchCompanyAppointment(any(), any())).thenReturn(appointmentPatch);
+        server.resetAll();
+        httpClient = HttpClients.custom()
+                .setConnectionManager(new InstrumentedConnectionManager(new SimpleMeterRegistry()))
+                .build();
+        meterRegistry = new SimpleMeterRegistry();
+        limiter = new AdaptiveConcurrencyLimiter(new SimpleMeterRegistry(), 10, 1, 20, 1000);
+        client = new AppointmentsClient(
+                new ApiRequestSender(httpClient, HttpClient.newHttpClient(), limiter, meterRegistry, "apiKey", 30_000),
+                new ObjectMapper(), responseHandler, server.baseUrl());
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        httpClient.close();
+        DataMapHolder.clear();
     }
 
     @Test
     @DisplayName("Should execute http request successfully with no exceptions")
     void patchCompanyNameAndStatusForAllAppointments() {
         // given
+        server.stubFor(patch(urlEqualTo(RESOURCE_URI)).willReturn(aResponse().withStatus(200)));
+        DataMapHolder.initialise("request-id");
 
         // when
         client.patchCompanyNameAndStatusForAllAppointments(RESOURCE_URI, COMPANY_NAME, COMPANY_STATUS);
 
         // then
-        verify(resourceHandler).patchCompanyAppointment(RESOURCE_URI,
-                new PatchAppointmentNameStatusApi()
-                        .companyName(COMPANY_NAME)
-                        .companyStatus(COMPANY_STATUS));
+        server.verify(patchRequestedFor(urlEqualTo(RESOURCE_URI))
+                .withBasicAuth(new BasicCredentials("apiKey", ""))
+                .withHeader("X-Request-Id", equalTo("request-id"))
+                .withHeader("Content-Type", equalTo("application/json"))
+                .withRequestBody(equalToJson(
+                        "{\"company_name\": \"company name\", \"company_status\": \"company status\"}", true, true)));
+        verify(responseHandler).handleSuccess("Successfully called PATCH endpoint on Company Appointments API");
+        assertThat(meterRegistry.get(ApiRequestSender.PATCH_METRIC).tag("status", "200").timer().count())
+                .isEqualTo(1);
     }
 
     @Test
-    @DisplayName("Should delegate to response handler when ApiErrorResponseException caught")
-    void patchCompanyNameAndStatusForAllAppointmentsApiErrorResponseException()
-            throws ApiErrorResponseException, URIValidationException {
+    @DisplayName("Should send each call's own request id over the shared client")
+    void patchSendsRequestIdPerCall() {
         // given
-        HttpResponseException.Builder builder = new HttpResponseException.Builder(503, "service unavailable",
-                new HttpHeaders());
-        ApiErrorResponseException apiErrorResponseException = new ApiErrorResponseException(builder);
+        server.stubFor(patch(urlEqualTo(RESOURCE_URI)).willReturn(aResponse().withStatus(200)));
+
+        // when
+        DataMapHolder.initialise("first");
+        client.patchCompanyNameAndStatusForAllAppointments(RESOURCE_URI, COMPANY_NAME, COMPANY_STATUS);
+        DataMapHolder.initialise("second");
+        client.patchCompanyNameAndStatusForAllAppointments(RESOURCE_URI, COMPANY_NAME, COMPANY_STATUS);
+
+        // then
+        server.verify(1, patchRequestedFor(urlEqualTo(RESOURCE_URI)).withHeader("X-Request-Id", equalTo("first")));
+        server.verify(1, patchRequestedFor(urlEqualTo(RESOURCE_URI)).withHeader("X-Request-Id", equalTo("second")));
+    }
 
-        when(appointmentPatch.execute()).thenThrow(apiErrorResponseException);
+    @Test
+    @DisplayName("Should delegate to response handler when the API responds with an error")
+    void patchCompanyNameAndStatusForAllAppointmentsApiErrorResponseException() {
+        // given
+        server.stubFor(patch(urlEqualTo(RESOURCE_URI)).willReturn(aResponse().withStatus(503)));
+        ArgumentCaptor<ApiErrorResponseException> exception = ArgumentCaptor.forClass(ApiErrorResponseException.class);
 
         // when
         client.patchCompanyNameAndStatusForAllAppointments(RESOURCE_URI, COMPANY_NAME, COMPANY_STATUS);
 
         // then
-        verify(resourceHandler).patchCompanyAppointment(RESOURCE_URI,
-                new PatchAppointmentNameStatusApi()
-                        .companyName(COMPANY_NAME)
-                        .companyStatus(COMPANY_STATUS));
         verify(responseHandler).handle(
-                String.format("HTTP response code 503 when updating appointment(s) for resource URI %s", RESOURCE_URI),
-                apiErrorResponseException);
+                eq(String.format("HTTP response code 503 when updating appointment(s) for resource URI %s",
+                        RESOURCE_URI)),
+                exception.capture());
+        assertThat(exception.getValue().getStatusCode()).isEqualTo(503);
+        assertThat(meterRegistry.get(ApiRequestSender.PATCH_METRIC).tag("status", "503").timer().count())
+                .isEqualTo(1);
+        assertThat(limiter.getLimit()).isLessThan(10);
+        assertThat(limiter.getInFlight()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should delegate to response handler when the resource URI is invalid")
+    void patchCompanyNameAndStatusForAllAppointmentsURIValidationException() {
+        // given
+        String resourceUri = "/company/12345678 /appointments";
+
+        // when
+        client.patchCompanyNameAndStatusForAllAppointments(resourceUri, COMPANY_NAME, COMPANY_STATUS);
+
+        // then
+        verify(responseHandler).handle(
+                eq(String.format("Failed updating appointment(s) for resource URI %s", resourceUri)),
+                any(URIValidationException.class));
+    }
+
+    @Test
+    @DisplayName("Should delegate to response handler without sending when the resource URI is not for appointments")
+    void patchCompanyNameAndStatusForAllAppointmentsMismatchedURI() {
+        // given
+        String resourceUri = "/company/12345678/officers";
+
+        // when
+        client.patchCompanyNameAndStatusForAllAppointments(resourceUri, COMPANY_NAME, COMPANY_STATUS);
+
+        // then
+        verify(responseHandler).handle(
+                eq(String.format("Failed updating appointment(s) for resource URI %s", resourceUri)),
+                any(URIValidationException.class));
+        assertThat(server.getAllServeEvents()).isEmpty();
     }
 
     @Test
-    @DisplayName("Should delegate to response handler when URIValidationException caught")
-    void patchCompanyNameAndStatusForAllAppointmentsURIValidationException()
-            throws ApiErrorResponseException, URIValidationException {
+    @DisplayName("Should delegate to response handler when the connection fails")
+    void patchCompanyNameAndStatusForAllAppointmentsConnectionFailure() {
         // given
-        URIValidationException uriValidationException = new URIValidationException("Invalid URI");
-        when(appointmentPatch.execute()).thenThrow(uriValidationException);
+        server.stubFor(patch(urlEqualTo(RESOURCE_URI))
+                .willReturn(aResponse().withFault(Fault.CONNECTION_RESET_BY_PEER)));
 
         // when
         client.patchCompanyNameAndStatusForAllAppointments(RESOURCE_URI, COMPANY_NAME, COMPANY_STATUS);
 
         // then
-        verify(resourceHandler).patchCompanyAppointment(RESOURCE_URI,
-                new PatchAppointmentNameStatusApi()
-                        .companyName(COMPANY_NAME)
-                        .companyStatus(COMPANY_STATUS));
         verify(responseHandler).handle(
-                String.format("Failed updating appointment(s) for resource URI %s", RESOURCE_URI),
-                uriValidationException);
+                eq(String.format("Failed updating appointment(s) for resource URI %s", RESOURCE_URI)),
+                any(IOException.class));
+        verify(responseHandler, never()).handleSuccess(any());
+        assertThat(meterRegistry.get(ApiRequestSender.PATCH_METRIC).tag("status", "IO_ERROR").timer().count())
+                .isEqualTo(1);
+        assertThat(limiter.getLimit()).isLessThan(10);
+        assertThat(limiter.getInFlight()).isZero();
     }
-}
\ No newline at end of file
+}
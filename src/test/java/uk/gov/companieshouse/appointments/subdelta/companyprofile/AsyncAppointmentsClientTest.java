@@ -0,0 +1,181 @@
+package uk.gov.companieshouse.appointments.subdelta.companyprofile;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalToJson;
+import static com.github.tomakehurst.wiremock.client.WireMock.patch;
+import static com.github.tomakehurst.wiremock.client.WireMock.patchRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.client.BasicCredentials;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import uk.gov.companieshouse.appointments.subdelta.exception.NonRetryableException;
+import uk.gov.companieshouse.appointments.subdelta.exception.RetryableException;
+import uk.gov.companieshouse.appointments.subdelta.logging.HotPathLogging;
+import uk.gov.companieshouse.appointments.subdelta.logging.LogMode;
+
+class AsyncAppointmentsClientTest {
+
+    private static final String RESOURCE_URI = "/company/12345678/appointments";
+    private static final String COMPANY_NAME = "COMPANY LIMITED";
+    private static final String COMPANY_STATUS = "active";
+    private static final int API_LATENCY_MILLIS = 250;
+    private static final int REQUESTS = 20;
+
+    private static WireMockServer server;
+
+    private SimpleMeterRegistry meterRegistry;
+    private AsyncAppointmentsClient client;
+
+    @BeforeAll
+    static void startServer() {
+        server = new WireMockServer(options().dynamicPort());
+        server.start();
+    }
+
+    @AfterAll
+    static void stopServer() {
+        server.stop();
+    }
+
+    @BeforeEach
+    void setUp() {
+        server.resetAll();
+        meterRegistry = new SimpleMeterRegistry();
+        client = client(new AdaptiveConcurrencyLimiter(new SimpleMeterRegistry(), REQUESTS, 1, REQUESTS, 1000));
+    }
+
+    @Test
+    @DisplayName("Should send the PATCH with the API key and the company name and status")
+    void patchCompanyNameAndStatusForAllAppointments() throws Exception {
+        // given
+        server.stubFor(patch(urlEqualTo(RESOURCE_URI)).willReturn(aResponse().withStatus(200)));
+
+        // when
+        client.patchCompanyNameAndStatusForAllAppointments(RESOURCE_URI, COMPANY_NAME, COMPANY_STATUS)
+                .get(5, TimeUnit.SECONDS);
+
+        // then
+        server.verify(patchRequestedFor(urlEqualTo(RESOURCE_URI))
+                .withBasicAuth(new BasicCredentials("apiKey", ""))
+                .withHeader("Content-Type", equalTo("application/json"))
+                .withRequestBody(equalToJson(
+                        "{\"company_name\": \"COMPANY LIMITED\", \"company_status\": \"active\"}", true, true)));
+        assertThat(meterRegistry.get(ApiRequestSender.PATCH_METRIC).tag("status", "200").timer().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should complete with RetryableException when the API is unavailable")
+    void patchCompletesWithRetryableException() {
+        // given
+        server.stubFor(patch(urlEqualTo(RESOURCE_URI)).willReturn(aResponse().withStatus(503)));
+
+        // when
+        CompletableFuture<Void> actual = client.patchCompanyNameAndStatusForAllAppointments(RESOURCE_URI,
+                COMPANY_NAME, COMPANY_STATUS);
+
+        // then
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> actual.get(5, TimeUnit.SECONDS));
+        assertThat(exception.getCause()).isInstanceOf(RetryableException.class);
+        assertThat(meterRegistry.get(ApiRequestSender.PATCH_METRIC).tag("status", "503").timer().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should complete with NonRetryableException when the API rejects the request")
+    void patchCompletesWithNonRetryableException() {
+        // given
+        server.stubFor(patch(urlEqualTo(RESOURCE_URI)).willReturn(aResponse().withStatus(400)));
+
+        // when
+        CompletableFuture<Void> actual = client.patchCompanyNameAndStatusForAllAppointments(RESOURCE_URI,
+                COMPANY_NAME, COMPANY_STATUS);
+
+        // then
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> actual.get(5, TimeUnit.SECONDS));
+        assertThat(exception.getCause()).isInstanceOf(NonRetryableException.class);
+    }
+
+    @Test
+    @DisplayName("Should complete with NonRetryableException without sending when the resource URI is not for appointments")
+    void patchCompletesWithNonRetryableExceptionForMismatchedURI() {
+        // when
+        CompletableFuture<Void> actual = client.patchCompanyNameAndStatusForAllAppointments(
+                "/company/12345678/officers", COMPANY_NAME, COMPANY_STATUS);
+
+        // then
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> actual.get(5, TimeUnit.SECONDS));
+        assertThat(exception.getCause()).isInstanceOf(NonRetryableException.class);
+        assertThat(server.getAllServeEvents()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should overlap PATCHes to a high latency API rather than send them one at a time")
+    void patchesOverlapAgainstHighLatencyApi() throws Exception {
+        // given
+        server.stubFor(patch(urlEqualTo(RESOURCE_URI))
+                .willReturn(aResponse().withStatus(200).withFixedDelay(API_LATENCY_MILLIS)));
+        List<CompletableFuture<Void>> patches = new ArrayList<>();
+
+        // when
+        long start = System.nanoTime();
+        for (int i = 0; i < REQUESTS; i++) {
+            patches.add(client.patchCompanyNameAndStatusForAllAppointments(RESOURCE_URI, COMPANY_NAME,
+                    COMPANY_STATUS));
+        }
+        CompletableFuture.allOf(patches.toArray(CompletableFuture[]::new)).get(10, TimeUnit.SECONDS);
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+        // then
+        // Sent one at a time, as by the blocking client on one listener thread, this would take
+        // REQUESTS * API_LATENCY_MILLIS
+        assertThat(elapsed).isLessThan(Duration.ofMillis((long) REQUESTS * API_LATENCY_MILLIS / 4));
+        server.verify(REQUESTS, patchRequestedFor(urlEqualTo(RESOURCE_URI)));
+    }
+
+    @Test
+    @DisplayName("Should wait for a permit past the limiter's wait time rather than fail the PATCH")
+    void patchWaitsForLimiterPermit() throws Exception {
+        // given
+        client = client(new AdaptiveConcurrencyLimiter(new SimpleMeterRegistry(), 1, 1, 1, 50));
+        server.stubFor(patch(urlEqualTo(RESOURCE_URI))
+                .willReturn(aResponse().withStatus(200).withFixedDelay(API_LATENCY_MILLIS)));
+
+        // when
+        CompletableFuture<Void> first = client.patchCompanyNameAndStatusForAllAppointments(RESOURCE_URI,
+                COMPANY_NAME, COMPANY_STATUS);
+        CompletableFuture<Void> second = client.patchCompanyNameAndStatusForAllAppointments(RESOURCE_URI,
+                COMPANY_NAME, COMPANY_STATUS);
+
+        // then
+        first.get(5, TimeUnit.SECONDS);
+        second.get(5, TimeUnit.SECONDS);
+        server.verify(2, patchRequestedFor(urlEqualTo(RESOURCE_URI)));
+    }
+
+    private AsyncAppointmentsClient client(AdaptiveConcurrencyLimiter limiter) {
+        return new AsyncAppointmentsClient(
+                new ApiRequestSender(null, HttpClient.newBuilder().version(HttpClient.Version.HTTP_2).build(),
+                        limiter, meterRegistry, "apiKey", 30_000),
+                new ObjectMapper(), new ResponseHandler(mock(ApiCircuitBreaker.class), new HotPathLogging(LogMode.STANDARD, 1, 0, 0)), server.baseUrl());
+    }
+}
@@ -0,0 +1,199 @@
+package uk.gov.companieshouse.appointments.subdelta.companyprofile;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalToJson;
+import static com.github.tomakehurst.wiremock.client.WireMock.patch;
+import static com.github.tomakehurst.wiremock.client.WireMock.patchRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.client.BasicCredentials;
+import com.github.tomakehurst.wiremock.client.ResponseDefinitionBuilder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.net.http.HttpClient;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import uk.gov.companieshouse.appointments.subdelta.exception.NonRetryableException;
+import uk.gov.companieshouse.appointments.subdelta.exception.RetryableException;
+import uk.gov.companieshouse.appointments.subdelta.logging.HotPathLogging;
+import uk.gov.companieshouse.appointments.subdelta.logging.LogMode;
+
+class BulkAppointmentsClientTest {
+
+    private static final String BULK_PATH = "/company-appointments/name-status";
+    private static final String COMPANY_NAME = "COMPANY LIMITED";
+    private static final String COMPANY_STATUS = "active";
+
+    private static WireMockServer server;
+
+    private ApiCircuitBreaker circuitBreaker;
+    private BulkAppointmentsClient client;
+
+    @BeforeAll
+    static void startServer() {
+        server = new WireMockServer(options().dynamicPort());
+        server.start();
+    }
+
+    @AfterAll
+    static void stopServer() {
+        server.stop();
+    }
+
+    @BeforeEach
+    void setUp() {
+        server.resetAll();
+        circuitBreaker = mock(ApiCircuitBreaker.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        client.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should send one PATCH once the bulk size is reached")
+    void flushesOnBulkSize() throws Exception {
+        // given
+        client = client(3, 60_000);
+        server.stubFor(patch(urlEqualTo(BULK_PATH)).willReturn(multiStatus(
+                result("00000001", 200), result("00000002", 200), result("00000003", 200))));
+
+        // when
+        CompletableFuture<Void> first = patch("00000001");
+        CompletableFuture<Void> second = patch("00000002");
+        CompletableFuture<Void> third = patch("00000003");
+        CompletableFuture.allOf(first, second, third).get(5, TimeUnit.SECONDS);
+
+        // then
+        server.verify(1, patchRequestedFor(urlEqualTo(BULK_PATH))
+                .withBasicAuth(new BasicCredentials("apiKey", ""))
+                .withHeader("Content-Type", equalTo("application/json"))
+                .withRequestBody(equalToJson("""
+                        { "items": [
+                          { "company_number": "00000001", "company_name": "COMPANY LIMITED", "company_status": "active" },
+                          { "company_number": "00000002", "company_name": "COMPANY LIMITED", "company_status": "active" },
+                          { "company_number": "00000003", "company_name": "COMPANY LIMITED", "company_status": "active" }
+                        ] }""")));
+    }
+
+    @Test
+    @DisplayName("Should send a part filled PATCH once the linger time has passed")
+    void flushesOnLinger() throws Exception {
+        // given
+        client = client(100, 50);
+        server.stubFor(patch(urlEqualTo(BULK_PATH)).willReturn(multiStatus(
+                result("00000001", 200), result("00000002", 200))));
+
+        // when
+        CompletableFuture.allOf(patch("00000001"), patch("00000002")).get(5, TimeUnit.SECONDS);
+
+        // then
+        server.verify(1, patchRequestedFor(urlEqualTo(BULK_PATH)));
+    }
+
+    @Test
+    @DisplayName("Should map each company's status in a multi-status response to its own outcome")
+    void mapsMultiStatusPerCompany() throws Exception {
+        // given
+        client = client(4, 60_000);
+        server.stubFor(patch(urlEqualTo(BULK_PATH)).willReturn(multiStatus(
+                result("00000001", 200), result("00000002", 400), result("00000003", 503))));
+
+        // when
+        CompletableFuture<Void> applied = patch("00000001");
+        CompletableFuture<Void> rejected = patch("00000002");
+        CompletableFuture<Void> unavailable = patch("00000003");
+        CompletableFuture<Void> missing = patch("00000004");
+
+        // then
+        applied.get(5, TimeUnit.SECONDS);
+        assertThat(cause(rejected)).isInstanceOf(NonRetryableException.class);
+        assertThat(cause(unavailable)).isInstanceOf(RetryableException.class);
+        assertThat(cause(missing)).isInstanceOf(RetryableException.class);
+        server.verify(1, patchRequestedFor(urlEqualTo(BULK_PATH)));
+        // The API answered the request, whatever it answered for each company
+        verify(circuitBreaker).recordSuccess();
+        verify(circuitBreaker, never()).recordFailure();
+    }
+
+    @Test
+    @DisplayName("Should fail every company with RetryableException when the bulk endpoint is unavailable")
+    void failsAllWhenUnavailable() {
+        // given
+        client = client(20, 60_000);
+        server.stubFor(patch(urlEqualTo(BULK_PATH)).willReturn(aResponse().withStatus(503)));
+
+        // when
+        List<CompletableFuture<Void>> updates = IntStream.rangeClosed(1, 20)
+                .mapToObj(company -> patch(String.format("%08d", company)))
+                .toList();
+
+        // then
+        updates.forEach(update -> assertThat(cause(update)).isInstanceOf(RetryableException.class));
+        // One failed request counts once towards opening the breaker, however many companies it carried
+        verify(circuitBreaker).recordFailure();
+        verify(circuitBreaker, never()).recordSuccess();
+    }
+
+    @Test
+    @DisplayName("Should send the pending PATCH first when a company is updated again")
+    void flushesBeforeRepeatedCompany() throws Exception {
+        // given
+        client = client(100, 60_000);
+        server.stubFor(patch(urlEqualTo(BULK_PATH)).willReturn(multiStatus(result("00000001", 200))));
+
+        // when
+        CompletableFuture<Void> first = patch("00000001");
+        CompletableFuture<Void> second = patch("00000001");
+        client.flush();
+        CompletableFuture.allOf(first, second).get(5, TimeUnit.SECONDS);
+
+        // then
+        server.verify(2, patchRequestedFor(urlEqualTo(BULK_PATH)));
+    }
+
+    private BulkAppointmentsClient client(int bulkSize, long lingerMillis) {
+        return new BulkAppointmentsClient(new ApiRequestSender(null, HttpClient.newHttpClient(),
+                new AdaptiveConcurrencyLimiter(new SimpleMeterRegistry(), 10, 1, 20, 1000), new SimpleMeterRegistry(),
+                "apiKey", 30_000),
+                new ObjectMapper(), new ResponseHandler(circuitBreaker, new HotPathLogging(LogMode.STANDARD, 1, 0, 0)), server.baseUrl(), BULK_PATH, bulkSize,
+                lingerMillis);
+    }
+
+    private CompletableFuture<Void> patch(String companyNumber) {
+        return client.patchCompanyNameAndStatusForAllAppointments(companyNumber, COMPANY_NAME, COMPANY_STATUS);
+    }
+
+    private static Throwable cause(CompletableFuture<Void> future) {
+        return assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS)).getCause();
+    }
+
+    private static ResponseDefinitionBuilder multiStatus(String... results) {
+        return aResponse()
+                .withStatus(207)
+                .withHeader("Content-Type", "application/json")
+                .withBody("{ \"results\": [ " + String.join(", ", results) + " ] }");
+    }
+
+    private static String result(String companyNumber, int status) {
+        return String.format("{ \"company_number\": \"%s\", \"status\": %d }", companyNumber, status);
+    }
+}
@@ -3,26 +3,28 @@ package uk.gov.companieshouse.appointments.subdelta.companyprofile;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
-import static org.mockito.Mockito.anyString;
-import static org.mockito.Mockito.eq;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.api.function.Executable;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.core.io.ClassPathResource;
-import uk.gov.companieshouse.api.company.Data;
 import uk.gov.companieshouse.appointments.subdelta.exception.NonRetryableException;
+import uk.gov.companieshouse.appointments.subdelta.exception.RetryableException;
 import uk.gov.companieshouse.stream.ResourceChangedData;
 
 @ExtendWith(MockitoExtension.class)
@@ -30,53 +32,114 @@ class CompanyProfileChangedServiceTest {
 
     private static final String CHANGED_COMPANY_PROFILE_PATCH_URI = "/company/12345678/appointments";
     private static final String CHANGED_COMPANY_PROFILE_RESOURCE_URI = "/company/12345678";
+    private static final String COMPANY_NUMBER = "12345678";
     private static final String DESERIALISE_FAILED_MESSAGE = "Failed to deserialise company profile data";
     private static final String CONTEXT_ID = "context id";
     private static final String COMPANY_NAME = "COMPANY LIMITED";
     private static final String COMPANY_STATUS = "active";
 
     @Mock
-    private ObjectMapper objectMapper;
+    private CompanyProfileFieldExtractor fieldExtractor;
     @Mock
     private AppointmentsClient appointmentsClient;
-    @InjectMocks
+    @Mock
+    private AppliedNameStatusCache appliedCache;
+    @Mock
+    private AsyncAppointmentsClient asyncAppointmentsClient;
+    @Mock
+    private BulkAppointmentsClient bulkAppointmentsClient;
+
+    private SimpleMeterRegistry meterRegistry;
     private CompanyProfileChangedService service;
 
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        service = new CompanyProfileChangedService(appointmentsClient, fieldExtractor, appliedCache,
+                asyncAppointmentsClient, bulkAppointmentsClient, meterRegistry);
+    }
+
     @Test
     @DisplayName("Should process changed company profile successfully with no exceptions")
     void processChangedCompanyProfile() throws IOException {
         // given
         ResourceChangedData changedData = new ResourceChangedData();
         changedData.setResourceUri(CHANGED_COMPANY_PROFILE_RESOURCE_URI);
+        changedData.setResourceId(COMPANY_NUMBER);
         changedData.setContextId(CONTEXT_ID);
 
         InputStream resource = new ClassPathResource("/example_stream_company_profile_message.json").getInputStream();
         String companyProfileData = new String(resource.readAllBytes());
         changedData.setData(companyProfileData);
 
-        Data data = new Data()
-                .companyName(COMPANY_NAME)
-                .companyStatus(COMPANY_STATUS);
-        when(objectMapper.readValue(anyString(), eq(Data.class))).thenReturn(data);
+        when(fieldExtractor.extract(changedData)).thenReturn(
+                new CompanyProfileFields(COMPANY_NAME, COMPANY_STATUS));
 
         // when
         service.processMessage(changedData);
 
         // then
-        verify(objectMapper).readValue(companyProfileData, Data.class);
+        verify(fieldExtractor).extract(changedData);
         verify(appointmentsClient).patchCompanyNameAndStatusForAllAppointments(CHANGED_COMPANY_PROFILE_PATCH_URI, COMPANY_NAME, COMPANY_STATUS);
+        verify(appliedCache).applied(COMPANY_NUMBER, COMPANY_NAME, COMPANY_STATUS);
+        assertEquals(1, meterRegistry.get(CompanyProfileChangedService.PARSE_METRIC)
+                .tag("outcome", "success").timer().count());
+    }
+
+    @Test
+    @DisplayName("Should not PATCH appointments when company name and status are unchanged")
+    void processUnchangedCompanyProfile() throws IOException {
+        // given
+        ResourceChangedData changedData = new ResourceChangedData();
+        changedData.setResourceUri(CHANGED_COMPANY_PROFILE_RESOURCE_URI);
+        changedData.setResourceId(COMPANY_NUMBER);
+        changedData.setContextId(CONTEXT_ID);
+
+        when(fieldExtractor.extract(changedData)).thenReturn(
+                new CompanyProfileFields(COMPANY_NAME, COMPANY_STATUS));
+        when(appliedCache.isUnchanged(COMPANY_NUMBER, COMPANY_NAME, COMPANY_STATUS)).thenReturn(true);
+
+        // when
+        service.processMessage(changedData);
+
+        // then
+        verifyNoInteractions(appointmentsClient);
+        verify(appliedCache, never()).applied(COMPANY_NUMBER, COMPANY_NAME, COMPANY_STATUS);
+    }
+
+    @Test
+    @DisplayName("Should not record name and status as applied when the PATCH fails")
+    void processChangedCompanyProfilePatchFails() throws IOException {
+        // given
+        ResourceChangedData changedData = new ResourceChangedData();
+        changedData.setResourceUri(CHANGED_COMPANY_PROFILE_RESOURCE_URI);
+        changedData.setResourceId(COMPANY_NUMBER);
+        changedData.setContextId(CONTEXT_ID);
+
+        when(fieldExtractor.extract(changedData)).thenReturn(
+                new CompanyProfileFields(COMPANY_NAME, COMPANY_STATUS));
+        doThrow(RetryableException.class).when(appointmentsClient)
+                .patchCompanyNameAndStatusForAllAppointments(CHANGED_COMPANY_PROFILE_PATCH_URI, COMPANY_NAME,
+                        COMPANY_STATUS);
+
+        // when
+        Executable executable = () -> service.processMessage(changedData);
+
+        // then
+        assertThrows(RetryableException.class, executable);
+        verify(appliedCache, never()).applied(COMPANY_NUMBER, COMPANY_NAME, COMPANY_STATUS);
     }
 
     @Test
     @DisplayName("Should throw NonRetryableException when JsonProcessingException is caught")
-    void processChangedCompanyProfileThrowsNonRetryableException() throws JsonProcessingException {
+    void processChangedCompanyProfileThrowsNonRetryableException() throws IOException {
         // given
         ResourceChangedData changedData = new ResourceChangedData();
         changedData.setResourceUri(CHANGED_COMPANY_PROFILE_RESOURCE_URI);
         changedData.setContextId(CONTEXT_ID);
         String companyProfileData = "{ \"invalid_field\": \"COMPANY LIMITED\", \"company_status\": \"active\" }";
         changedData.setData(companyProfileData);
-        when(objectMapper.readValue(anyString(), eq(Data.class))).thenThrow(JsonProcessingException.class);
+        when(fieldExtractor.extract(changedData)).thenThrow(JsonProcessingException.class);
 
         // when
         Executable executable = () -> service.processMessage(changedData);
@@ -86,4 +149,78 @@ class CompanyProfileChangedServiceTest {
         assertEquals(DESERIALISE_FAILED_MESSAGE, exception.getMessage());
         verifyNoInteractions(appointmentsClient);
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Should record name and status as applied once the async PATCH completes")
+    void processChangedCompanyProfileAsync() throws IOException {
+        // given
+        ResourceChangedData changedData = new ResourceChangedData();
+        changedData.setResourceUri(CHANGED_COMPANY_PROFILE_RESOURCE_URI);
+        changedData.setResourceId(COMPANY_NUMBER);
+        changedData.setContextId(CONTEXT_ID);
+
+        CompletableFuture<Void> patch = new CompletableFuture<>();
+        when(fieldExtractor.extract(changedData)).thenReturn(
+                new CompanyProfileFields(COMPANY_NAME, COMPANY_STATUS));
+        when(asyncAppointmentsClient.patchCompanyNameAndStatusForAllAppointments(CHANGED_COMPANY_PROFILE_PATCH_URI,
+                COMPANY_NAME, COMPANY_STATUS)).thenReturn(patch);
+
+        // when
+        CompletableFuture<Void> actual = service.processMessageAsync(changedData);
+
+        // then
+        verify(appliedCache, never()).applied(COMPANY_NUMBER, COMPANY_NAME, COMPANY_STATUS);
+        patch.complete(null);
+        assertTrue(actual.isDone());
+        verify(appliedCache).applied(COMPANY_NUMBER, COMPANY_NAME, COMPANY_STATUS);
+        verifyNoInteractions(appointmentsClient);
+    }
+
+    @Test
+    @DisplayName("Should send the update through the bulk client when bulk mode is enabled")
+    void processChangedCompanyProfileAsyncInBulk() throws IOException {
+        // given
+        ResourceChangedData changedData = new ResourceChangedData();
+        changedData.setResourceUri(CHANGED_COMPANY_PROFILE_RESOURCE_URI);
+        changedData.setResourceId(COMPANY_NUMBER);
+        changedData.setContextId(CONTEXT_ID);
+
+        when(fieldExtractor.extract(changedData)).thenReturn(
+                new CompanyProfileFields(COMPANY_NAME, COMPANY_STATUS));
+        when(bulkAppointmentsClient.isEnabled()).thenReturn(true);
+        when(bulkAppointmentsClient.patchCompanyNameAndStatusForAllAppointments(COMPANY_NUMBER, COMPANY_NAME,
+                COMPANY_STATUS)).thenReturn(CompletableFuture.completedFuture(null));
+
+        // when
+        CompletableFuture<Void> actual = service.processMessageAsync(changedData);
+
+        // then
+        assertTrue(actual.isDone());
+        verify(appliedCache).applied(COMPANY_NUMBER, COMPANY_NAME, COMPANY_STATUS);
+        verifyNoInteractions(asyncAppointmentsClient);
+    }
+
+    @Test
+    @DisplayName("Should rethrow the bulk client's RetryableException when processing a record")
+    void processChangedCompanyProfileInBulkFails() throws IOException {
+        // given
+        ResourceChangedData changedData = new ResourceChangedData();
+        changedData.setResourceUri(CHANGED_COMPANY_PROFILE_RESOURCE_URI);
+        changedData.setResourceId(COMPANY_NUMBER);
+        changedData.setContextId(CONTEXT_ID);
+
+        when(fieldExtractor.extract(changedData)).thenReturn(
+                new CompanyProfileFields(COMPANY_NAME, COMPANY_STATUS));
+        when(bulkAppointmentsClient.isEnabled()).thenReturn(true);
+        when(bulkAppointmentsClient.patchCompanyNameAndStatusForAllAppointments(COMPANY_NUMBER, COMPANY_NAME,
+                COMPANY_STATUS)).thenReturn(CompletableFuture.failedFuture(new RetryableException("unavailable", null)));
+
+        // when
+        Executable executable = () -> service.processMessage(changedData);
+
+        // then
+        assertThrows(RetryableException.class, executable);
+        verify(appliedCache, never()).applied(COMPANY_NUMBER, COMPANY_NAME, COMPANY_STATUS);
+        verifyNoInteractions(appointmentsClient);
+    }
+}
@@ -0,0 +1,131 @@
+package uk.gov.companieshouse.appointments.subdelta.companyprofile;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import org.springframework.core.io.ClassPathResource;
+import uk.gov.companieshouse.appointments.subdelta.kafka.LazyResourceChangedData;
+import uk.gov.companieshouse.appointments.subdelta.kafka.LazyResourceChangedDataDecoder;
+import uk.gov.companieshouse.appointments.subdelta.kafka.ResourceChangedDataCodec;
+import uk.gov.companieshouse.stream.EventRecord;
+import uk.gov.companieshouse.stream.ResourceChangedData;
+
+class CompanyProfileFieldExtractorTest {
+
+    private final CompanyProfileFieldExtractor extractor = new CompanyProfileFieldExtractor(new ObjectMapper());
+
+    @Test
+    @DisplayName("Extracts company name and status from a full company profile")
+    void extractFromCompanyProfile() throws IOException {
+        // given
+        ResourceChangedData changedData = changedData(exampleCompanyProfile());
+
+        // when
+        CompanyProfileFields actual = extractor.extract(changedData);
+
+        // then
+        assertThat(actual).isEqualTo(new CompanyProfileFields("COMPANY NAME", "active"));
+    }
+
+    @Test
+    @DisplayName("Extracts company name and status straight from deferred Avro bytes")
+    void extractFromLazyData() throws IOException {
+        // given
+        byte[] encoded = new ResourceChangedDataCodec().encode(changedData(exampleCompanyProfile()));
+        LazyResourceChangedData changedData = (LazyResourceChangedData) new LazyResourceChangedDataDecoder()
+                .decode(encoded, null);
+
+        // when
+        CompanyProfileFields actual = extractor.extract(changedData);
+
+        // then
+        assertThat(actual).isEqualTo(new CompanyProfileFields("COMPANY NAME", "active"));
+        assertThat(changedData.isDataDeferred()).isTrue();
+    }
+
+    @Test
+    @DisplayName("Returns nulls for fields that are absent or null")
+    void extractMissingFields() throws IOException {
+        // given
+        ResourceChangedData changedData = changedData("{ \"company_name\": null, \"links\": { \"self\": \"/company/1\" } }");
+
+        // when
+        CompanyProfileFields actual = extractor.extract(changedData);
+
+        // then
+        assertThat(actual).isEqualTo(new CompanyProfileFields(null, null));
+    }
+
+    @Test
+    @DisplayName("Stops parsing once both fields have been found")
+    void extractStopsOnceFieldsFound() throws IOException {
+        // given
+        ResourceChangedData changedData = changedData(
+                "{ \"company_status\": \"dissolved\", \"company_name\": \"COMPANY\", \"sic_codes\": [ ");
+
+        // when
+        CompanyProfileFields actual = extractor.extract(changedData);
+
+        // then
+        assertThat(actual).isEqualTo(new CompanyProfileFields("COMPANY", "dissolved"));
+    }
+
+    @Test
+    @DisplayName("Throws JsonProcessingException when data is malformed")
+    void extractMalformedData() {
+        // given
+        ResourceChangedData changedData = changedData("{ \"company_name\": \"COMPANY\", ");
+
+        // when
+        Executable executable = () -> extractor.extract(changedData);
+
+        // then
+        assertThrows(JsonProcessingException.class, executable);
+    }
+
+    @Test
+    @DisplayName("Throws JsonProcessingException when data is not an object")
+    void extractNonObjectData() {
+        // given
+        ResourceChangedData changedData = changedData("[ \"company_name\" ]");
+
+        // when
+        Executable executable = () -> extractor.extract(changedData);
+
+        // then
+        assertThrows(JsonProcessingException.class, executable);
+    }
+
+    @Test
+    @DisplayName("Throws JsonProcessingException when company name is not a scalar")
+    void extractNonScalarCompanyName() {
+        // given
+        ResourceChangedData changedData = changedData("{ \"company_name\": { \"value\": \"COMPANY\" } }");
+
+        // when
+        Executable executable = () -> extractor.extract(changedData);
+
+        // then
+        assertThrows(JsonProcessingException.class, executable);
+    }
+
+    private static String exampleCompanyProfile() throws IOException {
+        try (InputStream resource = new ClassPathResource("/example_stream_company_profile_message.json")
+                .getInputStream()) {
+            return new String(resource.readAllBytes());
+        }
+    }
+
+    private static ResourceChangedData changedData(String data) {
+        return new ResourceChangedData("company-profile", "/company/12345678", "context_id",
+                "12345678", data, new EventRecord("", "changed", Collections.emptyList()));
+    }
+}
@@ -0,0 +1,60 @@
+package uk.gov.companieshouse.appointments.subdelta.companyprofile;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import org.apache.hc.client5.http.classic.methods.HttpGet;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class InstrumentedConnectionManagerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final WireMockServer server = new WireMockServer(options().dynamicPort());
+
+    @BeforeEach
+    void setUp() {
+        server.start();
+        server.stubFor(get(urlEqualTo("/")).willReturn(aResponse().withStatus(200).withBody("ok")));
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    @DisplayName("Records lease wait time and reuses the pooled connection")
+    void recordsLeaseWaitAndReusesConnection() throws IOException {
+        // given
+        InstrumentedConnectionManager connectionManager = new InstrumentedConnectionManager(meterRegistry);
+
+        // when
+        try (CloseableHttpClient httpClient = HttpClients.custom().setConnectionManager(connectionManager).build()) {
+            for (int i = 0; i < 3; i++) {
+                httpClient.execute(new HttpGet(server.baseUrl() + "/"), response -> {
+                    EntityUtils.consume(response.getEntity());
+                    return null;
+                });
+            }
+
+            // then
+            Timer leaseWait = meterRegistry.get(InstrumentedConnectionManager.LEASE_WAIT_METRIC).timer();
+            assertThat(leaseWait.count()).isEqualTo(3);
+            assertThat(connectionManager.getTotalStats().getAvailable()).isEqualTo(1);
+            assertThat(connectionManager.getTotalStats().getLeased()).isZero();
+        }
+    }
+}
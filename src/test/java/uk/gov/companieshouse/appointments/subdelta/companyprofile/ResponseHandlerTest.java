@@ -1,23 +1,43 @@
 package uk.gov.companieshouse.appointments.subdelta.companyprofile;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 
 import com.google.api.client.http.HttpHeaders;
 import com.google.api.client.http.HttpResponseException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.api.function.Executable;
+import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 import uk.gov.companieshouse.api.error.ApiErrorResponseException;
 import uk.gov.companieshouse.api.handler.exception.URIValidationException;
 import uk.gov.companieshouse.appointments.subdelta.exception.NonRetryableException;
 import uk.gov.companieshouse.appointments.subdelta.exception.RetryableException;
+import uk.gov.companieshouse.appointments.subdelta.logging.HotPathLogging;
+import uk.gov.companieshouse.appointments.subdelta.logging.LogMode;
 
 @ExtendWith(MockitoExtension.class)
 class ResponseHandlerTest {
 
-    private final ResponseHandler responseHandler = new ResponseHandler();
+    @Mock
+    private ApiCircuitBreaker circuitBreaker;
+
+    private ResponseHandler responseHandler;
+
+    @BeforeEach
+    void setUp() {
+        responseHandler = new ResponseHandler(circuitBreaker, new HotPathLogging(LogMode.STANDARD, 1, 0, 0));
+    }
 
     @Test
     void handleURIValidationException() {
@@ -41,6 +61,7 @@ class ResponseHandlerTest {
         // then
         RetryableException exception = assertThrows(RetryableException.class, executable);
         assertEquals("failed message", exception.getMessage());
+        verify(circuitBreaker).recordFailure();
     }
 
     @Test
@@ -83,5 +104,87 @@ class ResponseHandlerTest {
         // then
         RetryableException exception = assertThrows(RetryableException.class, executable);
         assertEquals("failed message", exception.getMessage());
+        verify(circuitBreaker, never()).recordFailure();
+    }
+
+    @Test
+    void handleApiErrorResponseExceptionWhenNotFoundLeavesBreakerClosed() {
+        // given
+        ApiCircuitBreaker breaker = new ApiCircuitBreaker(mock(ApplicationEventPublisher.class), null,
+                new SimpleMeterRegistry(), "http://localhost", "apiKey", "/healthcheck", 1, 30_000);
+        ResponseHandler handler = new ResponseHandler(breaker, new HotPathLogging(LogMode.STANDARD, 1, 0, 0));
+        ApiErrorResponseException notFound = new ApiErrorResponseException(
+                new HttpResponseException.Builder(404, "not found", new HttpHeaders()));
+
+        // when
+        Executable executable = () -> handler.handle("failed message", notFound);
+
+        // then
+        assertThrows(RetryableException.class, executable);
+        assertEquals(ApiCircuitBreaker.State.CLOSED, breaker.getState());
+        breaker.shutdown();
+    }
+
+    @Test
+    void handleApiErrorResponseExceptionWhenTooManyRequests() {
+        // given
+        ApiErrorResponseException tooManyRequests = new ApiErrorResponseException(
+                new HttpResponseException.Builder(429, "too many requests", new HttpHeaders()));
+
+        // when
+        Executable executable = () -> responseHandler.handle("failed message", tooManyRequests);
+
+        // then
+        assertThrows(RetryableException.class, executable);
+        verify(circuitBreaker).recordFailure();
+    }
+
+    @Test
+    void handleIOExceptionRetryable() {
+        // when
+        Executable executable = () -> responseHandler.handle("failed message", new IOException("connection reset"));
+
+        // then
+        RetryableException exception = assertThrows(RetryableException.class, executable);
+        assertEquals("failed message", exception.getMessage());
+        verify(circuitBreaker).recordFailure();
+    }
+
+    @Test
+    void handleSuccess() {
+        // when
+        responseHandler.handleSuccess("success message");
+
+        // then
+        verify(circuitBreaker).recordSuccess();
+    }
+
+    @Test
+    void classifyApiErrorResponseExceptionWithoutRecording() {
+        // given
+        ApiErrorResponseException rejected = new ApiErrorResponseException(
+                new HttpResponseException.Builder(400, "bad request", new HttpHeaders()));
+        ApiErrorResponseException unavailable = new ApiErrorResponseException(
+                new HttpResponseException.Builder(503, "service unavailable", new HttpHeaders()));
+
+        // when
+        RuntimeException rejectedException = responseHandler.classify("failed message", rejected);
+        RuntimeException unavailableException = responseHandler.classify("failed message", unavailable);
+
+        // then
+        assertInstanceOf(NonRetryableException.class, rejectedException);
+        assertInstanceOf(RetryableException.class, unavailableException);
+        verifyNoInteractions(circuitBreaker);
+    }
+
+    @Test
+    void recordResponse() {
+        // when
+        responseHandler.recordResponse(503);
+        responseHandler.recordResponse(404);
+
+        // then
+        verify(circuitBreaker).recordFailure();
+        verify(circuitBreaker).recordSuccess();
     }
-}
\ No newline at end of file
+}
@@ -1,9 +1,12 @@
 package uk.gov.companieshouse.appointments.subdelta.companyprofile;
 
 import static java.util.Collections.emptyList;
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.CompletableFuture;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -19,11 +22,13 @@ class ServiceRouterTest {
     @Mock
     private CompanyProfileChangedService companyProfileChangedService;
 
+    private SimpleMeterRegistry meterRegistry;
     private ServiceRouter router;
 
     @BeforeEach
     void setUp() {
-        router = new ServiceRouter( companyProfileChangedService);
+        meterRegistry = new SimpleMeterRegistry();
+        router = new ServiceRouter(companyProfileChangedService, meterRegistry);
     }
 
     @Test
@@ -38,6 +43,8 @@ class ServiceRouterTest {
 
         // then
         verify(companyProfileChangedService).processMessage(changedData);
+        assertThat(meterRegistry.get(ServiceRouter.ROUTED_METRIC).tag("outcome", "processed").counter().count())
+                .isEqualTo(1);
     }
 
     @Test
@@ -52,5 +59,22 @@ class ServiceRouterTest {
 
         // then
         verifyNoInteractions(companyProfileChangedService);
+        assertThat(meterRegistry.get(ServiceRouter.ROUTED_METRIC).tag("outcome", "skipped").counter().count())
+                .isEqualTo(1);
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Should complete without calling profile service when routing a deleted event asynchronously")
+    void routeAsyncDeletedMessage() {
+        // given
+        ResourceChangedData changedData = new ResourceChangedData();
+        changedData.setEvent(new EventRecord("", "deleted", emptyList()));
+
+        // when
+        CompletableFuture<Void> actual = router.routeAsync(changedData);
+
+        // then
+        assertThat(actual).isCompleted();
+        verifyNoInteractions(companyProfileChangedService);
+    }
+}
@@ -10,7 +10,8 @@ import org.testcontainers.utility.DockerImageName;
 @Import(TestConfig.class)
 public abstract class AbstractKafkaTest {
 
+    public static final DockerImageName KAFKA_IMAGE = DockerImageName.parse("confluentinc/cp-kafka:7.9.1");
+
     @Container
-    protected static final ConfluentKafkaContainer kafka = new ConfluentKafkaContainer(DockerImageName.parse(
-            "confluentinc/cp-kafka:7.9.1"));
+    protected static final ConfluentKafkaContainer kafka = new ConfluentKafkaContainer(KAFKA_IMAGE);
 }
\ No newline at end of file
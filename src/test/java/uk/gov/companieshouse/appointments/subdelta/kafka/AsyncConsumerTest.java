@@ -0,0 +1,293 @@
+package uk.gov.companieshouse.appointments.subdelta.kafka;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import uk.gov.companieshouse.appointments.subdelta.companyprofile.ServiceRouter;
+import uk.gov.companieshouse.appointments.subdelta.exception.RetryableException;
+import uk.gov.companieshouse.appointments.subdelta.logging.DataMapHolder;
+import uk.gov.companieshouse.appointments.subdelta.logging.HotPathLogging;
+import uk.gov.companieshouse.appointments.subdelta.logging.ListenerLogging;
+import uk.gov.companieshouse.appointments.subdelta.logging.LogMode;
+import uk.gov.companieshouse.stream.EventRecord;
+import uk.gov.companieshouse.stream.ResourceChangedData;
+
+@ExtendWith(MockitoExtension.class)
+class AsyncConsumerTest {
+
+    private static final TopicPartition PARTITION = new TopicPartition("stream-company-profile", 0);
+
+    @Mock
+    private ServiceRouter router;
+    @Mock
+    private FailedRecordPublisher failedRecordPublisher;
+    @Mock
+    private OffsetManager offsetManager;
+    @Mock
+    private org.apache.kafka.clients.consumer.Consumer<String, ResourceChangedData> kafkaConsumer;
+
+    @Test
+    @DisplayName("Marks a record complete only once its PATCH completes")
+    void consumeCompletesOnPatchCompletion() {
+        // given
+        AsyncConsumer consumer = consumer(16);
+        ConsumerRecord<String, ResourceChangedData> consumerRecord = consumerRecord(0, "00000001");
+        CompletableFuture<Void> patch = new CompletableFuture<>();
+        when(router.routeAsync(consumerRecord.value())).thenReturn(patch);
+
+        // when
+        consumer.consume(consumerRecord, kafkaConsumer);
+
+        // then
+        verify(offsetManager, never()).complete(PARTITION, 0);
+        patch.complete(null);
+        verify(offsetManager).complete(PARTITION, 0);
+        verifyNoInteractions(failedRecordPublisher);
+    }
+
+    @Test
+    @DisplayName("Publishes a record whose PATCH failed with a retryable error before marking it complete")
+    void consumePublishesRetryableFailure() {
+        // given
+        AsyncConsumer consumer = consumer(16);
+        ConsumerRecord<String, ResourceChangedData> consumerRecord = consumerRecord(0, "00000001");
+        RetryableException exception = new RetryableException("unavailable", null);
+        when(router.routeAsync(consumerRecord.value())).thenReturn(CompletableFuture.failedFuture(exception));
+
+        // when
+        consumer.consume(consumerRecord, kafkaConsumer);
+
+        // then
+        InOrder inOrder = inOrder(failedRecordPublisher, offsetManager);
+        inOrder.verify(failedRecordPublisher).publishRetryable(consumerRecord, exception);
+        inOrder.verify(offsetManager).complete(PARTITION, 0);
+    }
+
+    @Test
+    @DisplayName("Does not mark complete a failed record that could not be published")
+    void consumeDoesNotCompleteWhenPublishFails() {
+        // given
+        AsyncConsumer consumer = consumer(16);
+        ConsumerRecord<String, ResourceChangedData> consumerRecord = consumerRecord(0, "00000001");
+        RetryableException exception = new RetryableException("unavailable", null);
+        when(router.routeAsync(consumerRecord.value())).thenReturn(CompletableFuture.failedFuture(exception));
+        doThrow(new RetryableException("Error publishing failed record", null))
+                .when(failedRecordPublisher).publishRetryable(consumerRecord, exception);
+
+        // when
+        consumer.consume(consumerRecord, kafkaConsumer);
+
+        // then
+        verify(offsetManager, never()).complete(PARTITION, 0);
+    }
+
+    @Test
+    @DisplayName("Starts a PATCH for a company only once the previous PATCH for it has completed")
+    void consumeOrdersPatchesPerCompany() {
+        // given
+        AsyncConsumer consumer = consumer(16);
+        ConsumerRecord<String, ResourceChangedData> first = consumerRecord(0, "00000001");
+        ConsumerRecord<String, ResourceChangedData> second = consumerRecord(1, "00000001");
+        CompletableFuture<Void> firstPatch = new CompletableFuture<>();
+        when(router.routeAsync(first.value())).thenReturn(firstPatch);
+        when(router.routeAsync(second.value())).thenReturn(CompletableFuture.completedFuture(null));
+
+        // when
+        consumer.consume(first, kafkaConsumer);
+        consumer.consume(second, kafkaConsumer);
+
+        // then
+        verify(router, never()).routeAsync(second.value());
+        firstPatch.complete(null);
+        verify(router).routeAsync(second.value());
+        verify(offsetManager).complete(PARTITION, 0);
+        verify(offsetManager).complete(PARTITION, 1);
+    }
+
+    @Test
+    @DisplayName("Blocks the listener while the partition has the maximum PATCHes in flight")
+    void consumeBlocksAtInFlightLimit() throws Exception {
+        // given
+        AsyncConsumer consumer = consumer(1);
+        ConsumerRecord<String, ResourceChangedData> first = consumerRecord(0, "00000001");
+        ConsumerRecord<String, ResourceChangedData> second = consumerRecord(1, "00000002");
+        CompletableFuture<Void> firstPatch = new CompletableFuture<>();
+        when(router.routeAsync(first.value())).thenReturn(firstPatch);
+        when(router.routeAsync(second.value())).thenReturn(CompletableFuture.completedFuture(null));
+        consumer.consume(first, kafkaConsumer);
+
+        // when
+        CompletableFuture<Void> secondConsumed = CompletableFuture.runAsync(
+                () -> consumer.consume(second, kafkaConsumer));
+
+        // then
+        Thread.sleep(200);
+        assertThat(secondConsumed).isNotDone();
+        firstPatch.complete(null);
+        secondConsumed.get(5, TimeUnit.SECONDS);
+        verify(offsetManager, timeout(5000)).complete(PARTITION, 1);
+    }
+
+    @Test
+    @DisplayName("Processes a record on a virtual thread with its logging context in parallel mode")
+    void consumeProcessesOnVirtualThread() throws Exception {
+        // given
+        AsyncConsumer consumer = new AsyncConsumer(router, failedRecordPublisher, new ListenerLogging(5, new HotPathLogging(LogMode.STANDARD, 1, 0, 0)), offsetManager,
+                ProcessingMode.PARALLEL, 16);
+        ConsumerRecord<String, ResourceChangedData> consumerRecord = consumerRecord(0, "00000001");
+        CompletableFuture<Thread> thread = new CompletableFuture<>();
+        CompletableFuture<String> requestId = new CompletableFuture<>();
+        doAnswer(invocation -> {
+            thread.complete(Thread.currentThread());
+            requestId.complete(DataMapHolder.getRequestId());
+            return null;
+        }).when(router).route(consumerRecord.value());
+
+        // when
+        consumer.consume(consumerRecord, kafkaConsumer);
+
+        // then
+        assertThat(thread.get(5, TimeUnit.SECONDS).isVirtual()).isTrue();
+        assertThat(requestId.get(5, TimeUnit.SECONDS)).isEqualTo("context_id_0");
+        verify(offsetManager, timeout(5000)).complete(PARTITION, 0);
+        consumer.shutdown();
+    }
+
+    @Test
+    @DisplayName("Keeps records for the same company in order in parallel mode")
+    void consumeOrdersRecordsPerCompanyInParallelMode() throws Exception {
+        // given
+        AsyncConsumer consumer = new AsyncConsumer(router, failedRecordPublisher, new ListenerLogging(5, new HotPathLogging(LogMode.STANDARD, 1, 0, 0)), offsetManager,
+                ProcessingMode.PARALLEL, 16);
+        ConsumerRecord<String, ResourceChangedData> first = consumerRecord(0, "00000001");
+        ConsumerRecord<String, ResourceChangedData> second = consumerRecord(1, "00000001");
+        CountDownLatch firstStarted = new CountDownLatch(1);
+        CountDownLatch releaseFirst = new CountDownLatch(1);
+        List<Long> processed = Collections.synchronizedList(new ArrayList<>());
+        doAnswer(invocation -> {
+            firstStarted.countDown();
+            releaseFirst.await(5, TimeUnit.SECONDS);
+            processed.add(0L);
+            return null;
+        }).when(router).route(first.value());
+        doAnswer(invocation -> processed.add(1L)).when(router).route(second.value());
+
+        // when
+        consumer.consume(first, kafkaConsumer);
+        consumer.consume(second, kafkaConsumer);
+
+        // then
+        assertThat(firstStarted.await(5, TimeUnit.SECONDS)).isTrue();
+        Thread.sleep(100);
+        assertThat(processed).isEmpty();
+        releaseFirst.countDown();
+        verify(offsetManager, timeout(5000)).complete(PARTITION, 1);
+        assertThat(processed).containsExactly(0L, 1L);
+        consumer.shutdown();
+    }
+
+    @Test
+    @DisplayName("Drains a revoked partition, completing started records and cancelling the rest")
+    void drainCompletesStartedAndCancelsQueuedRecords() throws Exception {
+        // given
+        AsyncConsumer consumer = consumer(16);
+        ConsumerRecord<String, ResourceChangedData> first = consumerRecord(0, "00000001");
+        ConsumerRecord<String, ResourceChangedData> second = consumerRecord(1, "00000001");
+        CompletableFuture<Void> firstPatch = new CompletableFuture<>();
+        when(router.routeAsync(first.value())).thenReturn(firstPatch);
+        consumer.consume(first, kafkaConsumer);
+        consumer.consume(second, kafkaConsumer);
+
+        // when
+        CompletableFuture<Boolean> drained = CompletableFuture.supplyAsync(
+                () -> consumer.drain(List.of(PARTITION), Duration.ofSeconds(5)));
+
+        // then
+        Thread.sleep(100);
+        assertThat(drained).isNotDone();
+        firstPatch.complete(null);
+        assertThat(drained.get(5, TimeUnit.SECONDS)).isTrue();
+        verify(offsetManager).complete(PARTITION, 0);
+        verify(router, never()).routeAsync(second.value());
+        verify(offsetManager, never()).complete(PARTITION, 1);
+        verifyNoInteractions(failedRecordPublisher);
+    }
+
+    @Test
+    @DisplayName("Leaves a record still in flight after the drain timeout to the partition's new owner")
+    void drainTimesOut() {
+        // given
+        AsyncConsumer consumer = consumer(16);
+        ConsumerRecord<String, ResourceChangedData> consumerRecord = consumerRecord(0, "00000001");
+        CompletableFuture<Void> patch = new CompletableFuture<>();
+        when(router.routeAsync(consumerRecord.value())).thenReturn(patch);
+        consumer.consume(consumerRecord, kafkaConsumer);
+
+        // when
+        boolean drained = consumer.drain(List.of(PARTITION), Duration.ofMillis(50));
+        patch.completeExceptionally(new RetryableException("unavailable", null));
+
+        // then
+        assertThat(drained).isFalse();
+        verify(offsetManager, never()).complete(PARTITION, 0);
+        verifyNoInteractions(failedRecordPublisher);
+    }
+
+    @Test
+    @DisplayName("Forgets the in-flight permits and pending records of a partition once it is handed over")
+    void drainForgetsPartition() {
+        // given
+        AsyncConsumer consumer = consumer(1);
+        ConsumerRecord<String, ResourceChangedData> stuckRecord = consumerRecord(0, "00000001");
+        ConsumerRecord<String, ResourceChangedData> nextRecord = consumerRecord(1, "00000002");
+        when(router.routeAsync(stuckRecord.value())).thenReturn(new CompletableFuture<>());
+        when(router.routeAsync(nextRecord.value())).thenReturn(CompletableFuture.completedFuture(null));
+        consumer.consume(stuckRecord, kafkaConsumer);
+        consumer.drain(List.of(PARTITION), Duration.ofMillis(50));
+        consumer.assigned(List.of(PARTITION));
+
+        // when
+        // Blocks if the permit still held by the handed-over record were remembered
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> consumer.consume(nextRecord, kafkaConsumer));
+        boolean drained = consumer.drain(List.of(PARTITION), Duration.ofSeconds(5));
+
+        // then
+        assertThat(drained).isTrue();
+        verify(offsetManager).complete(PARTITION, 1);
+        verify(offsetManager, never()).complete(PARTITION, 0);
+    }
+
+    private AsyncConsumer consumer(int maxInFlightPerPartition) {
+        return new AsyncConsumer(router, failedRecordPublisher, new ListenerLogging(5, new HotPathLogging(LogMode.STANDARD, 1, 0, 0)), offsetManager, ProcessingMode.ASYNC,
+                maxInFlightPerPartition);
+    }
+
+    private static ConsumerRecord<String, ResourceChangedData> consumerRecord(long offset, String companyNumber) {
+        return new ConsumerRecord<>("stream-company-profile", 0, offset, "key",
+                new ResourceChangedData("company-profile", "/company/" + companyNumber, "context_id_" + offset,
+                        companyNumber, "{}", new EventRecord("", "changed", Collections.emptyList())));
+    }
+}
@@ -0,0 +1,81 @@
+package uk.gov.companieshouse.appointments.subdelta.kafka;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import uk.gov.companieshouse.stream.EventRecord;
+import uk.gov.companieshouse.stream.ResourceChangedData;
+
+class BatchCoalescerTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final BatchCoalescer coalescer = new BatchCoalescer(meterRegistry);
+
+    @Test
+    @DisplayName("Marks every changed delta but the latest for each company as superseded")
+    void supersededRecords() {
+        // given
+        List<ConsumerRecord<String, ResourceChangedData>> records = List.of(
+                consumerRecord(0, "00000001", "changed"),
+                consumerRecord(1, "00000002", "changed"),
+                consumerRecord(2, "00000001", "changed"),
+                consumerRecord(3, "00000001", "changed"));
+
+        // when
+        BitSet actual = coalescer.supersededRecords(records);
+
+        // then
+        assertThat(actual.stream()).containsExactly(0, 2);
+        assertThat(meterRegistry.get(BatchCoalescer.PATCHES_AVOIDED_METRIC).counter().count())
+                .isEqualTo(2.0);
+    }
+
+    @Test
+    @DisplayName("Does not supersede a changed delta with a deleted delta or an invalid record")
+    void supersededRecordsIgnoresOtherRecords() {
+        // given
+        List<ConsumerRecord<String, ResourceChangedData>> records = List.of(
+                consumerRecord(0, "00000001", "changed"),
+                consumerRecord(1, "00000001", "deleted"),
+                new ConsumerRecord<>("stream-company-profile", 0, 2, "key", null));
+
+        // when
+        BitSet actual = coalescer.supersededRecords(records);
+
+        // then
+        assertThat(actual.isEmpty()).isTrue();
+        assertThat(meterRegistry.get(BatchCoalescer.PATCHES_AVOIDED_METRIC).counter().count())
+                .isZero();
+    }
+
+    @Test
+    @DisplayName("Leaves a delta without an event uncoalesced rather than failing the batch")
+    void supersededRecordsIgnoresDeltaWithoutEvent() {
+        // given
+        List<ConsumerRecord<String, ResourceChangedData>> records = List.of(
+                new ConsumerRecord<>("stream-company-profile", 0, 0, "key",
+                        new ResourceChangedData("company-profile", "/company/00000001", "context_id",
+                                "00000001", "{}", null)),
+                consumerRecord(1, "00000001", "changed"));
+
+        // when
+        BitSet actual = coalescer.supersededRecords(records);
+
+        // then
+        assertThat(actual.isEmpty()).isTrue();
+    }
+
+    private static ConsumerRecord<String, ResourceChangedData> consumerRecord(long offset,
+            String companyNumber, String eventType) {
+        return new ConsumerRecord<>("stream-company-profile", 0, offset, "key",
+                new ResourceChangedData("company-profile", "/company/" + companyNumber, "context_id",
+                        companyNumber, "{}", new EventRecord("", eventType, Collections.emptyList())));
+    }
+}
@@ -0,0 +1,268 @@
+package uk.gov.companieshouse.appointments.subdelta.kafka;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.util.backoff.BackOffExecution;
+import uk.gov.companieshouse.appointments.subdelta.companyprofile.ServiceRouter;
+import uk.gov.companieshouse.appointments.subdelta.exception.NonRetryableException;
+import uk.gov.companieshouse.appointments.subdelta.exception.RetryableException;
+import uk.gov.companieshouse.appointments.subdelta.logging.HotPathLogging;
+import uk.gov.companieshouse.appointments.subdelta.logging.ListenerLogging;
+import uk.gov.companieshouse.appointments.subdelta.logging.LogMode;
+import uk.gov.companieshouse.stream.EventRecord;
+import uk.gov.companieshouse.stream.ResourceChangedData;
+
+@ExtendWith(MockitoExtension.class)
+class BatchConsumerTest {
+
+    private static final String TOPIC = "stream-company-profile";
+
+    @Mock
+    private ServiceRouter router;
+    @Mock
+    private FailedRecordPublisher failedRecordPublisher;
+    @Mock
+    private org.apache.kafka.clients.consumer.Consumer<String, ResourceChangedData> kafkaConsumer;
+    @Mock
+    private Acknowledgment acknowledgment;
+
+    private BatchConsumer consumer;
+
+    @BeforeEach
+    void setUp() {
+        consumer = consumer(500);
+    }
+
+    @Test
+    @DisplayName("Routes every record in the batch")
+    void consumeRoutesEveryRecord() {
+        // given
+        ConsumerRecord<String, ResourceChangedData> first = consumerRecord(0, "00000001");
+        ConsumerRecord<String, ResourceChangedData> second = consumerRecord(1, "00000002");
+
+        // when
+        consumer.consume(List.of(first, second), kafkaConsumer, acknowledgment);
+
+        // then
+        verify(router).route(first.value());
+        verify(router).route(second.value());
+        verify(acknowledgment).acknowledge();
+        verifyNoInteractions(failedRecordPublisher);
+    }
+
+    @Test
+    @DisplayName("Processes only the live window of a large poll and has the rest redelivered")
+    void consumeProcessesLiveWindow() {
+        // given
+        consumer = consumer(2);
+        ConsumerRecord<String, ResourceChangedData> first = consumerRecord(0, "00000001");
+        ConsumerRecord<String, ResourceChangedData> second = consumerRecord(1, "00000002");
+        ConsumerRecord<String, ResourceChangedData> third = consumerRecord(2, "00000001");
+
+        // when
+        consumer.consume(List.of(first, second, third), kafkaConsumer, acknowledgment);
+
+        // then
+        verify(router).route(first.value());
+        verify(router).route(second.value());
+        verify(router, never()).route(third.value());
+        verify(acknowledgment).nack(2, Duration.ZERO);
+        verify(acknowledgment, never()).acknowledge();
+    }
+
+    @Test
+    @DisplayName("Routes only the latest delta for each company")
+    void consumeRoutesLatestDeltaPerCompany() {
+        // given
+        ConsumerRecord<String, ResourceChangedData> first = consumerRecord(0, "00000001");
+        ConsumerRecord<String, ResourceChangedData> second = consumerRecord(1, "00000002");
+        ConsumerRecord<String, ResourceChangedData> third = consumerRecord(2, "00000001");
+
+        // when
+        consumer.consume(List.of(first, second, third), kafkaConsumer, acknowledgment);
+
+        // then
+        verify(router, never()).route(first.value());
+        verify(router).route(second.value());
+        verify(router).route(third.value());
+    }
+
+    @Test
+    @DisplayName("Publishes only the record that failed with a retryable error to the retry topic")
+    void consumePublishesRetryableRecord() {
+        // given
+        ConsumerRecord<String, ResourceChangedData> first = consumerRecord(0, "00000001");
+        ConsumerRecord<String, ResourceChangedData> second = consumerRecord(1, "00000002");
+        RetryableException exception = new RetryableException("unavailable", null);
+        doThrow(exception).when(router).route(first.value());
+
+        // when
+        consumer.consume(List.of(first, second), kafkaConsumer, acknowledgment);
+
+        // then
+        verify(failedRecordPublisher).publishRetryable(first, exception);
+        verify(router).route(second.value());
+        verifyNoMoreInteractions(failedRecordPublisher);
+    }
+
+    @Test
+    @DisplayName("Publishes a record that failed with a non-retryable error to the invalid topic")
+    void consumePublishesNonRetryableRecord() {
+        // given
+        ConsumerRecord<String, ResourceChangedData> first = consumerRecord(0, "00000001");
+        ConsumerRecord<String, ResourceChangedData> second = consumerRecord(1, "00000002");
+        NonRetryableException exception = new NonRetryableException("bad request");
+        doThrow(exception).when(router).route(first.value());
+
+        // when
+        consumer.consume(List.of(first, second), kafkaConsumer, acknowledgment);
+
+        // then
+        verify(failedRecordPublisher).publishInvalid(first, exception);
+        verify(router).route(second.value());
+        verifyNoMoreInteractions(failedRecordPublisher);
+    }
+
+    @Test
+    @DisplayName("Publishes a record that could not be deserialised to the invalid topic")
+    void consumePublishesUndeserialisedRecord() {
+        // given
+        ConsumerRecord<String, ResourceChangedData> invalid = new ConsumerRecord<>(TOPIC, 0, 0, "key", null);
+
+        // when
+        consumer.consume(List.of(invalid), kafkaConsumer, acknowledgment);
+
+        // then
+        verify(failedRecordPublisher).publishInvalid(same(invalid), any(NonRetryableException.class));
+        verifyNoInteractions(router);
+    }
+
+    @Test
+    @DisplayName("Fails the batch from the record that could not be published")
+    void consumeFailsBatchWhenPublishFails() {
+        // given
+        ConsumerRecord<String, ResourceChangedData> first = consumerRecord(0, "00000001");
+        ConsumerRecord<String, ResourceChangedData> second = consumerRecord(1, "00000002");
+        RetryableException exception = new RetryableException("unavailable", null);
+        doThrow(exception).when(router).route(second.value());
+        doThrow(new RetryableException("Error publishing failed record", null))
+                .when(failedRecordPublisher).publishRetryable(second, exception);
+
+        // when
+        BatchListenerFailedException actual = assertThrows(BatchListenerFailedException.class,
+                () -> consumer.consume(List.of(first, second), kafkaConsumer, acknowledgment));
+
+        // then
+        assertThat(actual.getIndex()).isEqualTo(1);
+        verify(router).route(first.value());
+    }
+
+    @Test
+    @DisplayName("Keeps backing off to retry a record that could not be published rather than skipping it")
+    void publishRetryBackOffNeverStops() {
+        // given
+        BackOffExecution execution = BatchConsumer.publishRetryBackOff(1000).start();
+
+        // when
+        List<Long> intervals = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            intervals.add(execution.nextBackOff());
+        }
+
+        // then
+        assertThat(intervals.subList(0, 3)).containsExactly(1000L, 1500L, 2250L);
+        assertThat(intervals).doesNotContain(BackOffExecution.STOP).allMatch(interval -> interval <= 30_000);
+    }
+
+    @Test
+    @DisplayName("Sends the latest delta per company without waiting for each while catching up")
+    void consumeCatchesUpInParallel() {
+        // given
+        ConsumerRecord<String, ResourceChangedData> first = consumerRecord(0, "00000001");
+        ConsumerRecord<String, ResourceChangedData> second = consumerRecord(1, "00000002");
+        ConsumerRecord<String, ResourceChangedData> third = consumerRecord(2, "00000001");
+        lagging(5000);
+        CompletableFuture<Void> secondPatch = new CompletableFuture<>();
+        when(router.routeAsync(second.value())).thenReturn(secondPatch);
+        when(router.routeAsync(third.value())).thenReturn(CompletableFuture.completedFuture(null));
+
+        // when
+        CompletableFuture<Void> consumed = CompletableFuture.runAsync(
+                () -> consumer.consume(List.of(first, second, third), kafkaConsumer, acknowledgment));
+
+        // then
+        verify(router, timeout(5000)).routeAsync(third.value());
+        assertThat(consumed).isNotDone();
+        secondPatch.complete(null);
+        consumed.join();
+        verify(router, never()).routeAsync(first.value());
+        verify(router, never()).route(any());
+        verifyNoInteractions(failedRecordPublisher);
+    }
+
+    @Test
+    @DisplayName("Publishes the records whose PATCH failed once the catch-up window completes")
+    void consumeCatchUpPublishesFailedRecords() {
+        // given
+        ConsumerRecord<String, ResourceChangedData> first = consumerRecord(0, "00000001");
+        ConsumerRecord<String, ResourceChangedData> second = consumerRecord(1, "00000002");
+        lagging(5000);
+        RetryableException exception = new RetryableException("unavailable", null);
+        when(router.routeAsync(first.value())).thenReturn(CompletableFuture.failedFuture(exception));
+        when(router.routeAsync(second.value())).thenReturn(CompletableFuture.completedFuture(null));
+
+        // when
+        consumer.consume(List.of(first, second), kafkaConsumer, acknowledgment);
+
+        // then
+        verify(failedRecordPublisher).publishRetryable(first, exception);
+        verifyNoMoreInteractions(failedRecordPublisher);
+    }
+
+    private BatchConsumer consumer(int liveWindow) {
+        return new BatchConsumer(router, failedRecordPublisher, new ListenerLogging(5, new HotPathLogging(LogMode.STANDARD, 1, 0, 0)),
+                new BatchCoalescer(new SimpleMeterRegistry()), new CatchUpMode(1000, new SimpleMeterRegistry()), 4,
+                liveWindow);
+    }
+
+    private void lagging(long lag) {
+        TopicPartition partition = new TopicPartition(TOPIC, 0);
+        when(kafkaConsumer.assignment()).thenReturn(Set.of(partition));
+        when(kafkaConsumer.currentLag(partition)).thenReturn(OptionalLong.of(lag));
+    }
+
+    private static ConsumerRecord<String, ResourceChangedData> consumerRecord(long offset,
+            String companyNumber) {
+        return new ConsumerRecord<>(TOPIC, 0, offset, "key",
+                new ResourceChangedData("company-profile", "/company/" + companyNumber, "context_id",
+                        companyNumber, "{}", new EventRecord("", "changed", Collections.emptyList())));
+    }
+}
@@ -0,0 +1,84 @@
+package uk.gov.companieshouse.appointments.subdelta.kafka;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.OptionalLong;
+import java.util.Set;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.event.ConsumerStoppingEvent;
+import uk.gov.companieshouse.stream.ResourceChangedData;
+
+@ExtendWith(MockitoExtension.class)
+class CatchUpModeTest {
+
+    private static final TopicPartition FIRST = new TopicPartition("stream-company-profile", 0);
+    private static final TopicPartition SECOND = new TopicPartition("stream-company-profile", 1);
+
+    @Mock
+    private org.apache.kafka.clients.consumer.Consumer<String, ResourceChangedData> kafkaConsumer;
+
+    @Test
+    @DisplayName("Catches up while the lag across the consumer's partitions is above the threshold")
+    void catchesUpAboveThreshold() {
+        // given
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        CatchUpMode catchUpMode = new CatchUpMode(1000, meterRegistry);
+        when(kafkaConsumer.assignment()).thenReturn(Set.of(FIRST, SECOND));
+        when(kafkaConsumer.currentLag(FIRST)).thenReturn(OptionalLong.of(600), OptionalLong.of(500),
+                OptionalLong.of(499));
+        when(kafkaConsumer.currentLag(SECOND)).thenReturn(OptionalLong.of(600), OptionalLong.of(500),
+                OptionalLong.empty());
+
+        // when
+        boolean above = catchUpMode.update(kafkaConsumer);
+        double catchingUp = meterRegistry.get(CatchUpMode.CATCH_UP_METRIC).gauge().value();
+        boolean atThreshold = catchUpMode.update(kafkaConsumer);
+        boolean below = catchUpMode.update(kafkaConsumer);
+
+        // then
+        assertThat(above).isTrue();
+        assertThat(catchingUp).isEqualTo(1);
+        assertThat(atThreshold).isTrue();
+        assertThat(below).isFalse();
+        assertThat(meterRegistry.get(CatchUpMode.CATCH_UP_METRIC).gauge().value()).isZero();
+    }
+
+    @Test
+    @DisplayName("Stops counting a consumer as catching up once it stops")
+    void forgetsStoppedConsumer() {
+        // given
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        CatchUpMode catchUpMode = new CatchUpMode(1000, meterRegistry);
+        when(kafkaConsumer.assignment()).thenReturn(Set.of(FIRST));
+        when(kafkaConsumer.currentLag(FIRST)).thenReturn(OptionalLong.of(5000));
+        catchUpMode.update(kafkaConsumer);
+
+        // when
+        catchUpMode.onConsumerStopping(new ConsumerStoppingEvent(this, this, kafkaConsumer, Set.of(FIRST)));
+
+        // then
+        assertThat(meterRegistry.get(CatchUpMode.CATCH_UP_METRIC).gauge().value()).isZero();
+    }
+
+    @Test
+    @DisplayName("Never catches up when the threshold is 0")
+    void disabled() {
+        // given
+        CatchUpMode catchUpMode = new CatchUpMode(0, new SimpleMeterRegistry());
+
+        // when
+        boolean catchingUp = catchUpMode.update(kafkaConsumer);
+
+        // then
+        assertThat(catchingUp).isFalse();
+        verifyNoInteractions(kafkaConsumer);
+    }
+}
@@ -0,0 +1,59 @@
+package uk.gov.companieshouse.appointments.subdelta.kafka;
+
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import uk.gov.companieshouse.appointments.subdelta.companyprofile.ApiCircuitBreakerEvent;
+
+@ExtendWith(MockitoExtension.class)
+class CircuitBreakerListenerPauserTest {
+
+    @Mock
+    private KafkaListenerEndpointRegistry registry;
+    @Mock
+    private MessageListenerContainer mainContainer;
+    @Mock
+    private MessageListenerContainer retryContainer;
+    @InjectMocks
+    private CircuitBreakerListenerPauser pauser;
+
+    @BeforeEach
+    void setUp() {
+        when(registry.getAllListenerContainers()).thenReturn(List.of(mainContainer, retryContainer));
+    }
+
+    @Test
+    @DisplayName("Pauses every container when the circuit breaker opens")
+    void pausesWhenOpen() {
+        // when
+        pauser.onCircuitBreakerEvent(new ApiCircuitBreakerEvent(true));
+
+        // then
+        verify(mainContainer).pause();
+        verify(retryContainer).pause();
+        verify(mainContainer, never()).resume();
+    }
+
+    @Test
+    @DisplayName("Resumes every container when the circuit breaker closes")
+    void resumesWhenClosed() {
+        // when
+        pauser.onCircuitBreakerEvent(new ApiCircuitBreakerEvent(false));
+
+        // then
+        verify(mainContainer).resume();
+        verify(retryContainer).resume();
+        verify(mainContainer, never()).pause();
+    }
+}
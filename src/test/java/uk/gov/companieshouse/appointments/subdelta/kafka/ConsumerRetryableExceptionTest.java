@@ -59,6 +59,8 @@ class ConsumerRetryableExceptionTest extends AbstractKafkaTest {
     static void props(DynamicPropertyRegistry registry) {
         registry.add("spring.kafka.bootstrap-servers", kafka::getBootstrapServers);
         registry.add("steps", () -> 5);
+        registry.add("consumer.in_process_attempts", () -> 2);
+        registry.add("consumer.in_process_backoff", () -> 1);
     }
 
     @BeforeEach
@@ -95,6 +97,7 @@ class ConsumerRetryableExceptionTest extends AbstractKafkaTest {
         assertThat(TestUtils.noOfRecordsForTopic(consumerRecords, STREAM_COMPANY_PROFILE_ERROR_TOPIC))
                 .isEqualTo(1);
         assertThat(TestUtils.noOfRecordsForTopic(consumerRecords, STREAM_COMPANY_PROFILE_INVALID_TOPIC)).isZero();
-        verify(router, times(5)).route(any());
+        // Two in-process attempts for each of the five deliveries
+        verify(router, times(10)).route(any());
     }
 }
@@ -0,0 +1,47 @@
+package uk.gov.companieshouse.appointments.subdelta.kafka;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class FailedRecordMetricsTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private FailedRecordMetrics metrics;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        metrics = new FailedRecordMetrics(meterRegistry, "group", "stream-company-profile-group-invalid");
+    }
+
+    @Test
+    @DisplayName("Counts failed records by the topic they were written to")
+    void countsByDestination() {
+        // when
+        metrics.onSuccess(null, metadata("stream-company-profile-group-retry"));
+        metrics.onSuccess(null, metadata("stream-company-profile-group-retry-2"));
+        metrics.onSuccess(null, metadata("stream-company-profile-group-error"));
+        metrics.onSuccess(null, metadata("stream-company-profile-group-invalid"));
+        metrics.onSuccess(null, metadata("stream-company-profile"));
+
+        // then
+        assertThat(count("retry")).isEqualTo(2);
+        assertThat(count("dlt")).isEqualTo(1);
+        assertThat(count("invalid")).isEqualTo(1);
+    }
+
+    private double count(String destination) {
+        return meterRegistry.get(FailedRecordMetrics.FAILED_RECORDS_METRIC)
+                .tag("destination", destination).counter().count();
+    }
+
+    private static RecordMetadata metadata(String topic) {
+        return new RecordMetadata(new TopicPartition(topic, 0), 0L, 0, 0L, 0, 0);
+    }
+}
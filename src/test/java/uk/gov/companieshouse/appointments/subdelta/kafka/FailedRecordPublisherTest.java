@@ -0,0 +1,140 @@
+package uk.gov.companieshouse.appointments.subdelta.kafka;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.kafka.support.KafkaHeaders.EXCEPTION_MESSAGE;
+import static org.springframework.kafka.support.KafkaHeaders.ORIGINAL_OFFSET;
+import static org.springframework.kafka.support.KafkaHeaders.ORIGINAL_PARTITION;
+
+import java.math.BigInteger;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.retrytopic.RetryTopicHeaders;
+import uk.gov.companieshouse.appointments.subdelta.exception.NonRetryableException;
+import uk.gov.companieshouse.appointments.subdelta.exception.RetryableException;
+import uk.gov.companieshouse.stream.EventRecord;
+import uk.gov.companieshouse.stream.ResourceChangedData;
+
+@ExtendWith(MockitoExtension.class)
+class FailedRecordPublisherTest {
+
+    private static final ConsumerRecord<String, ResourceChangedData> CONSUMER_RECORD = new ConsumerRecord<>(
+            "stream-company-profile", 2, 42L, "key",
+            new ResourceChangedData("company-profile", "/company/12345678", "context_id", "12345678",
+                    "{}", new EventRecord("", "changed", Collections.emptyList())));
+
+    @Mock
+    private KafkaTemplate<String, ResourceChangedData> kafkaTemplate;
+    @Captor
+    private ArgumentCaptor<ProducerRecord<String, ResourceChangedData>> producerRecord;
+
+    private FailedRecordPublisher publisher;
+
+    @BeforeEach
+    void setUp() {
+        publisher = new FailedRecordPublisher(kafkaTemplate,
+                new RetryBackoff("group", 1000L, 0, 0, 0), "group", 5);
+    }
+
+    @Test
+    @DisplayName("Publishes a retryable record to the retry topic as its first retry")
+    void publishRetryable() {
+        // given
+        when(kafkaTemplate.send(any(ProducerRecord.class))).thenReturn(CompletableFuture.completedFuture(null));
+
+        // when
+        publisher.publishRetryable(CONSUMER_RECORD, new RetryableException("unavailable", null));
+
+        // then
+        verify(kafkaTemplate).send(producerRecord.capture());
+        ProducerRecord<String, ResourceChangedData> actual = producerRecord.getValue();
+        assertThat(actual.topic()).isEqualTo("stream-company-profile-group-retry");
+        assertThat(ErrorClassification.RETRYABLE.isPresentIn(actual.headers())).isTrue();
+        assertThat(actual.value()).isSameAs(CONSUMER_RECORD.value());
+        assertThat(new BigInteger(actual.headers().lastHeader(RetryTopicHeaders.DEFAULT_HEADER_ATTEMPTS)
+                .value()).intValue()).isEqualTo(2);
+        assertThat(actual.headers().lastHeader(RetryTopicHeaders.DEFAULT_HEADER_BACKOFF_TIMESTAMP)).isNotNull();
+    }
+
+    @Test
+    @DisplayName("Publishes a retryable record to the first delay tier when retry topics are tiered")
+    void publishRetryableTiered() {
+        // given
+        publisher = new FailedRecordPublisher(kafkaTemplate,
+                new RetryBackoff("group", 1000L, 2, 60_000L, 0), "group", 5);
+        when(kafkaTemplate.send(any(ProducerRecord.class))).thenReturn(CompletableFuture.completedFuture(null));
+
+        // when
+        publisher.publishRetryable(CONSUMER_RECORD, new RetryableException("unavailable", null));
+
+        // then
+        verify(kafkaTemplate).send(producerRecord.capture());
+        assertThat(producerRecord.getValue().topic()).isEqualTo("stream-company-profile-group-retry-0");
+    }
+
+    @Test
+    @DisplayName("Publishes a retryable record to the error topic when no retries are configured")
+    void publishRetryableWithoutRetries() {
+        // given
+        publisher = new FailedRecordPublisher(kafkaTemplate,
+                new RetryBackoff("group", 1000L, 0, 0, 0), "group", 1);
+        when(kafkaTemplate.send(any(ProducerRecord.class))).thenReturn(CompletableFuture.completedFuture(null));
+
+        // when
+        publisher.publishRetryable(CONSUMER_RECORD, new RetryableException("unavailable", null));
+
+        // then
+        verify(kafkaTemplate).send(producerRecord.capture());
+        assertThat(producerRecord.getValue().topic()).isEqualTo("stream-company-profile-group-error");
+        assertThat(producerRecord.getValue().headers().lastHeader(RetryTopicHeaders.DEFAULT_HEADER_ATTEMPTS))
+                .isNull();
+    }
+
+    @Test
+    @DisplayName("Publishes an invalid record with the headers used to build the invalid message")
+    void publishInvalid() {
+        // given
+        when(kafkaTemplate.send(any(ProducerRecord.class))).thenReturn(CompletableFuture.completedFuture(null));
+
+        // when
+        publisher.publishInvalid(CONSUMER_RECORD, new NonRetryableException("bad request"));
+
+        // then
+        verify(kafkaTemplate).send(producerRecord.capture());
+        ProducerRecord<String, ResourceChangedData> actual = producerRecord.getValue();
+        assertThat(actual.topic()).isEqualTo("stream-company-profile-group-error");
+        assertThat(new BigInteger(actual.headers().lastHeader(ORIGINAL_PARTITION).value()).intValue()).isEqualTo(2);
+        assertThat(new BigInteger(actual.headers().lastHeader(ORIGINAL_OFFSET).value()).longValue()).isEqualTo(42L);
+        assertThat(new String(actual.headers().lastHeader(EXCEPTION_MESSAGE).value())).isEqualTo("bad request");
+        assertThat(ErrorClassification.INVALID.isPresentIn(actual.headers())).isTrue();
+    }
+
+    @Test
+    @DisplayName("Throws RetryableException when the record cannot be published")
+    void publishFails() {
+        // given
+        when(kafkaTemplate.send(any(ProducerRecord.class)))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("broker down")));
+
+        // when
+        RetryableException actual = assertThrows(RetryableException.class,
+                () -> publisher.publishInvalid(CONSUMER_RECORD, new NonRetryableException("bad request")));
+
+        // then
+        assertThat(actual.getCause()).hasMessage("broker down");
+    }
+}
@@ -0,0 +1,113 @@
+package uk.gov.companieshouse.appointments.subdelta.kafka;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.when;
+
+import java.util.Map;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.CooperativeStickyAssignor;
+import org.apache.kafka.clients.consumer.RangeAssignor;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.config.SimpleKafkaListenerEndpoint;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.MessageListener;
+import org.springframework.kafka.listener.MessageListenerContainer;
+
+@ExtendWith(MockitoExtension.class)
+class GroupMembershipTest {
+
+    private static final Map<String, String> ECS_ENVIRONMENT = Map.of(
+            "ECS_CONTAINER_METADATA_URI_V4", "http://169.254.170.2/v4/a1b2c3d4-1234567890",
+            "HOSTNAME", "ip-10-0-0-1");
+
+    @Mock
+    private MessageListenerContainer container;
+
+    @Test
+    @DisplayName("Maps assignor names to class names in order of preference")
+    void assignorClassNames() {
+        // when
+        String assignors = GroupMembership.assignorClassNames("cooperative-sticky, Range");
+
+        // then
+        assertThat(assignors).isEqualTo(
+                CooperativeStickyAssignor.class.getName() + "," + RangeAssignor.class.getName());
+    }
+
+    @Test
+    @DisplayName("Rejects an unknown assignor name")
+    void unknownAssignor() {
+        assertThatThrownBy(() -> GroupMembership.assignorClassNames("uniform"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("uniform");
+    }
+
+    @Test
+    @DisplayName("Derives a static instance id per container from the ECS task")
+    void staticInstanceIdFromTask() {
+        // given
+        GroupMembership groupMembership = new GroupMembership("cooperative-sticky", true, "", ECS_ENVIRONMENT);
+        ContainerProperties containerProperties = new ContainerProperties("stream-company-profile");
+        when(container.getContainerProperties()).thenReturn(containerProperties);
+        when(container.getListenerId()).thenReturn("company-appointments-consumer-async");
+
+        // when
+        groupMembership.customise(container);
+
+        // then
+        assertThat(containerProperties.getKafkaConsumerProperties().getProperty(ConsumerConfig.GROUP_INSTANCE_ID_CONFIG))
+                .isEqualTo("a1b2c3d4-1234567890-company-appointments-consumer-async");
+    }
+
+    @Test
+    @DisplayName("Gives each container built by the same factory its own static instance id")
+    void distinctInstanceIdsPerContainer() {
+        // given
+        GroupMembership groupMembership = new GroupMembership("cooperative-sticky", true, "task-1", Map.of());
+        ConcurrentKafkaListenerContainerFactory<String, String> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(new DefaultKafkaConsumerFactory<>(Map.of()));
+        factory.setContainerCustomizer(groupMembership::customise);
+
+        // when
+        ConcurrentMessageListenerContainer<String, String> main = factory.createListenerContainer(endpoint("main"));
+        ConcurrentMessageListenerContainer<String, String> retry = factory.createListenerContainer(endpoint("retry"));
+
+        // then
+        assertThat(instanceId(main)).isEqualTo("task-1-main");
+        assertThat(instanceId(retry)).isEqualTo("task-1-retry");
+    }
+
+    @Test
+    @DisplayName("Prefers a configured instance id, and sets none without static membership")
+    void configuredAndDynamicInstanceIds() {
+        // when
+        GroupMembership configured = new GroupMembership("range", true, "consumer-1", ECS_ENVIRONMENT);
+        GroupMembership dynamic = new GroupMembership("range", false, "consumer-1", ECS_ENVIRONMENT);
+
+        // then
+        assertThat(configured.getInstanceId()).contains("consumer-1");
+        assertThat(dynamic.getInstanceId()).isEmpty();
+    }
+
+    private static SimpleKafkaListenerEndpoint<String, String> endpoint(String id) {
+        SimpleKafkaListenerEndpoint<String, String> endpoint = new SimpleKafkaListenerEndpoint<>();
+        endpoint.setId(id);
+        endpoint.setTopics("stream-company-profile");
+        endpoint.setMessageListener((MessageListener<String, String>) consumerRecord -> {
+        });
+        return endpoint;
+    }
+
+    private static String instanceId(MessageListenerContainer container) {
+        return container.getContainerProperties().getKafkaConsumerProperties()
+                .getProperty(ConsumerConfig.GROUP_INSTANCE_ID_CONFIG);
+    }
+}
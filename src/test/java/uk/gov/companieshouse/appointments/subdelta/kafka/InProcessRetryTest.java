@@ -0,0 +1,138 @@
+package uk.gov.companieshouse.appointments.subdelta.kafka;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.when;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.function.Executable;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.core.ConsumerFactory;
+import uk.gov.companieshouse.appointments.subdelta.companyprofile.ApiCircuitBreaker;
+import uk.gov.companieshouse.appointments.subdelta.exception.NonRetryableException;
+import uk.gov.companieshouse.appointments.subdelta.exception.RetryableException;
+import uk.gov.companieshouse.stream.ResourceChangedData;
+
+@ExtendWith(MockitoExtension.class)
+class InProcessRetryTest {
+
+    @Mock
+    private ApiCircuitBreaker circuitBreaker;
+    @Mock
+    private ConsumerFactory<String, ResourceChangedData> consumerFactory;
+
+    private final AtomicInteger calls = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(circuitBreaker.getState()).thenReturn(ApiCircuitBreaker.State.CLOSED);
+        lenient().when(consumerFactory.getConfigurationProperties()).thenReturn(Map.of());
+    }
+
+    @Test
+    @DisplayName("Succeeds without escalating when a retry in process succeeds")
+    void succeedsAfterRetry() {
+        // given
+        InProcessRetry retry = new InProcessRetry(circuitBreaker, consumerFactory, 3, 1, 500);
+
+        // when
+        retry.run(failTimes(2));
+
+        // then
+        assertThat(calls).hasValue(3);
+    }
+
+    @Test
+    @DisplayName("Escalates the last RetryableException once attempts run out")
+    void escalatesAfterMaxAttempts() {
+        // given
+        InProcessRetry retry = new InProcessRetry(circuitBreaker, consumerFactory, 3, 1, 500);
+
+        // when
+        Executable actual = () -> retry.run(failTimes(Integer.MAX_VALUE));
+
+        // then
+        assertThrows(RetryableException.class, actual);
+        assertThat(calls).hasValue(3);
+    }
+
+    @Test
+    @DisplayName("Does not retry a NonRetryableException")
+    void doesNotRetryNonRetryable() {
+        // given
+        InProcessRetry retry = new InProcessRetry(circuitBreaker, consumerFactory, 3, 1, 500);
+
+        // when
+        Executable actual = () -> retry.run(() -> {
+            calls.incrementAndGet();
+            throw new NonRetryableException("bad request");
+        });
+
+        // then
+        assertThrows(NonRetryableException.class, actual);
+        assertThat(calls).hasValue(1);
+    }
+
+    @Test
+    @DisplayName("Escalates straight away while the circuit breaker is open")
+    void escalatesWhenCircuitOpen() {
+        // given
+        when(circuitBreaker.getState()).thenReturn(ApiCircuitBreaker.State.OPEN);
+        InProcessRetry retry = new InProcessRetry(circuitBreaker, consumerFactory, 3, 1, 500);
+
+        // when
+        Executable actual = () -> retry.run(failTimes(Integer.MAX_VALUE));
+
+        // then
+        assertThrows(RetryableException.class, actual);
+        assertThat(calls).hasValue(1);
+    }
+
+    @Test
+    @DisplayName("Caps the budget to the record's share of the poll interval")
+    void capsBudgetToPollInterval() {
+        // given
+        when(consumerFactory.getConfigurationProperties()).thenReturn(Map.of(
+                ConsumerConfig.MAX_POLL_INTERVAL_MS_CONFIG, "1000",
+                ConsumerConfig.MAX_POLL_RECORDS_CONFIG, 1000));
+        InProcessRetry retry = new InProcessRetry(circuitBreaker, consumerFactory, 10, 1000, 60_000);
+
+        // when
+        long start = System.nanoTime();
+        Executable actual = () -> retry.run(failTimes(Integer.MAX_VALUE));
+
+        // then
+        assertThrows(RetryableException.class, actual);
+        assertThat(System.nanoTime() - start).isLessThan(500_000_000L);
+    }
+
+    @Test
+    @DisplayName("Runs once when a single attempt is configured")
+    void disabledWithOneAttempt() {
+        // given
+        InProcessRetry retry = new InProcessRetry(circuitBreaker, consumerFactory, 1, 1, 500);
+
+        // when
+        Executable actual = () -> retry.run(failTimes(Integer.MAX_VALUE));
+
+        // then
+        assertThrows(RetryableException.class, actual);
+        assertThat(calls).hasValue(1);
+    }
+
+    private Runnable failTimes(int failures) {
+        return () -> {
+            if (calls.incrementAndGet() <= failures) {
+                throw new RetryableException("service unavailable", null);
+            }
+        };
+    }
+}
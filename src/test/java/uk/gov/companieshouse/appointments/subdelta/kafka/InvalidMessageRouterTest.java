@@ -1,17 +1,15 @@
 package uk.gov.companieshouse.appointments.subdelta.kafka;
 
 import static org.assertj.core.api.Assertions.assertThat;
-import static org.mockito.Mockito.times;
-import static org.mockito.Mockito.verify;
-import static org.mockito.Mockito.when;
 import static org.springframework.kafka.support.KafkaHeaders.EXCEPTION_MESSAGE;
 import static org.springframework.kafka.support.KafkaHeaders.ORIGINAL_OFFSET;
 import static org.springframework.kafka.support.KafkaHeaders.ORIGINAL_PARTITION;
 
-import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import org.apache.kafka.clients.producer.ProducerRecord;
 import org.apache.kafka.common.header.internals.RecordHeader;
 import org.junit.jupiter.api.BeforeEach;
@@ -19,6 +17,8 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import uk.gov.companieshouse.appointments.subdelta.exception.NonRetryableException;
+import uk.gov.companieshouse.appointments.subdelta.exception.RetryableException;
 import uk.gov.companieshouse.stream.EventRecord;
 import uk.gov.companieshouse.stream.ResourceChangedData;
 
@@ -27,18 +27,13 @@ class InvalidMessageRouterTest {
 
     private InvalidMessageRouter invalidMessageRouter;
 
-    @Mock
-    private MessageFlags flags;
-
     @Mock
     private ResourceChangedData changedData;
 
     @BeforeEach
     void setup() {
         invalidMessageRouter = new InvalidMessageRouter();
-        invalidMessageRouter.configure(
-                Map.of("message.flags", flags,
-                        "invalid.message.topic.profile", "profile-invalid"));
+        invalidMessageRouter.configure(Map.of("invalid.message.topic.profile", "profile-invalid"));
     }
 
     @Test
@@ -47,9 +42,10 @@ class InvalidMessageRouterTest {
         ProducerRecord<String, ResourceChangedData> message = new ProducerRecord<>("profile-main", 0, "key",
                 changedData,
                 List.of(
-                        new RecordHeader(ORIGINAL_PARTITION, BigInteger.ZERO.toByteArray()),
-                        new RecordHeader(ORIGINAL_OFFSET, BigInteger.ONE.toByteArray()),
-                        new RecordHeader(EXCEPTION_MESSAGE, "invalid".getBytes())));
+                        new RecordHeader(ORIGINAL_PARTITION, ByteBuffer.allocate(Integer.BYTES).putInt(0).array()),
+                        new RecordHeader(ORIGINAL_OFFSET, ByteBuffer.allocate(Long.BYTES).putLong(1L).array()),
+                        new RecordHeader(EXCEPTION_MESSAGE, "invalid".getBytes()),
+                        ErrorClassification.of(new NonRetryableException("invalid")).header()));
 
         ResourceChangedData invalidData = new ResourceChangedData("", "", "", "",
                 "{ \"invalid_message\": \"exception: [ invalid ] redirecting message from topic: profile-main, partition: 0, offset: 1 to invalid topic\" }",
@@ -58,22 +54,66 @@ class InvalidMessageRouterTest {
         ProducerRecord<String, ResourceChangedData> actual = invalidMessageRouter.onSend(message);
 
         // then
-        verify(flags, times(0)).destroy();
         assertThat(actual).isEqualTo(new ProducerRecord<>("profile-invalid", "key", invalidData));
     }
 
     @Test
     void testOnSendRoutesMessageToTargetTopicIfRetryableExceptionThrown() {
         // given
-        ProducerRecord<String, ResourceChangedData> message = new ProducerRecord<>("main", "key",
-                changedData);
-        when(flags.isRetryable()).thenReturn(true);
+        ProducerRecord<String, ResourceChangedData> message = new ProducerRecord<>("main", 0, "key",
+                changedData, List.of(ErrorClassification.of(
+                        new IllegalStateException(new RetryableException("unavailable", null))).header()));
+
+        // when
+        ProducerRecord<String, ResourceChangedData> actual = invalidMessageRouter.onSend(message);
+
+        // then
+        assertThat(actual).isSameAs(message);
+    }
+
+    @Test
+    void testOnSendUsesLatestClassificationOfARetriedMessage() {
+        // given
+        ProducerRecord<String, ResourceChangedData> message = new ProducerRecord<>("main-retry", 0, "key",
+                changedData, List.of(
+                        ErrorClassification.RETRYABLE.header(),
+                        ErrorClassification.INVALID.header()));
+
+        // when
+        ProducerRecord<String, ResourceChangedData> actual = invalidMessageRouter.onSend(message);
+
+        // then
+        assertThat(actual.topic()).isEqualTo("profile-invalid");
+        assertThat(actual.value().getData()).contains("exception: [ unknown ]", "partition: -1, offset: -1");
+    }
+
+    @Test
+    void testOnSendLeavesUnclassifiedMessageUnchanged() {
+        // given
+        ProducerRecord<String, ResourceChangedData> message = new ProducerRecord<>("main", "key", changedData);
 
         // when
         ProducerRecord<String, ResourceChangedData> actual = invalidMessageRouter.onSend(message);
 
         // then
-        verify(flags, times(1)).destroy();
-        assertThat(actual).isSameAs((message));
+        assertThat(actual).isSameAs(message);
+    }
+
+    @Test
+    void testOnSendRoutesConcurrentlyFromAnyThread() {
+        // given
+        ProducerRecord<String, ResourceChangedData> retryable = new ProducerRecord<>("main", 0, "key",
+                changedData, List.of(ErrorClassification.RETRYABLE.header()));
+        ProducerRecord<String, ResourceChangedData> invalid = new ProducerRecord<>("main", 0, "key",
+                changedData, List.of(ErrorClassification.INVALID.header()));
+
+        // when
+        CompletableFuture<ProducerRecord<String, ResourceChangedData>> actualRetryable =
+                CompletableFuture.supplyAsync(() -> invalidMessageRouter.onSend(retryable));
+        ProducerRecord<String, ResourceChangedData> actualInvalid = invalidMessageRouter.onSend(invalid);
+
+        // then
+        assertThat(actualRetryable.join()).isSameAs(retryable);
+        assertThat(actualInvalid.topic()).isEqualTo("profile-invalid");
     }
 }
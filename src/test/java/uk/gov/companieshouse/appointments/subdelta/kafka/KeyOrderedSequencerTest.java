@@ -0,0 +1,87 @@
+package uk.gov.companieshouse.appointments.subdelta.kafka;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class KeyOrderedSequencerTest {
+
+    private final KeyOrderedSequencer sequencer = new KeyOrderedSequencer();
+
+    @Test
+    @DisplayName("Starts a task once the previous task with the same key has completed")
+    void submitOrdersTasksWithSameKey() {
+        // given
+        CompletableFuture<Void> first = new CompletableFuture<>();
+        AtomicBoolean secondStarted = new AtomicBoolean();
+        sequencer.submit("00000001", () -> first);
+
+        // when
+        CompletableFuture<Void> second = sequencer.submit("00000001", () -> {
+            secondStarted.set(true);
+            return CompletableFuture.completedFuture(null);
+        });
+
+        // then
+        assertThat(secondStarted).isFalse();
+        first.complete(null);
+        assertThat(secondStarted).isTrue();
+        assertThat(second).isCompleted();
+        assertThat(sequencer.size()).isZero();
+    }
+
+    @Test
+    @DisplayName("Starts the next task with the same key even when the previous task failed")
+    void submitContinuesAfterFailure() {
+        // given
+        CompletableFuture<Void> first = new CompletableFuture<>();
+        sequencer.submit("00000001", () -> first);
+        CompletableFuture<Void> second = sequencer.submit("00000001",
+                () -> CompletableFuture.completedFuture(null));
+
+        // when
+        first.completeExceptionally(new IllegalStateException("failed"));
+
+        // then
+        assertThat(second).isCompleted();
+    }
+
+    @Test
+    @DisplayName("Starts tasks with different keys straight away")
+    void submitDoesNotOrderTasksWithDifferentKeys() {
+        // given
+        sequencer.submit("00000001", CompletableFuture::new);
+
+        // when
+        CompletableFuture<Void> actual = sequencer.submit("00000002",
+                () -> CompletableFuture.completedFuture(null));
+
+        // then
+        assertThat(actual).isCompleted();
+        assertThat(sequencer.size()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Starts a task without holding the lock on its key")
+    void submitStartsTaskOutsideLock() {
+        // given
+        CompletableFuture<Void> nested = new CompletableFuture<>();
+
+        // when
+        // Submitting for the same key from within the task would be a recursive update under the lock
+        CompletableFuture<Void> actual = sequencer.submit("00000001", () -> {
+            sequencer.submit("00000001", () -> nested);
+            return CompletableFuture.completedFuture(null);
+        });
+
+        // then
+        assertThat(actual).isCompleted();
+        assertThat(nested).isNotDone();
+        assertThat(sequencer.size()).isEqualTo(1);
+        nested.complete(null);
+        assertThat(sequencer.size()).isZero();
+    }
+}
@@ -0,0 +1,88 @@
+package uk.gov.companieshouse.appointments.subdelta.kafka;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import uk.gov.companieshouse.stream.EventRecord;
+import uk.gov.companieshouse.stream.ResourceChangedData;
+
+class LazyResourceChangedDataDecoderTest {
+
+    private static final String DATA = "{\"company_name\":\"COMPANY LIMITED £\",\"company_status\":\"active\"}";
+
+    private final ResourceChangedDataCodec codec = new ResourceChangedDataCodec();
+    private final LazyResourceChangedDataDecoder decoder = new LazyResourceChangedDataDecoder();
+
+    @Test
+    @DisplayName("Decodes routing fields and defers the data field")
+    void testDecodeDefersData() throws IOException {
+        // given
+        byte[] encoded = codec.encode(changedData());
+
+        // when
+        LazyResourceChangedData actual = (LazyResourceChangedData) decoder.decode(encoded, null);
+
+        // then
+        assertThat(actual.isDataDeferred()).isTrue();
+        assertThat(actual.getResourceKind()).isEqualTo("company-profile");
+        assertThat(actual.getResourceUri()).isEqualTo("/company/12345678");
+        assertThat(actual.getContextId()).isEqualTo("context_id");
+        assertThat(actual.getResourceId()).isEqualTo("12345678");
+        assertThat(actual.getEvent()).isEqualTo(changedData().getEvent());
+        assertThat(actual.isDataDeferred()).isTrue();
+    }
+
+    @Test
+    @DisplayName("Decodes the data field when it is first read")
+    void testGetDataDecodesData() throws IOException {
+        // given
+        LazyResourceChangedData actual = (LazyResourceChangedData) decoder.decode(codec.encode(changedData()), null);
+
+        // when
+        String data = actual.getData();
+
+        // then
+        assertThat(data).isEqualTo(DATA);
+        assertThat(actual.isDataDeferred()).isFalse();
+    }
+
+    @Test
+    @DisplayName("Encodes a lazily decoded record identically to the original")
+    void testReencodeLazyRecord() throws IOException {
+        // given
+        byte[] encoded = codec.encode(changedData());
+        ResourceChangedData lazy = decoder.decode(encoded, null);
+
+        // when
+        byte[] actual = codec.encode(lazy);
+
+        // then
+        assertThat(actual).isEqualTo(encoded);
+    }
+
+    @Test
+    @DisplayName("Throws EOFException when the record is truncated")
+    void testDecodeTruncatedRecord() throws IOException {
+        // given
+        byte[] encoded = codec.encode(changedData());
+        byte[] truncated = Arrays.copyOf(encoded, 30);
+
+        // when
+        Executable actual = () -> decoder.decode(truncated, null);
+
+        // then
+        assertThrows(EOFException.class, actual);
+    }
+
+    private static ResourceChangedData changedData() {
+        return new ResourceChangedData("company-profile", "/company/12345678", "context_id",
+                "12345678", DATA, new EventRecord("published_at", "changed", List.of("company_name")));
+    }
+}
@@ -0,0 +1,164 @@
+package uk.gov.companieshouse.appointments.subdelta.kafka;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalDouble;
+import java.util.stream.IntStream;
+import org.apache.kafka.clients.admin.TopicDescription;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.TopicPartitionInfo;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.KafkaAdmin;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import uk.gov.companieshouse.stream.ResourceChangedData;
+
+@ExtendWith(MockitoExtension.class)
+class ListenerConcurrencyTest {
+
+    private static final String TOPIC = "stream-company-profile";
+
+    @Mock
+    private KafkaAdmin kafkaAdmin;
+    @Mock
+    private KafkaListenerEndpointRegistry registry;
+    @Mock
+    private BlockingRatioSampler sampler;
+    @Mock
+    private ConcurrentMessageListenerContainer<String, ResourceChangedData> container;
+
+    @Test
+    @DisplayName("Uses a fixed concurrency as configured")
+    void fixedConcurrency() {
+        // given
+        ConcurrentKafkaListenerContainerFactory<String, ResourceChangedData> factory =
+                new ConcurrentKafkaListenerContainerFactory<>();
+
+        // when
+        ListenerConcurrency listenerConcurrency = listenerConcurrency("4", 0.9, 2);
+        listenerConcurrency.apply(factory);
+
+        // then
+        assertThat(listenerConcurrency.isAuto()).isFalse();
+        assertThat(listenerConcurrency.getDecision().concurrency()).isEqualTo(4);
+        verifyNoInteractions(kafkaAdmin);
+    }
+
+    @Test
+    @DisplayName("Caps automatic concurrency at the topic's partition count")
+    void autoConcurrencyCappedByPartitions() {
+        // given
+        when(kafkaAdmin.describeTopics(TOPIC)).thenReturn(Map.of(TOPIC, topicDescription(12)));
+
+        // when
+        ListenerConcurrency listenerConcurrency = listenerConcurrency("auto", 0.9, 2);
+
+        // then
+        assertThat(listenerConcurrency.getDecision().concurrency()).isEqualTo(12);
+        assertThat(listenerConcurrency.getDecision().partitions()).isEqualTo(12);
+        assertThat(listenerConcurrency.getDecision().reason()).contains("= 20 threads", "capped at the 12 partitions");
+    }
+
+    @Test
+    @DisplayName("Derives automatic concurrency from the CPUs and blocking ratio")
+    void autoConcurrencyFromCpus() {
+        // given
+        when(kafkaAdmin.describeTopics(TOPIC)).thenReturn(Map.of(TOPIC, topicDescription(12)));
+
+        // when
+        ListenerConcurrency listenerConcurrency = listenerConcurrency("AUTO", 0.5, 1.5);
+
+        // then
+        assertThat(listenerConcurrency.getDecision().concurrency()).isEqualTo(3);
+        assertThat(listenerConcurrency.getDecision().reason()).contains("within the 12 partitions");
+    }
+
+    @Test
+    @DisplayName("Derives automatic concurrency from the CPUs alone when the topic cannot be described")
+    void autoConcurrencyWithoutPartitions() {
+        // given
+        when(kafkaAdmin.describeTopics(TOPIC)).thenThrow(new KafkaException("unknown topic"));
+
+        // when
+        ListenerConcurrency listenerConcurrency = listenerConcurrency("auto", 0.9, 2);
+
+        // then
+        assertThat(listenerConcurrency.getDecision().concurrency()).isEqualTo(20);
+        assertThat(listenerConcurrency.getDecision().partitions()).isNull();
+    }
+
+    @Test
+    @DisplayName("Restarts running containers with the new concurrency when the measured blocking ratio changes it")
+    void reevaluateResizesContainers() {
+        // given
+        when(kafkaAdmin.describeTopics(TOPIC)).thenReturn(Map.of(TOPIC, topicDescription(12)));
+        ListenerConcurrency listenerConcurrency = listenerConcurrency("auto", 0.9, 1);
+        when(sampler.takeBlockingRatio()).thenReturn(OptionalDouble.of(0.75));
+        when(registry.getAllListenerContainers()).thenReturn(List.of(container));
+        when(container.isRunning()).thenReturn(true);
+
+        // when
+        listenerConcurrency.reevaluate();
+
+        // then
+        assertThat(listenerConcurrency.getDecision().concurrency()).isEqualTo(4);
+        assertThat(listenerConcurrency.getDecision().reason()).contains("measured");
+        InOrder inOrder = inOrder(container);
+        inOrder.verify(container).stop();
+        inOrder.verify(container).setConcurrency(4);
+        inOrder.verify(container).start();
+    }
+
+    @Test
+    @DisplayName("Reads a fractional CPU quota from cgroup v2")
+    void availableCpusFromCgroupQuota(@TempDir Path cgroup) throws IOException {
+        // given
+        Files.writeString(cgroup.resolve("cpu.max"), "50000 100000\n");
+
+        // when
+        double cpus = ListenerConcurrency.availableCpus(cgroup);
+
+        // then
+        assertThat(cpus).isEqualTo(0.5);
+    }
+
+    @Test
+    @DisplayName("Uses the available processors when cgroup sets no CPU quota")
+    void availableCpusWithoutCgroupQuota(@TempDir Path cgroup) throws IOException {
+        // given
+        Files.writeString(cgroup.resolve("cpu.max"), "max 100000\n");
+
+        // when
+        double cpus = ListenerConcurrency.availableCpus(cgroup);
+
+        // then
+        assertThat(cpus).isEqualTo(Runtime.getRuntime().availableProcessors());
+    }
+
+    private ListenerConcurrency listenerConcurrency(String concurrency, double blockingRatio, double cpus) {
+        return new ListenerConcurrency(concurrency, blockingRatio, TOPIC, kafkaAdmin, registry, sampler, cpus,
+                Duration.ZERO);
+    }
+
+    private static TopicDescription topicDescription(int partitions) {
+        return new TopicDescription(TOPIC, false, IntStream.range(0, partitions)
+                .mapToObj(partition -> new TopicPartitionInfo(partition, null, List.of(), List.of()))
+                .toList());
+    }
+}
@@ -0,0 +1,107 @@
+package uk.gov.companieshouse.appointments.subdelta.kafka;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.consumer.OffsetCommitCallback;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.event.ListenerContainerIdleEvent;
+import uk.gov.companieshouse.stream.ResourceChangedData;
+
+@ExtendWith(MockitoExtension.class)
+class OffsetManagerTest {
+
+    private static final TopicPartition PARTITION = new TopicPartition("stream-company-profile", 0);
+
+    @Mock
+    private org.apache.kafka.clients.consumer.Consumer<String, ResourceChangedData> kafkaConsumer;
+
+    @Test
+    @DisplayName("Commits up to the first record not yet complete when records complete out of order")
+    void commitsContiguousCompletedOffsets() {
+        // given
+        OffsetManager offsetManager = new OffsetManager(1000, 60_000);
+        offsetManager.track(PARTITION, 10);
+        offsetManager.track(PARTITION, 11);
+        offsetManager.track(PARTITION, 13);
+        offsetManager.complete(PARTITION, 13);
+        offsetManager.complete(PARTITION, 10);
+
+        // when
+        offsetManager.commitAndRelease(kafkaConsumer, List.of(PARTITION));
+
+        // then
+        verify(kafkaConsumer).commitSync(Map.of(PARTITION, new OffsetAndMetadata(11)));
+    }
+
+    @Test
+    @DisplayName("Commits without waiting once the commit count is reached, and only offsets not yet committed")
+    void commitIfDueByCount() {
+        // given
+        OffsetManager offsetManager = new OffsetManager(2, 60_000);
+        when(kafkaConsumer.assignment()).thenReturn(Set.of(PARTITION));
+        offsetManager.track(PARTITION, 0);
+        offsetManager.track(PARTITION, 1);
+        offsetManager.complete(PARTITION, 0);
+        offsetManager.complete(PARTITION, 1);
+        offsetManager.commitIfDue(kafkaConsumer);
+
+        // when
+        offsetManager.commitIfDue(kafkaConsumer);
+        offsetManager.commitAndRelease(kafkaConsumer, List.of(PARTITION));
+
+        // then
+        verify(kafkaConsumer).commitAsync(eq(Map.of(PARTITION, new OffsetAndMetadata(2))),
+                any(OffsetCommitCallback.class));
+        verify(kafkaConsumer, never()).commitSync(anyMap());
+    }
+
+    @Test
+    @DisplayName("Commits records that completed after the last record consumed once the consumer is idle")
+    void commitsWhenIdle() {
+        // given
+        OffsetManager offsetManager = new OffsetManager(1000, 60_000);
+        when(kafkaConsumer.assignment()).thenReturn(Set.of(PARTITION));
+        offsetManager.track(PARTITION, 0);
+        offsetManager.commitIfDue(kafkaConsumer);
+        offsetManager.complete(PARTITION, 0);
+
+        // when
+        offsetManager.onIdle(new ListenerContainerIdleEvent(this, this, 60_000, "company-appointments-consumer-async",
+                Set.of(PARTITION), kafkaConsumer, false));
+
+        // then
+        verify(kafkaConsumer).commitAsync(eq(Map.of(PARTITION, new OffsetAndMetadata(1))),
+                any(OffsetCommitCallback.class));
+    }
+
+    @Test
+    @DisplayName("Forgets lost partitions without committing them")
+    void releaseDoesNotCommit() {
+        // given
+        OffsetManager offsetManager = new OffsetManager(1000, 60_000);
+        offsetManager.track(PARTITION, 0);
+        offsetManager.complete(PARTITION, 0);
+
+        // when
+        offsetManager.release(List.of(PARTITION));
+        offsetManager.commitAndRelease(kafkaConsumer, List.of(PARTITION));
+
+        // then
+        verifyNoInteractions(kafkaConsumer);
+    }
+}
@@ -0,0 +1,50 @@
+package uk.gov.companieshouse.appointments.subdelta.kafka;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+import uk.gov.companieshouse.appointments.subdelta.companyprofile.AppliedNameStatusCache;
+import uk.gov.companieshouse.stream.ResourceChangedData;
+
+@ExtendWith(MockitoExtension.class)
+class RebalanceHandlerTest {
+
+    private static final TopicPartition PARTITION = new TopicPartition("stream-company-profile", 0);
+
+    @Mock
+    private ListenerConcurrency listenerConcurrency;
+    @Mock
+    private OffsetManager offsetManager;
+    @Mock
+    private ObjectProvider<AsyncConsumer> asyncConsumer;
+    @Mock
+    private org.apache.kafka.clients.consumer.Consumer<String, ResourceChangedData> kafkaConsumer;
+
+    @Test
+    @DisplayName("Forgets the names and statuses applied before a partition was revoked and assigned again")
+    void clearsAppliedCacheOnRebalance() {
+        // given
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        AppliedNameStatusCache appliedCache = new AppliedNameStatusCache(16, meterRegistry);
+        RebalanceHandler rebalanceHandler = new RebalanceHandler(listenerConcurrency, offsetManager,
+                new CatchUpMode(0, meterRegistry), appliedCache, asyncConsumer, meterRegistry, 1000);
+        appliedCache.applied("00000001", "COMPANY A LIMITED", "active");
+
+        // when
+        rebalanceHandler.onPartitionsRevokedBeforeCommit(kafkaConsumer, List.of(PARTITION));
+        // Applied by a record that completed after the drain, before the partition came back
+        appliedCache.applied("00000001", "COMPANY A LIMITED", "active");
+        rebalanceHandler.onPartitionsAssigned(kafkaConsumer, List.of(PARTITION));
+
+        // then
+        assertThat(appliedCache.isUnchanged("00000001", "COMPANY A LIMITED", "active")).isFalse();
+    }
+}
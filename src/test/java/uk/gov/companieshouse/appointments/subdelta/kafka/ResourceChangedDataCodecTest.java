@@ -0,0 +1,71 @@
+package uk.gov.companieshouse.appointments.subdelta.kafka;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import org.apache.avro.io.DatumWriter;
+import org.apache.avro.io.Encoder;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.avro.reflect.ReflectDatumWriter;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import uk.gov.companieshouse.stream.EventRecord;
+import uk.gov.companieshouse.stream.ResourceChangedData;
+
+class ResourceChangedDataCodecTest {
+
+    private final ResourceChangedDataCodec codec = new ResourceChangedDataCodec();
+
+    @Test
+    @DisplayName("Encodes a ResourceChangedData identically to a reflect datum writer")
+    void testEncodeMatchesReflectDatumWriter() throws IOException {
+        // given
+        ResourceChangedData changedData = changedData("12345678");
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        Encoder encoder = EncoderFactory.get().directBinaryEncoder(outputStream, null);
+        DatumWriter<ResourceChangedData> writer = new ReflectDatumWriter<>(ResourceChangedData.class);
+        writer.write(changedData, encoder);
+
+        // when
+        byte[] actual = codec.encode(changedData);
+
+        // then
+        assertThat(actual).isEqualTo(outputStream.toByteArray());
+    }
+
+    @Test
+    @DisplayName("Reuses the thread's output buffer without leaking bytes between records")
+    void testEncodeReusesBuffer() throws IOException {
+        // given
+        ResourceChangedData first = changedData("a much longer resource id than the second");
+        ResourceChangedData second = changedData("short");
+
+        // when
+        codec.encode(first);
+        byte[] actual = codec.encode(second);
+
+        // then
+        assertThat(codec.decode(actual)).isEqualTo(second);
+    }
+
+    @Test
+    @DisplayName("Decodes into a reused instance when one is provided")
+    void testDecodeIntoReusedInstance() throws IOException {
+        // given
+        ResourceChangedData reuse = new ResourceChangedData();
+        ResourceChangedData expected = changedData("12345678");
+
+        // when
+        ResourceChangedData actual = codec.decode(codec.encode(expected), reuse);
+
+        // then
+        assertThat(actual).isSameAs(reuse).isEqualTo(expected);
+    }
+
+    private static ResourceChangedData changedData(String resourceId) {
+        return new ResourceChangedData("resource_kind", "resource_uri", "context_id", resourceId,
+                "data", new EventRecord("published_at", "changed", Collections.emptyList()));
+    }
+}
@@ -3,6 +3,7 @@ package uk.gov.companieshouse.appointments.subdelta.kafka;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
@@ -84,4 +85,24 @@ class ResourceChangedDataDeserialiserTest {
         assertThat(exception.getCause()).isInstanceOf(AvroRuntimeException.class);
         deserialiser.close();
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Records decode time by decode mode and outcome")
+    void testDeserialiseRecordsDecodeTime() {
+        // given
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ResourceChangedDataDeserialiser deserialiser = new ResourceChangedDataDeserialiser(
+                new ResourceChangedDataCodec(), meterRegistry);
+
+        // when
+        assertThrows(InvalidPayloadException.class,
+                () -> deserialiser.deserialize("topic", "invalid".getBytes(StandardCharsets.UTF_8)));
+
+        // then
+        assertThat(meterRegistry.get(ResourceChangedDataDeserialiser.DECODE_METRIC)
+                .tag("mode", "reflect").tag("outcome", "failure").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get(ResourceChangedDataDeserialiser.DECODE_METRIC)
+                .tag("outcome", "success").timer().count()).isZero();
+        deserialiser.close();
+    }
+}
@@ -0,0 +1,84 @@
+package uk.gov.companieshouse.appointments.subdelta.kafka;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.math.BigInteger;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Headers;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import org.springframework.kafka.retrytopic.RetryTopicHeaders;
+
+class RetryBackoffTest {
+
+    @Test
+    @DisplayName("Keeps a fixed delay and the single retry topic with a multiplier of 0")
+    void fixedDelay() {
+        // given
+        RetryBackoff backoff = new RetryBackoff("group", 1000, 0, 0, 0);
+
+        // when
+        long actual = backoff.delayAfter(4);
+
+        // then
+        assertThat(actual).isEqualTo(1000);
+        assertThat(backoff.firstRetryTopic("topic")).isEqualTo("topic-group-retry");
+    }
+
+    @Test
+    @DisplayName("Grows the delay with each attempt up to the maximum delay")
+    void exponentialDelay() {
+        // given
+        RetryBackoff backoff = new RetryBackoff("group", 1000, 3, 20_000, 0);
+
+        // when, then
+        assertThat(backoff.delayAfter(1)).isEqualTo(1000);
+        assertThat(backoff.delayAfter(2)).isEqualTo(3000);
+        assertThat(backoff.delayAfter(3)).isEqualTo(9000);
+        assertThat(backoff.delayAfter(4)).isEqualTo(20_000);
+        assertThat(backoff.firstRetryTopic("topic")).isEqualTo("topic-group-retry-0");
+    }
+
+    @Test
+    @DisplayName("Takes up to the jitter fraction off each delay")
+    void jitteredDelay() {
+        // given
+        RetryBackoff backoff = new RetryBackoff("group", 1000, 2, 60_000, 0.5);
+
+        // when, then
+        for (int i = 0; i < 100; i++) {
+            assertThat(backoff.delayAfter(2)).isBetween(1000L, 2000L);
+        }
+    }
+
+    @Test
+    @DisplayName("Sets the backoff timestamp for the attempt after the one that failed")
+    void jitteredBackoffHeaders() {
+        // given
+        RetryBackoff backoff = new RetryBackoff("group", 1000, 2, 60_000, 0.1);
+        ConsumerRecord<String, String> consumerRecord = new ConsumerRecord<>("topic-group-retry-1", 0, 0, "key",
+                "value");
+        consumerRecord.headers().add(RetryTopicHeaders.DEFAULT_HEADER_ATTEMPTS, BigInteger.valueOf(3).toByteArray());
+
+        // when
+        long before = System.currentTimeMillis();
+        Headers actual = backoff.jitteredBackoffHeaders(consumerRecord, new RuntimeException());
+
+        // then
+        long due = new BigInteger(actual.lastHeader(RetryTopicHeaders.DEFAULT_HEADER_BACKOFF_TIMESTAMP).value())
+                .longValue();
+        assertThat(due - before).isBetween(3600L, 4000L + (System.currentTimeMillis() - before));
+    }
+
+    @Test
+    @DisplayName("Rejects a multiplier that would neither fix nor grow the delay")
+    void rejectsShrinkingMultiplier() {
+        // when
+        Executable actual = () -> new RetryBackoff("group", 1000, 0.5, 0, 0);
+
+        // then
+        assertThrows(IllegalArgumentException.class, actual);
+    }
+}
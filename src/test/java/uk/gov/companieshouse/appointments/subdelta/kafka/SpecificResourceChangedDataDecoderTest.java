@@ -0,0 +1,139 @@
+package uk.gov.companieshouse.appointments.subdelta.kafka;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.apache.avro.AvroRuntimeException;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaNormalization;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.avro.message.BinaryMessageEncoder;
+import org.apache.avro.message.SchemaStore;
+import org.apache.kafka.common.header.internals.RecordHeader;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import uk.gov.companieshouse.stream.EventRecord;
+import uk.gov.companieshouse.stream.ResourceChangedData;
+
+class SpecificResourceChangedDataDecoderTest {
+
+    private static final Schema READER_SCHEMA = ResourceChangedData.getClassSchema();
+
+    private Schema evolvedSchema;
+    private SchemaStore.Cache schemaStore;
+    private SpecificResourceChangedDataDecoder decoder;
+
+    @BeforeEach
+    void setUp() {
+        List<Schema.Field> fields = new ArrayList<>();
+        for (Schema.Field field : READER_SCHEMA.getFields()) {
+            fields.add(new Schema.Field(field, field.schema()));
+        }
+        fields.add(new Schema.Field("added_upstream", Schema.create(Schema.Type.STRING), null, ""));
+        evolvedSchema = Schema.createRecord(READER_SCHEMA.getName(), null,
+                READER_SCHEMA.getNamespace(), false, fields);
+
+        schemaStore = new SchemaStore.Cache();
+        schemaStore.addSchema(evolvedSchema);
+        decoder = new SpecificResourceChangedDataDecoder(schemaStore, 4);
+    }
+
+    @Test
+    @DisplayName("Decodes a record written with the reader schema when no fingerprint is present")
+    void testDecodeWithoutFingerprint() throws IOException {
+        // when
+        ResourceChangedData actual = decoder.decode(new ResourceChangedDataCodec().encode(expected()), null);
+
+        // then
+        assertThat(actual).isEqualTo(expected());
+    }
+
+    @Test
+    @DisplayName("Resolves an evolved writer schema from a single-object encoding prefix")
+    void testDecodeSingleObjectEncoding() throws IOException {
+        // given
+        ByteBuffer encoded = new BinaryMessageEncoder<GenericRecord>(GenericData.get(), evolvedSchema)
+                .encode(evolvedRecord());
+
+        // when
+        ResourceChangedData actual = decoder.decode(toArray(encoded), null);
+
+        // then
+        assertThat(actual).isEqualTo(expected());
+    }
+
+    @Test
+    @DisplayName("Resolves an evolved writer schema from the fingerprint header")
+    void testDecodeWithFingerprintHeader() throws IOException {
+        // given
+        RecordHeaders headers = new RecordHeaders(List.of(new RecordHeader(
+                SpecificResourceChangedDataDecoder.SCHEMA_FINGERPRINT_HEADER,
+                ByteBuffer.allocate(Long.BYTES)
+                        .putLong(SchemaNormalization.parsingFingerprint64(evolvedSchema))
+                        .array())));
+
+        // when
+        ResourceChangedData actual = decoder.decode(encodeEvolved(), headers);
+
+        // then
+        assertThat(actual).isEqualTo(expected());
+    }
+
+    @Test
+    @DisplayName("Throws AvroRuntimeException when the writer schema fingerprint is unknown")
+    void testDecodeUnknownFingerprint() throws IOException {
+        // given
+        RecordHeaders headers = new RecordHeaders(List.of(new RecordHeader(
+                SpecificResourceChangedDataDecoder.SCHEMA_FINGERPRINT_HEADER,
+                ByteBuffer.allocate(Long.BYTES).putLong(42L).array())));
+        byte[] data = encodeEvolved();
+
+        // when
+        Executable actual = () -> decoder.decode(data, headers);
+
+        // then
+        AvroRuntimeException exception = assertThrows(AvroRuntimeException.class, actual);
+        assertThat(exception.getMessage()).isEqualTo("No writer schema found for fingerprint 42");
+    }
+
+    private byte[] encodeEvolved() throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        BinaryEncoder encoder = EncoderFactory.get().directBinaryEncoder(outputStream, null);
+        new GenericDatumWriter<GenericRecord>(evolvedSchema).write(evolvedRecord(), encoder);
+        return outputStream.toByteArray();
+    }
+
+    private GenericRecord evolvedRecord() {
+        GenericRecord current = (GenericRecord) GenericData.get().deepCopy(READER_SCHEMA, expected());
+        GenericRecord evolved = new GenericData.Record(evolvedSchema);
+        for (Schema.Field field : READER_SCHEMA.getFields()) {
+            evolved.put(field.name(), current.get(field.name()));
+        }
+        evolved.put("added_upstream", "ignored by this reader");
+        return evolved;
+    }
+
+    private static ResourceChangedData expected() {
+        return new ResourceChangedData("company-profile", "/company/12345678", "context_id",
+                "12345678", "{}", new EventRecord("published_at", "changed", Collections.emptyList()));
+    }
+
+    private static byte[] toArray(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+}
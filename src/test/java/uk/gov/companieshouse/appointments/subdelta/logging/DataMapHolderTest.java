@@ -0,0 +1,35 @@
+package uk.gov.companieshouse.appointments.subdelta.logging;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Map;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class DataMapHolderTest {
+
+    @AfterEach
+    void tearDown() {
+        DataMapHolder.clear();
+    }
+
+    @Test
+    @DisplayName("Builds the log map once until the builder is next handed out")
+    void reusesLogMap() {
+        // given
+        DataMapHolder.initialise("request-id");
+
+        // when
+        Map<String, Object> first = DataMapHolder.getLogMap();
+        Map<String, Object> second = DataMapHolder.getLogMap();
+        DataMapHolder.get().companyNumber("12345678");
+        Map<String, Object> changed = DataMapHolder.getLogMap();
+
+        // then
+        assertThat(second).isSameAs(first);
+        assertThat(first).containsEntry("request_id", "request-id");
+        assertThat(changed).isNotSameAs(first).containsValue("12345678");
+        assertThat(DataMapHolder.getRequestId()).isEqualTo("request-id");
+    }
+}
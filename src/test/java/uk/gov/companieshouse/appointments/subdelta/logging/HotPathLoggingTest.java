@@ -0,0 +1,62 @@
+package uk.gov.companieshouse.appointments.subdelta.logging;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import uk.gov.companieshouse.appointments.subdelta.exception.RetryableException;
+
+class HotPathLoggingTest {
+
+    @Test
+    @DisplayName("Logs every success line and stack trace in standard mode")
+    void standardMode() {
+        // given
+        HotPathLogging logging = new HotPathLogging(LogMode.STANDARD, 100, 60_000, 8192);
+        LogSampler sampler = logging.successSampler();
+        RetryableException ex = new RetryableException("unavailable", null);
+
+        // when
+        long sampled = IntStream.range(0, 10).filter(i -> sampler.sample()).count();
+
+        // then
+        assertThat(sampled).isEqualTo(10);
+        assertThat(logging.stackTrace(ex)).contains("HotPathLoggingTest");
+        assertThat(logging.stackTrace(ex)).contains("HotPathLoggingTest");
+    }
+
+    @Test
+    @DisplayName("Samples success lines in high throughput mode, starting with the first")
+    void highThroughputSamplesSuccess() {
+        // given
+        LogSampler sampler = new HotPathLogging(LogMode.HIGH_THROUGHPUT, 100, 60_000, 8192).successSampler();
+
+        // when
+        long sampled = IntStream.range(0, 250).filter(i -> sampler.sample()).count();
+
+        // then
+        assertThat(sampled).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("Logs a repeated stack trace once per interval in high throughput mode")
+    void highThroughputSuppressesRepeatedStackTraces() {
+        // given
+        HotPathLogging logging = new HotPathLogging(LogMode.HIGH_THROUGHPUT, 100, 60_000, 8192);
+
+        // when
+        String first = logging.stackTrace(failure());
+        String repeated = logging.stackTrace(failure());
+        String other = logging.stackTrace(new IllegalStateException());
+
+        // then
+        assertThat(first).contains("HotPathLoggingTest.failure");
+        assertThat(repeated).isEqualTo("[stack trace logged within the last 60000 ms]");
+        assertThat(other).contains("HotPathLoggingTest");
+    }
+
+    private static RetryableException failure() {
+        return new RetryableException("unavailable", null);
+    }
+}
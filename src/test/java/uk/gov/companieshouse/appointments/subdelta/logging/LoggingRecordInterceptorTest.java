@@ -0,0 +1,84 @@
+package uk.gov.companieshouse.appointments.subdelta.logging;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.verify;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.listener.ListenerExecutionFailedException;
+import org.springframework.kafka.retrytopic.RetryTopicHeaders;
+import uk.gov.companieshouse.appointments.subdelta.exception.RetryableException;
+import uk.gov.companieshouse.stream.EventRecord;
+import uk.gov.companieshouse.stream.ResourceChangedData;
+
+@ExtendWith(MockitoExtension.class)
+class LoggingRecordInterceptorTest {
+
+    private static final ResourceChangedData CHANGED_DATA = new ResourceChangedData("company-profile",
+            "/company/12345678", "context_id", "12345678", "{}",
+            new EventRecord("", "changed", Collections.emptyList()));
+
+    @Mock
+    private ListenerLogging listenerLogging;
+
+    private LoggingRecordInterceptor interceptor;
+
+    @BeforeEach
+    void setUp() {
+        interceptor = new LoggingRecordInterceptor(listenerLogging);
+    }
+
+    @Test
+    @DisplayName("Logs a record from the main topic from its own topic, partition and offset")
+    void interceptMainTopicRecord() {
+        // given
+        ConsumerRecord<String, ResourceChangedData> record = new ConsumerRecord<>("stream-company-profile", 2, 42L,
+                "key", CHANGED_DATA);
+
+        // when
+        ConsumerRecord<String, ResourceChangedData> actual = interceptor.intercept(record, null);
+        interceptor.success(record, null);
+        interceptor.afterRecord(record, null);
+
+        // then
+        assertThat(actual).isSameAs(record);
+        InOrder inOrder = inOrder(listenerLogging);
+        inOrder.verify(listenerLogging).begin(same(CHANGED_DATA), isNull(), eq("stream-company-profile"),
+                eq(2), eq(42L));
+        inOrder.verify(listenerLogging).succeeded();
+        inOrder.verify(listenerLogging).end();
+    }
+
+    @Test
+    @DisplayName("Logs the cause of a failed retry topic record with its attempt number")
+    void failureOnRetryTopic() {
+        // given
+        ConsumerRecord<String, ResourceChangedData> record = new ConsumerRecord<>(
+                "stream-company-profile-group-retry", 0, 7L, "key", CHANGED_DATA);
+        record.headers().add(RetryTopicHeaders.DEFAULT_HEADER_ATTEMPTS,
+                ByteBuffer.allocate(Integer.BYTES).putInt(3).array());
+        RetryableException cause = new RetryableException("unavailable", null);
+
+        // when
+        interceptor.intercept(record, null);
+        interceptor.failure(record, new ListenerExecutionFailedException("failed", cause), null);
+        interceptor.afterRecord(record, null);
+
+        // then
+        verify(listenerLogging).begin(CHANGED_DATA, 3, "stream-company-profile-group-retry", 0, 7L);
+        verify(listenerLogging).failed(cause, 3);
+        verify(listenerLogging).end();
+    }
+}